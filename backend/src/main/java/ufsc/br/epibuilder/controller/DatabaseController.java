@@ -35,6 +35,7 @@ import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
+import br.ufsc.epibuilder.proteomics.ProteomeIndex;
 import ufsc.br.epibuilder.model.Database;
 import ufsc.br.epibuilder.service.DatabaseService;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -103,6 +104,7 @@ public class DatabaseController {
             database.setFileName(sanitizedFilename);
 
             Database createdDatabase = databaseService.save(database);
+            databaseService.buildIndex(createdDatabase);
 
             return ResponseEntity.status(HttpStatus.CREATED).body(createdDatabase);
         } catch (Exception e) {
@@ -125,6 +127,7 @@ public class DatabaseController {
             if (absolutePath != null) {
                 try {
                     Path path = Path.of(absolutePath);
+                    Files.deleteIfExists(ProteomeIndex.getIndexFile(path.toFile()).toPath());
                     if (Files.exists(path)) {
                         Files.walk(path)
                                 .sorted(Comparator.reverseOrder())
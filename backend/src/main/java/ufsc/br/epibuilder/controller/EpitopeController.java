@@ -18,6 +18,11 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 import org.springframework.core.io.UrlResource;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.data.web.PagedModel;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -27,6 +32,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
@@ -36,6 +42,12 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import lombok.extern.slf4j.Slf4j;
+import ufsc.br.epibuilder.dto.BlastDTO;
+import ufsc.br.epibuilder.dto.EpitopeFilter;
+import ufsc.br.epibuilder.dto.EpitopeSliceDTO;
+import ufsc.br.epibuilder.dto.EpitopeSummaryDTO;
+import ufsc.br.epibuilder.dto.EpitopeTopologyDTO;
+import ufsc.br.epibuilder.dto.TaskSummaryDTO;
 import ufsc.br.epibuilder.model.*;
 import ufsc.br.epibuilder.service.*;
 import org.springframework.core.io.UrlResource;
@@ -57,17 +69,26 @@ import java.time.ZonedDateTime;
 @RequestMapping("/epitopes")
 public class EpitopeController {
 
-    private final EpitopeTaskDataService epitopeTaskDataService;
+    private static final int MAX_SLICE_SIZE = 1000;
 
-    private final PipelineService pipelineService;
+    private final EpitopeTaskDataService epitopeTaskDataService;
 
     private final DatabaseService databaseService;
 
-    public EpitopeController(EpitopeTaskDataService epitopeTaskDataService, PipelineService pipelineService,
-            DatabaseService databaseService) {
+    private final EpitopeEngineService epitopeEngineService;
+
+    private final TaskSchedulerService taskSchedulerService;
+
+    private final EpitopeService epitopeService;
+
+    public EpitopeController(EpitopeTaskDataService epitopeTaskDataService, DatabaseService databaseService,
+            EpitopeEngineService epitopeEngineService, TaskSchedulerService taskSchedulerService,
+            EpitopeService epitopeService) {
         this.databaseService = databaseService;
+        this.epitopeService = epitopeService;
+        this.taskSchedulerService = taskSchedulerService;
+        this.epitopeEngineService = epitopeEngineService;
         this.epitopeTaskDataService = epitopeTaskDataService;
-        this.pipelineService = pipelineService;
     }
 
     private Path saveFile(Path baseDir, MultipartFile file) throws IOException {
@@ -135,10 +156,22 @@ public class EpitopeController {
 
             if (taskData.isDoBlast() == true) {
                 processProteomes(taskData, baseDir, proteomes);
+                PipelineService.getProteomePaths(taskData);
+            }
+            taskData.setResidueCount(TaskSchedulerService.countResidues(fastaPath));
+
+            EpitopeTaskData savedTask;
+            if (epitopeEngineService.supports(taskData)) {
+                savedTask = saveTask(taskData, Status.RUNNING);
+                if (!epitopeEngineService.submit(savedTask)) {
+                    savedTask.getTaskStatus().setStatus(Status.PENDING);
+                    savedTask = epitopeTaskDataService.save(savedTask);
+                    taskSchedulerService.schedule();
+                }
+            } else {
+                savedTask = saveTask(taskData, Status.PENDING);
+                taskSchedulerService.schedule();
             }
-
-            Process process = pipelineService.runPipeline(taskData);
-            EpitopeTaskData savedTask = saveTask(taskData, process);
 
             return successResponse(savedTask);
 
@@ -232,10 +265,15 @@ public class EpitopeController {
         log.info("Final processed proteomes: {}", processedDatabases);
     }
 
-    private EpitopeTaskData saveTask(EpitopeTaskData taskData, Process process) {
+    /**
+     * Saves a new task.
+     * 
+     * @param status RUNNING when analysed in-process, PENDING when queued for
+     *               the pipeline
+     */
+    private EpitopeTaskData saveTask(EpitopeTaskData taskData, Status status) {
         TaskStatus taskStatus = new TaskStatus();
-        taskStatus.setPid(process.pid());
-        taskStatus.setStatus(Status.RUNNING);
+        taskStatus.setStatus(status);
         taskStatus.setEpitopeTaskData(taskData);
 
         taskData.setTaskStatus(taskStatus);
@@ -247,7 +285,14 @@ public class EpitopeController {
 
     private ResponseEntity<Map<String, Object>> successResponse(EpitopeTaskData savedTask) {
         Map<String, Object> response = new HashMap<>();
-        response.put("message", "Task created. PID: " + savedTask.getTaskStatus().getPid());
+        Long pid = savedTask.getTaskStatus().getPid();
+        if (pid != null) {
+            response.put("message", "Task created. PID: " + pid);
+        } else if (savedTask.getTaskStatus().getStatus() == Status.PENDING) {
+            response.put("message", "Task queued.");
+        } else {
+            response.put("message", "Task created.");
+        }
         response.put("taskId", savedTask.getId());
         return ResponseEntity.ok(response);
     }
@@ -347,7 +392,71 @@ public class EpitopeController {
         if (tasks.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(tasks);
+        return ResponseEntity.ok(taskSchedulerService.annotate(tasks));
+    }
+
+    /**
+     * Lists the tasks of a user as summaries, a page at a time, without their
+     * epitopes.
+     */
+    @GetMapping("/tasks/user/{userId}/summary")
+    public ResponseEntity<PagedModel<TaskSummaryDTO>> getTaskSummariesByUser(@PathVariable Long userId,
+            @PageableDefault(size = 20, sort = "executionDate", direction = Sort.Direction.DESC) Pageable pageable) {
+        Page<TaskSummaryDTO> tasks = epitopeTaskDataService.findTaskSummariesByUserId(userId, pageable);
+        return ResponseEntity.ok(new PagedModel<>(taskSchedulerService.annotateSummaries(tasks)));
+    }
+
+    /**
+     * Lists the epitopes of a task, a page at a time, filtered and sorted by
+     * the database. The topologies and BLAST hits are read apart, for the
+     * epitopes of the page.
+     */
+    @GetMapping("/tasks/{id}/epitopes")
+    public ResponseEntity<?> getEpitopesByTask(@PathVariable Long id, EpitopeFilter filter,
+            @PageableDefault(size = 50, sort = "bepiPred3", direction = Sort.Direction.DESC) Pageable pageable) {
+        try {
+            Page<EpitopeSummaryDTO> epitopes = epitopeService.findByTask(id, filter, pageable);
+            return ResponseEntity.ok(new PagedModel<>(epitopes));
+        } catch (IllegalArgumentException e) {
+            return errorResponse(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Reads the epitopes of a task in slices after a cursor, for browsing
+     * large tasks: each slice is read from the indexes without counting or
+     * skipping the previous ones. The next slice is read with the
+     * nextAfterValue and nextAfterId of the previous one.
+     */
+    @GetMapping("/tasks/{id}/epitopes/query")
+    public ResponseEntity<?> queryEpitopesByTask(@PathVariable Long id, EpitopeFilter filter,
+            @RequestParam(defaultValue = "bepiPred3") String sort,
+            @RequestParam(defaultValue = "DESC") Sort.Direction direction,
+            @RequestParam(required = false) String afterValue,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(defaultValue = "100") int size) {
+        if (size < 1 || size > MAX_SLICE_SIZE) {
+            return errorResponse("Size must be between 1 and " + MAX_SLICE_SIZE, HttpStatus.BAD_REQUEST);
+        }
+        try {
+            EpitopeSliceDTO epitopes = epitopeService.findByTaskAfter(id, filter, new Sort.Order(direction, sort),
+                    afterValue, afterId, size);
+            return ResponseEntity.ok(epitopes);
+        } catch (IllegalArgumentException e) {
+            return errorResponse(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    @GetMapping("/tasks/{id}/epitopes/topologies")
+    public ResponseEntity<List<EpitopeTopologyDTO>> getEpitopeTopologies(@PathVariable Long id,
+            @RequestParam List<Long> epitopeIds) {
+        return ResponseEntity.ok(epitopeService.findTopologies(id, epitopeIds));
+    }
+
+    @GetMapping("/tasks/{id}/epitopes/blasts")
+    public ResponseEntity<List<BlastDTO>> getEpitopeBlasts(@PathVariable Long id,
+            @RequestParam List<Long> epitopeIds) {
+        return ResponseEntity.ok(epitopeService.findBlasts(id, epitopeIds));
     }
 
     @DeleteMapping("/tasks/{id}")
@@ -402,11 +511,12 @@ public class EpitopeController {
 
     @GetMapping("/tasks/user/{userId}/status")
     public ResponseEntity<List<EpitopeTaskData>> findTasksByTaskStatusStatus(@PathVariable Long userId) {
-        List<EpitopeTaskData> tasks = epitopeTaskDataService.findTasksByTaskStatusStatus(Status.RUNNING);
+        List<EpitopeTaskData> tasks = epitopeTaskDataService
+                .findTasksByTaskStatusStatusIn(List.of(Status.PENDING, Status.RUNNING));
         if (tasks.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(tasks);
+        return ResponseEntity.ok(taskSchedulerService.annotate(tasks));
     }
 
 }
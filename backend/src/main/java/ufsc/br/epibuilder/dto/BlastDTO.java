@@ -0,0 +1,18 @@
+package ufsc.br.epibuilder.dto;
+
+/**
+ * Data Transfer Object (DTO) of a BLAST hit of an epitope.
+ *
+ * @param epitopeId the database id of the epitope
+ * @param database  the alias of the proteome searched
+ */
+public record BlastDTO(
+        Long id,
+        Long epitopeId,
+        String sacc,
+        Double pident,
+        Double qcovs,
+        String qseq,
+        String sseq,
+        String database) {
+}
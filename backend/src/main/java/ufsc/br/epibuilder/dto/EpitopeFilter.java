@@ -0,0 +1,36 @@
+package ufsc.br.epibuilder.dto;
+
+import java.util.List;
+
+import ufsc.br.epibuilder.model.Method;
+
+/**
+ * Filters of the epitopes of a task. Null values do not filter.
+ *
+ * @param minScore      minimum BepiPred-3.0 score of the epitope
+ * @param maxScore      maximum BepiPred-3.0 score of the epitope
+ * @param minLength     minimum length of the epitope
+ * @param maxLength     maximum length of the epitope
+ * @param nGlyc         true for epitopes with N-glycosylation motifs, false
+ *                      for epitopes without them
+ * @param coverMethod   method of the topology compared with minCover, any
+ *                      method when null
+ * @param minCover      minimum cover of a topology of the epitope
+ * @param ranges        ranges of other numeric properties, as bepiPred3 or
+ *                      emini
+ * @param blast         true for epitopes with BLAST hits, false for epitopes
+ *                      without them
+ * @param blastDatabase alias of the proteome of the BLAST hits, implies blast
+ */
+public record EpitopeFilter(
+        Double minScore,
+        Double maxScore,
+        Integer minLength,
+        Integer maxLength,
+        Boolean nGlyc,
+        Method coverMethod,
+        Double minCover,
+        List<EpitopeRange> ranges,
+        Boolean blast,
+        String blastDatabase) {
+}
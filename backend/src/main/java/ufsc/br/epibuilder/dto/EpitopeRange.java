@@ -0,0 +1,35 @@
+package ufsc.br.epibuilder.dto;
+
+/**
+ * Range of a numeric property of the epitopes, as in
+ * {@code bepiPred3:0.5:1} or {@code emini:1.2:}, the missing bounds open.
+ *
+ * @param property the property of {@link EpitopeSummaryDTO}
+ * @param min      the minimum value, inclusive, or null
+ * @param max      the maximum value, inclusive, or null
+ */
+public record EpitopeRange(String property, Double min, Double max) {
+
+    /**
+     * Parses a range, also when bound from a request parameter.
+     *
+     * @param range property:min:max
+     * @return
+     * @throws IllegalArgumentException when the range is malformed
+     */
+    public static EpitopeRange valueOf(String range) {
+        String[] parts = range.split(":", -1);
+        if (parts.length != 3 || parts[0].isBlank()) {
+            throw new IllegalArgumentException("Invalid range " + range + ", expected property:min:max");
+        }
+        try {
+            return new EpitopeRange(parts[0].trim(), parseBound(parts[1]), parseBound(parts[2]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid range " + range + ", expected property:min:max");
+        }
+    }
+
+    private static Double parseBound(String bound) {
+        return bound.isBlank() ? null : Double.valueOf(bound.trim());
+    }
+}
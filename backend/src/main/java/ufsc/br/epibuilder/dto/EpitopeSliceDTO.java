@@ -0,0 +1,21 @@
+package ufsc.br.epibuilder.dto;
+
+import java.util.List;
+
+/**
+ * A slice of the epitopes of a task, read after a cursor. The next slice is
+ * read after the sort value and the id of the last epitope.
+ *
+ * @param content        the epitopes of the slice
+ * @param hasNext        whether there are more epitopes after the slice
+ * @param nextAfterValue the sort value of the last epitope, null when it has
+ *                       none
+ * @param nextAfterId    the id of the last epitope, null when the slice is
+ *                       empty
+ */
+public record EpitopeSliceDTO(
+        List<EpitopeSummaryDTO> content,
+        boolean hasNext,
+        Object nextAfterValue,
+        Long nextAfterId) {
+}
@@ -0,0 +1,31 @@
+package ufsc.br.epibuilder.dto;
+
+/**
+ * Data Transfer Object (DTO) of an epitope without its topologies and BLAST
+ * hits, which are loaded on demand.
+ *
+ * @param id        the database id of the epitope
+ * @param epitopeId the id of the protein of the epitope
+ * @param n         the number of the epitope in the results of the task
+ */
+public record EpitopeSummaryDTO(
+        Long id,
+        String epitopeId,
+        Long n,
+        String epitope,
+        Integer start,
+        Integer endEpitope,
+        Integer length,
+        Double score,
+        Double bepiPred3,
+        Double hydropathy,
+        Double isoelectricPoint,
+        Double molecularWeight,
+        String nGlyc,
+        Integer nGlycCount,
+        Double parker,
+        Double karplusSchulz,
+        Double kolaskar,
+        Double chouFosman,
+        Double emini) {
+}
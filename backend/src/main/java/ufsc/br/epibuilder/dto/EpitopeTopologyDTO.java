@@ -0,0 +1,18 @@
+package ufsc.br.epibuilder.dto;
+
+import ufsc.br.epibuilder.model.Method;
+
+/**
+ * Data Transfer Object (DTO) of a topology of an epitope.
+ *
+ * @param epitopeId the database id of the epitope
+ */
+public record EpitopeTopologyDTO(
+        Long id,
+        Long epitopeId,
+        Method method,
+        Double threshold,
+        Double avgScore,
+        Double cover,
+        String topologyData) {
+}
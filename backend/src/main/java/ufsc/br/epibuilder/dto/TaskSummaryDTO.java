@@ -0,0 +1,52 @@
+package ufsc.br.epibuilder.dto;
+
+import java.time.LocalDateTime;
+
+import ufsc.br.epibuilder.model.ActionType;
+import ufsc.br.epibuilder.model.Status;
+
+/**
+ * Data Transfer Object (DTO) summarising a task for the task lists, without
+ * its epitopes.
+ *
+ * @param epitopeCount       number of epitopes of the task
+ * @param queuePosition      position of a PENDING task in the queue, from 1
+ * @param estimatedStartDate estimated start of a PENDING task
+ */
+public record TaskSummaryDTO(
+        Long id,
+        String runName,
+        ActionType actionType,
+        Status status,
+        Long pid,
+        LocalDateTime executionDate,
+        LocalDateTime startDate,
+        LocalDateTime finishedDate,
+        int proteomeSize,
+        Long residueCount,
+        boolean doBlast,
+        Double bepipredThreshold,
+        Integer minEpitopeLength,
+        Integer maxEpitopeLength,
+        Long epitopeCount,
+        Integer queuePosition,
+        LocalDateTime estimatedStartDate) {
+
+    /**
+     * Summary read by a query, without the queue fields.
+     */
+    public TaskSummaryDTO(Long id, String runName, ActionType actionType, Status status, Long pid,
+            LocalDateTime executionDate, LocalDateTime startDate, LocalDateTime finishedDate, int proteomeSize,
+            Long residueCount, boolean doBlast, Double bepipredThreshold, Integer minEpitopeLength,
+            Integer maxEpitopeLength, Long epitopeCount) {
+        this(id, runName, actionType, status, pid, executionDate, startDate, finishedDate, proteomeSize,
+                residueCount, doBlast, bepipredThreshold, minEpitopeLength, maxEpitopeLength, epitopeCount, null,
+                null);
+    }
+
+    public TaskSummaryDTO withQueue(Integer queuePosition, LocalDateTime estimatedStartDate) {
+        return new TaskSummaryDTO(id, runName, actionType, status, pid, executionDate, startDate, finishedDate,
+                proteomeSize, residueCount, doBlast, bepipredThreshold, minEpitopeLength, maxEpitopeLength,
+                epitopeCount, queuePosition, estimatedStartDate);
+    }
+}
@@ -61,6 +61,13 @@ public class EpitopeTaskData {
     @Column(name = "finished_date")
     private LocalDateTime finishedDate;
 
+    /**
+     * Timestamp when the pipeline of the task was started, after waiting in
+     * the queue
+     */
+    @Column
+    private LocalDateTime startDate;
+
     /**
      * User who created this task (LAZY-loaded for performance)
      */
@@ -129,6 +136,31 @@ public class EpitopeTaskData {
     @Transient
     private List<Database> proteomes;
 
+    /**
+     * Proteomes of the BLAST search, as passed to the pipeline
+     * (alias=path:alias=path), kept while the task waits in the queue
+     */
+    @Column(length = 4000)
+    private String proteomePaths;
+
+    /**
+     * Number of residues of the input, the estimated size of the task
+     */
+    @Column
+    private Long residueCount;
+
+    /**
+     * Position of a PENDING task in the queue, from 1
+     */
+    @Transient
+    private Integer queuePosition;
+
+    /**
+     * Estimated start of a PENDING task
+     */
+    @Transient
+    private LocalDateTime estimatedStartDate;
+
     /**
      * Threshold for epitope prediction using the BEPIPRED algorithm
      * This is a floating-point value that indicates the minimum score for an
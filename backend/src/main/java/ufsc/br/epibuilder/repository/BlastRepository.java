@@ -0,0 +1,20 @@
+package ufsc.br.epibuilder.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ufsc.br.epibuilder.dto.BlastDTO;
+import ufsc.br.epibuilder.model.Blast;
+
+@Repository
+public interface BlastRepository extends JpaRepository<Blast, Long> {
+
+    @Query("SELECT new ufsc.br.epibuilder.dto.BlastDTO(b.id, e.id, b.sacc, b.pident, b.qcovs, b.qseq, b.sseq, "
+            + "b.database) FROM Blast b JOIN b.epitope e "
+            + "WHERE e.epitopeTaskData.id = :taskId AND e.id IN :epitopeIds ORDER BY e.id, b.id")
+    List<BlastDTO> findByTaskIdAndEpitopeIds(@Param("taskId") Long taskId,
+            @Param("epitopeIds") List<Long> epitopeIds);
+}
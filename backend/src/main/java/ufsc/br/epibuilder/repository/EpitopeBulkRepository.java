@@ -0,0 +1,159 @@
+package ufsc.br.epibuilder.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import lombok.extern.slf4j.Slf4j;
+import ufsc.br.epibuilder.model.Blast;
+import ufsc.br.epibuilder.model.Epitope;
+import ufsc.br.epibuilder.model.EpitopeTopology;
+
+/**
+ * Inserts the results of a task with batched JDBC statements.
+ *
+ * The entities use IDENTITY ids, which keep Hibernate from batching the
+ * inserts, so a large task would need one round trip per row. Here the ids
+ * are taken in a single query from the sequence behind each id column, set
+ * on the entities, and the rows are sent in batches, rewritten as multi-row
+ * inserts by the PostgreSQL driver with reWriteBatchedInserts.
+ */
+@Repository
+@Slf4j
+public class EpitopeBulkRepository {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String INSERT_EPITOPE = "INSERT INTO epitopes (id, epitope_id, n, score, task_data_id, "
+            + "epitope, start, end_epitope, length, hydropathy, isoelectric_point, molecular_weight, parker, "
+            + "n_glyc, n_glyc_count, karplus_schulz, kolaskar, chou_fosman, emini, bepi_pred3) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_TOPOLOGY = "INSERT INTO epitope_topologies (id, topology_data, n, "
+            + "epitope_id, method, threshold, avg_score, cover) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_BLAST = "INSERT INTO blasts (id, n, sacc, pident, qcovs, qseq, sseq, "
+            + "db_name, epitope_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public EpitopeBulkRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Inserts the epitopes of a task with their topologies and BLAST hits, in
+     * a single transaction. The ids of the inserted rows are set on the
+     * entities.
+     *
+     * @param taskId
+     * @param epitopes
+     * @return the number of inserted rows
+     */
+    @Transactional
+    public int insertAll(Long taskId, List<Epitope> epitopes) {
+        List<EpitopeTopology> topologies = new ArrayList<>();
+        List<Blast> blasts = new ArrayList<>();
+        for (Epitope epitope : epitopes) {
+            if (epitope.getEpitopeTopologies() != null) {
+                topologies.addAll(epitope.getEpitopeTopologies());
+            }
+            if (epitope.getBlasts() != null) {
+                blasts.addAll(epitope.getBlasts());
+            }
+        }
+
+        List<Long> ids = nextIds("epitopes", epitopes.size());
+        for (int i = 0; i < epitopes.size(); i++) {
+            epitopes.get(i).setId(ids.get(i));
+        }
+        ids = nextIds("epitope_topologies", topologies.size());
+        for (int i = 0; i < topologies.size(); i++) {
+            topologies.get(i).setId(ids.get(i));
+        }
+        ids = nextIds("blasts", blasts.size());
+        for (int i = 0; i < blasts.size(); i++) {
+            blasts.get(i).setId(ids.get(i));
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_EPITOPE, epitopes, BATCH_SIZE, (ps, e) -> {
+            ps.setLong(1, e.getId());
+            ps.setString(2, e.getEpitopeId());
+            setLong(ps, 3, e.getN());
+            setDouble(ps, 4, e.getScore());
+            ps.setLong(5, taskId);
+            ps.setString(6, e.getEpitope());
+            setInteger(ps, 7, e.getStart());
+            setInteger(ps, 8, e.getEndEpitope());
+            setInteger(ps, 9, e.getLength());
+            setDouble(ps, 10, e.getHydropathy());
+            setDouble(ps, 11, e.getIsoelectricPoint());
+            setDouble(ps, 12, e.getMolecularWeight());
+            setDouble(ps, 13, e.getParker());
+            ps.setString(14, e.getNGlyc());
+            setInteger(ps, 15, e.getNGlycCount());
+            setDouble(ps, 16, e.getKarplusSchulz());
+            setDouble(ps, 17, e.getKolaskar());
+            setDouble(ps, 18, e.getChouFosman());
+            setDouble(ps, 19, e.getEmini());
+            setDouble(ps, 20, e.getBepiPred3());
+        });
+
+        jdbcTemplate.batchUpdate(INSERT_TOPOLOGY, topologies, BATCH_SIZE, (ps, t) -> {
+            ps.setLong(1, t.getId());
+            ps.setString(2, t.getTopologyData());
+            setLong(ps, 3, t.getN());
+            ps.setLong(4, t.getEpitope().getId());
+            ps.setString(5, t.getMethod() == null ? null : t.getMethod().name());
+            setDouble(ps, 6, t.getThreshold());
+            setDouble(ps, 7, t.getAvgScore());
+            setDouble(ps, 8, t.getCover());
+        });
+
+        jdbcTemplate.batchUpdate(INSERT_BLAST, blasts, BATCH_SIZE, (ps, b) -> {
+            ps.setLong(1, b.getId());
+            setLong(ps, 2, b.getN());
+            ps.setString(3, b.getSacc());
+            setDouble(ps, 4, b.getPident());
+            setDouble(ps, 5, b.getQcovs());
+            ps.setString(6, b.getQseq());
+            ps.setString(7, b.getSseq());
+            ps.setString(8, b.getDatabase());
+            ps.setLong(9, b.getEpitope().getId());
+        });
+
+        log.info("Inserted {} epitopes, {} topologies and {} BLAST hits for task {}", epitopes.size(),
+                topologies.size(), blasts.size(), taskId);
+        return epitopes.size() + topologies.size() + blasts.size();
+    }
+
+    /**
+     * Takes the next ids of the sequence of the id column of the table.
+     */
+    private List<Long> nextIds(String table, int count) {
+        if (count == 0) {
+            return List.of();
+        }
+        return jdbcTemplate.queryForList(
+                "SELECT nextval(pg_get_serial_sequence(?, 'id')) FROM generate_series(1, ?)",
+                Long.class, table, count);
+    }
+
+    private static void setLong(PreparedStatement ps, int index, Long value) throws SQLException {
+        ps.setObject(index, value, Types.BIGINT);
+    }
+
+    private static void setInteger(PreparedStatement ps, int index, Integer value) throws SQLException {
+        ps.setObject(index, value, Types.INTEGER);
+    }
+
+    private static void setDouble(PreparedStatement ps, int index, Double value) throws SQLException {
+        ps.setObject(index, value, Types.DOUBLE);
+    }
+}
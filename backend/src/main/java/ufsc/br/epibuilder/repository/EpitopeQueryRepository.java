@@ -0,0 +1,285 @@
+package ufsc.br.epibuilder.repository;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import ufsc.br.epibuilder.dto.EpitopeFilter;
+import ufsc.br.epibuilder.dto.EpitopeRange;
+import ufsc.br.epibuilder.dto.EpitopeSliceDTO;
+import ufsc.br.epibuilder.dto.EpitopeSummaryDTO;
+
+/**
+ * Pages of the epitopes of a task, read as {@link EpitopeSummaryDTO} with
+ * the filters and the sort built into the query, so only the rows of the page
+ * are read and no topology or BLAST hit is loaded.
+ *
+ * Besides offset pages, the epitopes can be read in slices after a cursor,
+ * the sort value and the id of the last epitope read. A slice deep in a large
+ * task costs the same as the first one, walking the indexes on the task and
+ * the sort column (see db/indexes.sql). Null values sort as the largest ones,
+ * as in the indexes.
+ */
+@Repository
+public class EpitopeQueryRepository {
+
+    private static final String SELECT = "SELECT new ufsc.br.epibuilder.dto.EpitopeSummaryDTO(e.id, e.epitopeId, "
+            + "e.N, e.epitope, e.start, e.endEpitope, e.length, e.score, e.bepiPred3, e.hydropathy, "
+            + "e.isoelectricPoint, e.molecularWeight, e.nGlyc, e.nGlycCount, e.parker, e.karplusSchulz, "
+            + "e.kolaskar, e.chouFosman, e.emini)";
+
+    /**
+     * A property of the epitopes that can be sorted on or filtered by range.
+     */
+    private record Column(String path, Class<?> type, Function<EpitopeSummaryDTO, Object> value) {
+    }
+
+    private static final Column ID = new Column("e.id", Long.class, EpitopeSummaryDTO::id);
+
+    // properties accepted, by property of EpitopeSummaryDTO
+    private static final Map<String, Column> COLUMNS = Map.ofEntries(
+            Map.entry("id", ID),
+            Map.entry("n", new Column("e.N", Long.class, EpitopeSummaryDTO::n)),
+            Map.entry("epitopeId", new Column("e.epitopeId", String.class, EpitopeSummaryDTO::epitopeId)),
+            Map.entry("start", new Column("e.start", Integer.class, EpitopeSummaryDTO::start)),
+            Map.entry("length", new Column("e.length", Integer.class, EpitopeSummaryDTO::length)),
+            Map.entry("bepiPred3", new Column("e.bepiPred3", Double.class, EpitopeSummaryDTO::bepiPred3)),
+            Map.entry("hydropathy", new Column("e.hydropathy", Double.class, EpitopeSummaryDTO::hydropathy)),
+            Map.entry("isoelectricPoint",
+                    new Column("e.isoelectricPoint", Double.class, EpitopeSummaryDTO::isoelectricPoint)),
+            Map.entry("molecularWeight",
+                    new Column("e.molecularWeight", Double.class, EpitopeSummaryDTO::molecularWeight)),
+            Map.entry("nGlycCount", new Column("e.nGlycCount", Integer.class, EpitopeSummaryDTO::nGlycCount)),
+            Map.entry("parker", new Column("e.parker", Double.class, EpitopeSummaryDTO::parker)),
+            Map.entry("karplusSchulz", new Column("e.karplusSchulz", Double.class, EpitopeSummaryDTO::karplusSchulz)),
+            Map.entry("kolaskar", new Column("e.kolaskar", Double.class, EpitopeSummaryDTO::kolaskar)),
+            Map.entry("chouFosman", new Column("e.chouFosman", Double.class, EpitopeSummaryDTO::chouFosman)),
+            Map.entry("emini", new Column("e.emini", Double.class, EpitopeSummaryDTO::emini)));
+
+    private final EntityManager entityManager;
+
+    public EpitopeQueryRepository(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * @param taskId
+     * @param filter
+     * @param pageable page and sort, by the properties of
+     *                 {@link EpitopeSummaryDTO}
+     * @return a page of the epitopes of the task that pass the filter
+     * @throws IllegalArgumentException when sorting by an unknown property
+     */
+    @Transactional(readOnly = true)
+    public Page<EpitopeSummaryDTO> findPage(Long taskId, EpitopeFilter filter, Pageable pageable) {
+        Map<String, Object> parameters = new HashMap<>();
+        String where = where(taskId, filter, parameters);
+
+        TypedQuery<EpitopeSummaryDTO> query = entityManager.createQuery(
+                SELECT + where + orderBy(pageable.getSort()), EpitopeSummaryDTO.class);
+        parameters.forEach(query::setParameter);
+        if (pageable.isPaged()) {
+            query.setFirstResult((int) pageable.getOffset());
+            query.setMaxResults(pageable.getPageSize());
+        }
+        List<EpitopeSummaryDTO> content = query.getResultList();
+
+        return PageableExecutionUtils.getPage(content, pageable, () -> {
+            TypedQuery<Long> count = entityManager.createQuery("SELECT COUNT(e)" + where, Long.class);
+            parameters.forEach(count::setParameter);
+            return count.getSingleResult();
+        });
+    }
+
+    /**
+     * Reads the epitopes after a cursor, without counting them.
+     *
+     * @param taskId
+     * @param filter
+     * @param order      the property and the direction of the sort
+     * @param afterValue the sort value of the last epitope read, null when it
+     *                   had none
+     * @param afterId    the id of the last epitope read, null for the first
+     *                   slice
+     * @param size       the number of epitopes of the slice
+     * @return the slice, with the cursor of the next one
+     * @throws IllegalArgumentException when sorting by an unknown property or
+     *                                  the cursor does not match it
+     */
+    @Transactional(readOnly = true)
+    public EpitopeSliceDTO findSlice(Long taskId, EpitopeFilter filter, Sort.Order order, String afterValue,
+            Long afterId, int size) {
+        Column column = column(order.getProperty());
+        boolean descending = order.isDescending();
+        String direction = descending ? " DESC" : " ASC";
+        String after = descending ? " < " : " > ";
+
+        Map<String, Object> parameters = new HashMap<>();
+        StringBuilder where = new StringBuilder(where(taskId, filter, parameters));
+        if (afterId != null) {
+            parameters.put("afterId", afterId);
+            String path = column.path();
+            if (column == ID) {
+                where.append(" AND e.id").append(after).append(":afterId");
+            } else if (afterValue == null) {
+                // the nulls come last ascending and first descending
+                where.append(descending
+                        ? " AND ((" + path + " IS NULL AND e.id < :afterId) OR " + path + " IS NOT NULL)"
+                        : " AND " + path + " IS NULL AND e.id > :afterId");
+            } else {
+                parameters.put("afterValue", parse(column, afterValue));
+                where.append(" AND (").append(path).append(after).append(":afterValue OR (").append(path)
+                        .append(" = :afterValue AND e.id").append(after).append(":afterId)")
+                        .append(descending ? ")" : " OR " + path + " IS NULL)");
+            }
+        }
+        String orderBy = column == ID ? " ORDER BY e.id" + direction
+                : " ORDER BY " + column.path() + direction + ", e.id" + direction;
+
+        TypedQuery<EpitopeSummaryDTO> query = entityManager.createQuery(SELECT + where + orderBy,
+                EpitopeSummaryDTO.class);
+        parameters.forEach(query::setParameter);
+        query.setMaxResults(size + 1);
+        List<EpitopeSummaryDTO> content = query.getResultList();
+
+        boolean hasNext = content.size() > size;
+        if (hasNext) {
+            content = content.subList(0, size);
+        }
+        if (content.isEmpty()) {
+            return new EpitopeSliceDTO(content, false, null, null);
+        }
+        EpitopeSummaryDTO last = content.get(content.size() - 1);
+        return new EpitopeSliceDTO(content, hasNext, column.value().apply(last), last.id());
+    }
+
+    private static Column column(String property) {
+        Column column = COLUMNS.get(property);
+        if (column == null) {
+            throw new IllegalArgumentException("Unknown epitope property " + property);
+        }
+        return column;
+    }
+
+    /**
+     * Converts a cursor value to the type of the column.
+     */
+    private static Object parse(Column column, String value) {
+        try {
+            if (column.type() == Long.class) {
+                return Long.valueOf(value);
+            } else if (column.type() == Integer.class) {
+                return Integer.valueOf(value);
+            } else if (column.type() == Double.class) {
+                return Double.valueOf(value);
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor value " + value + " for " + column.path());
+        }
+    }
+
+    /**
+     * Converts a range bound to the type of the column, rounding inwards for
+     * the integer columns.
+     */
+    private static Object bound(Column column, double value, boolean min) {
+        double rounded = min ? Math.ceil(value) : Math.floor(value);
+        if (column.type() == Long.class) {
+            return (long) rounded;
+        } else if (column.type() == Integer.class) {
+            return (int) rounded;
+        } else if (column.type() == Double.class) {
+            return value;
+        }
+        throw new IllegalArgumentException("Cannot filter epitopes by a range of " + column.path());
+    }
+
+    /**
+     * Builds the FROM and WHERE clauses, with a condition only for the filters
+     * given.
+     */
+    private static String where(Long taskId, EpitopeFilter filter, Map<String, Object> parameters) {
+        StringBuilder where = new StringBuilder(" FROM Epitope e WHERE e.epitopeTaskData.id = :taskId");
+        parameters.put("taskId", taskId);
+        if (filter.minScore() != null) {
+            where.append(" AND e.bepiPred3 >= :minScore");
+            parameters.put("minScore", filter.minScore());
+        }
+        if (filter.maxScore() != null) {
+            where.append(" AND e.bepiPred3 <= :maxScore");
+            parameters.put("maxScore", filter.maxScore());
+        }
+        if (filter.minLength() != null) {
+            where.append(" AND e.length >= :minLength");
+            parameters.put("minLength", filter.minLength());
+        }
+        if (filter.maxLength() != null) {
+            where.append(" AND e.length <= :maxLength");
+            parameters.put("maxLength", filter.maxLength());
+        }
+        if (filter.ranges() != null) {
+            for (int i = 0; i < filter.ranges().size(); i++) {
+                EpitopeRange range = filter.ranges().get(i);
+                Column column = column(range.property());
+                if (range.min() != null) {
+                    where.append(" AND ").append(column.path()).append(" >= :rangeMin").append(i);
+                    parameters.put("rangeMin" + i, bound(column, range.min(), true));
+                }
+                if (range.max() != null) {
+                    where.append(" AND ").append(column.path()).append(" <= :rangeMax").append(i);
+                    parameters.put("rangeMax" + i, bound(column, range.max(), false));
+                }
+            }
+        }
+        if (Boolean.TRUE.equals(filter.nGlyc())) {
+            where.append(" AND e.nGlycCount > 0");
+        } else if (Boolean.FALSE.equals(filter.nGlyc())) {
+            where.append(" AND (e.nGlycCount IS NULL OR e.nGlycCount = 0)");
+        }
+        if (filter.minCover() != null) {
+            where.append(" AND EXISTS (SELECT 1 FROM EpitopeTopology et WHERE et.epitope = e AND et.cover >= :minCover");
+            parameters.put("minCover", filter.minCover());
+            if (filter.coverMethod() != null) {
+                where.append(" AND et.method = :coverMethod");
+                parameters.put("coverMethod", filter.coverMethod());
+            }
+            where.append(")");
+        }
+        if (filter.blastDatabase() != null) {
+            where.append(" AND EXISTS (SELECT 1 FROM Blast b WHERE b.epitope = e AND b.database = :blastDatabase)");
+            parameters.put("blastDatabase", filter.blastDatabase());
+        } else if (filter.blast() != null) {
+            where.append(filter.blast() ? " AND EXISTS" : " AND NOT EXISTS")
+                    .append(" (SELECT 1 FROM Blast b WHERE b.epitope = e)");
+        }
+        return where.toString();
+    }
+
+    /**
+     * Builds the ORDER BY clause, ending by the id so the pages are stable.
+     */
+    private static String orderBy(Sort sort) {
+        StringBuilder orderBy = new StringBuilder(" ORDER BY ");
+        for (Sort.Order order : sort) {
+            Column column = column(order.getProperty());
+            if (column == ID) {
+                continue;
+            }
+            orderBy.append(column.path()).append(order.isAscending() ? " ASC" : " DESC").append(", ");
+        }
+        Sort.Order byId = sort.getOrderFor("id");
+        orderBy.append("e.id").append(byId != null && byId.isDescending() ? " DESC" : " ASC");
+        return orderBy.toString();
+    }
+}
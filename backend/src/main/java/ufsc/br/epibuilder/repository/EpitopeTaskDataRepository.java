@@ -1,14 +1,18 @@
 package ufsc.br.epibuilder.repository;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import ufsc.br.epibuilder.dto.TaskSummaryDTO;
 import ufsc.br.epibuilder.model.EpitopeTaskData;
 import ufsc.br.epibuilder.model.Status;
 import ufsc.br.epibuilder.model.TaskStatus;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -16,6 +20,14 @@ public interface EpitopeTaskDataRepository extends JpaRepository<EpitopeTaskData
 
     public List<EpitopeTaskData> findTasksByUserId(Long userId);
 
+    @Query(value = "SELECT new ufsc.br.epibuilder.dto.TaskSummaryDTO(etd.id, etd.runName, etd.actionType, ts.status, "
+            + "ts.pid, etd.executionDate, etd.startDate, etd.finishedDate, etd.proteomeSize, etd.residueCount, "
+            + "etd.doBlast, etd.bepipredThreshold, etd.minEpitopeLength, etd.maxEpitopeLength, "
+            + "(SELECT COUNT(e) FROM Epitope e WHERE e.epitopeTaskData = etd)) "
+            + "FROM EpitopeTaskData etd LEFT JOIN etd.taskStatus ts WHERE etd.user.id = :userId",
+            countQuery = "SELECT COUNT(etd) FROM EpitopeTaskData etd WHERE etd.user.id = :userId")
+    Page<TaskSummaryDTO> findTaskSummariesByUserId(@Param("userId") Long userId, Pageable pageable);
+
     @Modifying
     @Query("DELETE FROM EpitopeTopology et WHERE et.epitope IN (SELECT e FROM Epitope e WHERE e.epitopeTaskData.id = :taskId)")
     void deleteTopologiesByTaskId(@Param("taskId") Long taskId);
@@ -32,8 +44,31 @@ public interface EpitopeTaskDataRepository extends JpaRepository<EpitopeTaskData
     @Query("DELETE FROM EpitopeTaskData etd WHERE etd.id = :taskId")
     void deleteTaskById(@Param("taskId") Long taskId);
 
+    @Modifying
+    @Query("UPDATE EpitopeTaskData etd SET etd.proteomeSize = :proteomeSize, etd.finishedDate = :finishedDate WHERE etd.id = :taskId")
+    void updateResults(@Param("taskId") Long taskId, @Param("proteomeSize") int proteomeSize,
+            @Param("finishedDate") LocalDateTime finishedDate);
+
+    @Modifying
+    @Query("UPDATE TaskStatus ts SET ts.status = :status WHERE ts.id = :statusId")
+    void updateStatus(@Param("statusId") Long statusId, @Param("status") Status status);
+
     public EpitopeTaskData findById(Long id);
 
     public List<EpitopeTaskData> findTasksByTaskStatusStatus(Status status);
 
+    public List<EpitopeTaskData> findTasksByTaskStatusStatusIn(List<Status> statuses);
+
+    @Query("SELECT etd.id, ts.pid, etd.user.id, etd.residueCount, etd.executionDate, etd.startDate "
+            + "FROM EpitopeTaskData etd JOIN etd.taskStatus ts WHERE ts.status = :status")
+    List<Object[]> findQueueEntriesByStatus(@Param("status") Status status);
+
+    @Query("SELECT etd.residueCount, etd.startDate, etd.finishedDate FROM EpitopeTaskData etd JOIN etd.taskStatus ts "
+            + "WHERE ts.status = :status AND etd.startDate IS NOT NULL AND etd.residueCount > 0 "
+            + "ORDER BY etd.finishedDate DESC")
+    List<Object[]> findDurationsByStatus(@Param("status") Status status, Pageable pageable);
+
+    @Query("SELECT etd.id, ts.pid FROM EpitopeTaskData etd JOIN etd.taskStatus ts WHERE ts.status = :status")
+    List<Object[]> findTaskPidsByStatus(@Param("status") Status status);
+
 }
\ No newline at end of file
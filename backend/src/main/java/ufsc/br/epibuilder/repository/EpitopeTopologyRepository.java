@@ -1,9 +1,20 @@
 package ufsc.br.epibuilder.repository;
 
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import ufsc.br.epibuilder.dto.EpitopeTopologyDTO;
 import ufsc.br.epibuilder.model.EpitopeTopology;
 
 @Repository
 public interface EpitopeTopologyRepository extends JpaRepository<EpitopeTopology, String> {
-}
\ No newline at end of file
+
+    @Query("SELECT new ufsc.br.epibuilder.dto.EpitopeTopologyDTO(et.id, e.id, et.method, et.threshold, et.avgScore, "
+            + "et.cover, et.topologyData) FROM EpitopeTopology et JOIN et.epitope e "
+            + "WHERE e.epitopeTaskData.id = :taskId AND e.id IN :epitopeIds ORDER BY e.id, et.id")
+    List<EpitopeTopologyDTO> findByTaskIdAndEpitopeIds(@Param("taskId") Long taskId,
+            @Param("epitopeIds") List<Long> epitopeIds);
+}
@@ -4,7 +4,15 @@ import ufsc.br.epibuilder.repository.DatabaseRepository;
 import ufsc.br.epibuilder.model.Database;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import br.udesc.epibuilder.blast.BlastDatabaseCache;
+import br.ufsc.epibuilder.proteomics.ProteomeIndex;
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.transaction.annotation.Transactional;
@@ -16,6 +24,15 @@ public class DatabaseService {
 
     private final DatabaseRepository dbRepository;
 
+    @Value("${epibuilder.blast.cache-folder}")
+    private String blastCacheFolder;
+
+    @Value("${epibuilder.blast.cache-size-gb}")
+    private int blastCacheSizeGb;
+
+    @Value("${epibuilder.blast.makeblastdb}")
+    private String makeblastdbPath;
+
     public Database save(Database database) {
         return dbRepository.save(database);
     }
@@ -37,4 +54,65 @@ public class DatabaseService {
         dbRepository.deleteById(id);
     }
 
+    /**
+     * Builds the suffix array index of the database FASTA file, used by the
+     * pipeline to count the epitopes without reading the whole file, and its
+     * BLAST database in the shared cache. Nothing is done for what is up to
+     * date.
+     *
+     * @param database the database to index
+     */
+    @Async
+    public void buildIndex(Database database) {
+        indexDatabase(database);
+        buildBlastDatabase(database);
+    }
+
+    private void buildBlastDatabase(Database database) {
+        File fasta = new File(database.getAbsolutePath());
+        if (!fasta.isFile()) {
+            return;
+        }
+        BlastDatabaseCache cache = new BlastDatabaseCache(new File(blastCacheFolder),
+                blastCacheSizeGb * 1024L * 1024 * 1024, makeblastdbPath);
+        try (BlastDatabaseCache.Lease lease = cache.acquire(fasta)) {
+            log.info("BLAST database of {} ready: {}", database.getAlias(), lease.getDatabase());
+        } catch (IOException e) {
+            log.error("Could not build the BLAST database of {}: {}", database.getAlias(), e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Indexes the databases registered before the index existed or changed
+     * since it was built, and fills the BLAST database cache.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildMissingIndexes() {
+        for (Database database : dbRepository.findAll()) {
+            indexDatabase(database);
+            buildBlastDatabase(database);
+        }
+    }
+
+    private void indexDatabase(Database database) {
+        File fasta = new File(database.getAbsolutePath());
+        if (!fasta.isFile()) {
+            log.warn("Database file not found, not indexed: {}", fasta);
+            return;
+        }
+        try {
+            if (ProteomeIndex.open(fasta) != null) {
+                return;
+            }
+            log.info("Building index of database {}: {}", database.getAlias(), fasta);
+            File index = ProteomeIndex.build(fasta);
+            log.info("Index of database {} written to {}", database.getAlias(), index);
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not index database {}: {}", database.getAlias(), e.getMessage(), e);
+        }
+    }
+
 }
@@ -0,0 +1,322 @@
+package ufsc.br.epibuilder.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import br.ufsc.epibuilder.EpitopeFinder;
+import br.ufsc.epibuilder.RunConfiguration;
+import br.ufsc.epibuilder.entity.SoftwareBcellEnum;
+import br.ufsc.epibuilder.entity.report.AnalysisResult;
+import br.ufsc.epibuilder.entity.report.EpitopeReport;
+import br.ufsc.epibuilder.entity.report.Report;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import ufsc.br.epibuilder.model.ActionType;
+import ufsc.br.epibuilder.model.Epitope;
+import ufsc.br.epibuilder.model.EpitopeTaskData;
+import ufsc.br.epibuilder.model.EpitopeTopology;
+import ufsc.br.epibuilder.model.Method;
+import ufsc.br.epibuilder.model.Status;
+
+/**
+ * Runs the EpiBuilder analysis of BepiPred-3.0 CSV inputs inside the backend
+ * JVM, on a bounded pool, and maps the reports straight to entities.
+ *
+ * FASTA inputs still need BepiPred-3.0 and BLAST searches still need the
+ * proteome databases, so those tasks keep going through the Nextflow pipeline
+ * started by {@link PipelineService#runPipeline(EpitopeTaskData)}.
+ */
+@Service
+@Slf4j
+public class EpitopeEngineService {
+
+    private final PipelineService pipelineService;
+    private final EpitopeTaskDataService epitopeTaskDataService;
+    private final ThreadPoolExecutor executor;
+    private final int parallelism;
+    private final String scoreCacheFolder;
+    private final int scoreCacheSizeGb;
+
+    public EpitopeEngineService(PipelineService pipelineService, EpitopeTaskDataService epitopeTaskDataService,
+            @Value("${epibuilder.engine.threads:2}") int threads,
+            @Value("${epibuilder.engine.queue-capacity:16}") int queueCapacity,
+            @Value("${epibuilder.engine.parallelism:2}") int parallelism,
+            @Value("${epibuilder.score.cache-folder:}") String scoreCacheFolder,
+            @Value("${epibuilder.score.cache-size-gb:5}") int scoreCacheSizeGb) {
+        this.pipelineService = pipelineService;
+        this.epitopeTaskDataService = epitopeTaskDataService;
+        this.parallelism = parallelism;
+        this.scoreCacheFolder = scoreCacheFolder;
+        this.scoreCacheSizeGb = scoreCacheSizeGb;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "epibuilder-engine-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Checks if the task can be analysed in-process: the input is a BepiPred-3.0
+     * CSV file and no BLAST search was requested.
+     *
+     * @param taskData
+     * @return
+     */
+    public boolean supports(EpitopeTaskData taskData) {
+        return taskData.getFile() != null
+                && taskData.getFile().getName().toLowerCase().endsWith(".csv")
+                && !taskData.isDoBlast();
+    }
+
+    /**
+     * Queues the analysis of a saved task.
+     *
+     * @param taskData a task already saved with the RUNNING status
+     * @return false if the queue is full and the task was not accepted
+     */
+    public boolean submit(EpitopeTaskData taskData) {
+        try {
+            executor.execute(() -> run(taskData));
+            log.info("Task {} queued for in-process analysis", taskData.getId());
+            return true;
+        } catch (RejectedExecutionException e) {
+            log.warn("In-process queue is full, task {} not accepted", taskData.getId());
+            return false;
+        }
+    }
+
+    /**
+     * Queues again the tasks left RUNNING without PID by a previous instance
+     * of the backend: their analyses were lost with the queue. The tasks that
+     * do not fit in the queue are marked as FAILED.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverTasks() {
+        try {
+            for (Object[] runningTask : epitopeTaskDataService.findTaskPidsByStatus(Status.RUNNING)) {
+                if (runningTask[1] != null) {
+                    continue;
+                }
+                EpitopeTaskData taskData = epitopeTaskDataService.findById((Long) runningTask[0]);
+                taskData.setFile(new File(taskData.getAbsolutePath()));
+                log.info("Recovering in-process analysis of task {}", taskData.getId());
+                if (!submit(taskData)) {
+                    pipelineService.failTask(taskData);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error recovering in-process tasks: {}", e.getMessage(), e);
+        }
+    }
+
+    private void run(EpitopeTaskData taskData) {
+        Path workDir = Paths.get(taskData.getCompleteBasename());
+        Path logFile = workDir.resolve("pipeline.log");
+        try {
+            appendLog(logFile, "Starting in-process analysis of " + taskData.getFile().getName());
+            RunConfiguration config = toConfiguration(taskData);
+
+            AnalysisResult result = EpitopeFinder.analyze(config);
+            appendLog(logFile, "Analysis done: " + result.getProteins().size() + " proteins, "
+                    + result.getReports().size() + " epitopes");
+
+            EpitopeFinder.writeReports(config, result);
+            renameReports(workDir);
+            appendLog(logFile, "Reports written");
+
+            List<Epitope> epitopes = toEpitopes(result, config, taskData);
+            pipelineService.completeTask(taskData, epitopes, result.getProteins().size());
+            appendLog(logFile, "Completed");
+        } catch (Exception e) {
+            log.error("In-process analysis failed for task {}: {}", taskData.getId(), e.getMessage(), e);
+            StringWriter trace = new StringWriter();
+            e.printStackTrace(new PrintWriter(trace));
+            appendLog(logFile, "Failed: " + trace);
+            pipelineService.failTask(taskData);
+        }
+    }
+
+    /**
+     * Builds the run parameters of a task, with the same defaults used by the
+     * pipeline when a parameter is not given. The proteins of a task are
+     * processed by epibuilder.engine.parallelism threads. The scores are kept
+     * in the score cache, so a task with the same input file only builds the
+     * epitopes again.
+     *
+     * @param taskData
+     * @return
+     */
+    public RunConfiguration toConfiguration(EpitopeTaskData taskData) {
+        if (ActionType.DEFAULT.toString().equalsIgnoreCase(taskData.getActionType().getDesc())) {
+            taskData.setBepipredThreshold(null);
+            taskData.setMinEpitopeLength(null);
+            taskData.setMaxEpitopeLength(null);
+        }
+
+        RunConfiguration.Builder builder = RunConfiguration.builder()
+                .bepipredFile(taskData.getFile())
+                .destinationFolder(taskData.getCompleteBasename())
+                .basename("")
+                .parallelism(parallelism)
+                .scoreCacheFolder(scoreCacheFolder)
+                .scoreCacheSize(scoreCacheSizeGb * 1024L * 1024 * 1024);
+        if (taskData.getBepipredThreshold() != null) {
+            builder.thresholdBepipred(taskData.getBepipredThreshold());
+        }
+        if (taskData.getMinEpitopeLength() != null) {
+            builder.minLength(taskData.getMinEpitopeLength());
+        }
+        if (taskData.getMaxEpitopeLength() != null) {
+            builder.maxLength(taskData.getMaxEpitopeLength());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Removes the 'epibuilder-' prefix of the reports, as the pipeline does, so
+     * both kinds of tasks have the same files.
+     */
+    private static void renameReports(Path workDir) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(workDir, "epibuilder-*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString().substring("epibuilder-".length());
+                Files.move(file, workDir.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    /**
+     * Maps the reports to epitopes, with the values rounded as in the TSV
+     * reports read by {@link PipelineService}.
+     *
+     * @param result
+     * @param config
+     * @param taskData
+     * @return
+     */
+    public static List<Epitope> toEpitopes(AnalysisResult result, RunConfiguration config, EpitopeTaskData taskData) {
+        List<Epitope> epitopes = new ArrayList<>(result.getReports().size());
+        long n = 1;
+        for (Report report : result.getReports()) {
+            Epitope epitope = new Epitope();
+            epitope.setN(n);
+            epitope.setEpitopeId(report.getProteinId());
+            epitope.setEpitope(report.getEpitope());
+            epitope.setStart(report.getStart());
+            epitope.setEndEpitope(report.getEndEpitope());
+            epitope.setNGlyc(report.getnGlyc());
+            epitope.setNGlycCount(report.getnGlycMotifs().size());
+            epitope.setLength(report.getLength());
+            epitope.setMolecularWeight(round(report.getMw() / 1000));
+            epitope.setIsoelectricPoint(round(report.getIp()));
+            epitope.setHydropathy(round(report.getAvgHydropathy()));
+            epitope.setBepiPred3(round(report.getAvgBepipredScore()));
+            for (EpitopeReport epitopeReport : report.getEpitopeReports()) {
+                setScore(epitope, epitopeReport.getMethod(), round(epitopeReport.getAvgScore()));
+            }
+            epitope.setEpitopeTaskData(taskData);
+            epitope.setEpitopeTopologies(toTopologies(report, n, config, epitope));
+            epitopes.add(epitope);
+            n++;
+        }
+        return epitopes;
+    }
+
+    private static List<EpitopeTopology> toTopologies(Report report, long n, RunConfiguration config,
+            Epitope epitope) {
+        List<EpitopeTopology> topologies = new ArrayList<>();
+        topologies.add(topology(n, Method.BEPIPRED, round(config.getThresholdBepipred()),
+                round(report.getAvgBepipredScore()), 0.0, report.getEpitope(), epitope));
+        for (EpitopeReport epitopeReport : report.getEpitopeReports()) {
+            topologies.add(topology(n, Method.fromDescription(epitopeReport.getMethod().description),
+                    round(epitopeReport.getThreshold()), round(epitopeReport.getAvgScore()),
+                    round(epitopeReport.getTopology().getValue()), epitopeReport.getTopology().getDescription(),
+                    epitope));
+        }
+        if (!report.getEpitopeReports().isEmpty()) {
+            topologies.add(topology(n, Method.ALL_MATCHES, 0.0, 0.0, round(report.getTopologyCoverValidation()),
+                    report.getTopologyValidation(), epitope));
+        }
+        topologies.add(topology(n, Method.N_GLYC, 0.0, 0.0, round(report.getnGlycTopology().getValue()),
+                report.getnGlycTopology().getDescription(), epitope));
+        topologies.add(topology(n, Method.HYDROPATHY, 0.0, round(report.getAvgHydropathy()), 0.0,
+                report.getHydropathyTopology().getDescription(), epitope));
+        return topologies;
+    }
+
+    private static EpitopeTopology topology(long n, Method method, Double threshold, Double avgScore, Double cover,
+            String data, Epitope epitope) {
+        EpitopeTopology topology = new EpitopeTopology();
+        topology.setN(n);
+        topology.setMethod(method);
+        topology.setThreshold(threshold);
+        topology.setAvgScore(avgScore);
+        topology.setCover(cover);
+        topology.setTopologyData(data);
+        topology.setEpitope(epitope);
+        return topology;
+    }
+
+    private static void setScore(Epitope epitope, SoftwareBcellEnum method, Double score) {
+        switch (method) {
+            case EMINI -> epitope.setEmini(score);
+            case KOLASKAR -> epitope.setKolaskar(score);
+            case CHOU_FOSMAN -> epitope.setChouFosman(score);
+            case KARPLUS_SCHULZ -> epitope.setKarplusSchulz(score);
+            case PARKER -> epitope.setParker(score);
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Rounds to 2 decimals in the same way as %.2f in the TSV reports.
+     */
+    private static Double round(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return value;
+        }
+        return new BigDecimal(value).setScale(2, RoundingMode.HALF_UP).doubleValue();
+    }
+
+    private static void appendLog(Path logFile, String message) {
+        try {
+            Files.writeString(logFile, LocalDateTime.now() + " " + message + System.lineSeparator(),
+                    StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            log.warn("Could not write to {}: {}", logFile, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -1,7 +1,18 @@
 package ufsc.br.epibuilder.service;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import ufsc.br.epibuilder.dto.BlastDTO;
+import ufsc.br.epibuilder.dto.EpitopeFilter;
+import ufsc.br.epibuilder.dto.EpitopeSliceDTO;
+import ufsc.br.epibuilder.dto.EpitopeSummaryDTO;
+import ufsc.br.epibuilder.dto.EpitopeTopologyDTO;
+import ufsc.br.epibuilder.repository.BlastRepository;
+import ufsc.br.epibuilder.repository.EpitopeQueryRepository;
 import ufsc.br.epibuilder.repository.EpitopeRepository;
+import ufsc.br.epibuilder.repository.EpitopeTopologyRepository;
 import ufsc.br.epibuilder.model.Epitope;
 import java.util.List;
 import java.util.Optional;
@@ -13,9 +24,16 @@ import java.util.Optional;
 public class EpitopeService {
 
     private final EpitopeRepository epitopeRepository;
+    private final EpitopeQueryRepository epitopeQueryRepository;
+    private final EpitopeTopologyRepository epitopeTopologyRepository;
+    private final BlastRepository blastRepository;
 
-    public EpitopeService(EpitopeRepository epitopeRepository) {
+    public EpitopeService(EpitopeRepository epitopeRepository, EpitopeQueryRepository epitopeQueryRepository,
+            EpitopeTopologyRepository epitopeTopologyRepository, BlastRepository blastRepository) {
         this.epitopeRepository = epitopeRepository;
+        this.epitopeQueryRepository = epitopeQueryRepository;
+        this.epitopeTopologyRepository = epitopeTopologyRepository;
+        this.blastRepository = blastRepository;
     }
 
     /**
@@ -54,4 +72,57 @@ public class EpitopeService {
     public List<Epitope> saveAll(List<Epitope> epitopes) {
         return epitopeRepository.saveAll(epitopes);
     }
+
+    /**
+     * Retrieves a page of the epitopes of a task, without their topologies and
+     * BLAST hits.
+     *
+     * @param taskId   the ID of the task
+     * @param filter   the filters of the epitopes
+     * @param pageable the page and the sort
+     * @return the page of epitopes
+     */
+    public Page<EpitopeSummaryDTO> findByTask(Long taskId, EpitopeFilter filter, Pageable pageable) {
+        return epitopeQueryRepository.findPage(taskId, filter, pageable);
+    }
+
+    /**
+     * Retrieves the epitopes of a task after a cursor, without their
+     * topologies and BLAST hits.
+     *
+     * @param taskId     the ID of the task
+     * @param filter     the filters of the epitopes
+     * @param order      the sort
+     * @param afterValue the sort value of the last epitope read
+     * @param afterId    the ID of the last epitope read, null for the first
+     *                   slice
+     * @param size       the number of epitopes
+     * @return the slice of epitopes, with the cursor of the next one
+     */
+    public EpitopeSliceDTO findByTaskAfter(Long taskId, EpitopeFilter filter, Sort.Order order, String afterValue,
+            Long afterId, int size) {
+        return epitopeQueryRepository.findSlice(taskId, filter, order, afterValue, afterId, size);
+    }
+
+    /**
+     * Retrieves the topologies of some epitopes of a task in a single query.
+     *
+     * @param taskId     the ID of the task
+     * @param epitopeIds the IDs of the epitopes, usually of a page
+     * @return the topologies, ordered by epitope
+     */
+    public List<EpitopeTopologyDTO> findTopologies(Long taskId, List<Long> epitopeIds) {
+        return epitopeIds.isEmpty() ? List.of() : epitopeTopologyRepository.findByTaskIdAndEpitopeIds(taskId, epitopeIds);
+    }
+
+    /**
+     * Retrieves the BLAST hits of some epitopes of a task in a single query.
+     *
+     * @param taskId     the ID of the task
+     * @param epitopeIds the IDs of the epitopes, usually of a page
+     * @return the BLAST hits, ordered by epitope
+     */
+    public List<BlastDTO> findBlasts(Long taskId, List<Long> epitopeIds) {
+        return epitopeIds.isEmpty() ? List.of() : blastRepository.findByTaskIdAndEpitopeIds(taskId, epitopeIds);
+    }
 }
@@ -1,8 +1,15 @@
 package ufsc.br.epibuilder.service;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import ufsc.br.epibuilder.dto.TaskSummaryDTO;
+import ufsc.br.epibuilder.repository.EpitopeBulkRepository;
 import ufsc.br.epibuilder.repository.EpitopeTaskDataRepository;
+import ufsc.br.epibuilder.model.Epitope;
 import ufsc.br.epibuilder.model.EpitopeTaskData;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import lombok.extern.slf4j.Slf4j;
@@ -19,9 +26,12 @@ import ufsc.br.epibuilder.model.Status;
 public class EpitopeTaskDataService {
 
     private final EpitopeTaskDataRepository epitopeTaskDataRepository;
+    private final EpitopeBulkRepository epitopeBulkRepository;
 
-    public EpitopeTaskDataService(EpitopeTaskDataRepository epitopeTaskDataRepository) {
+    public EpitopeTaskDataService(EpitopeTaskDataRepository epitopeTaskDataRepository,
+            EpitopeBulkRepository epitopeBulkRepository) {
         this.epitopeTaskDataRepository = epitopeTaskDataRepository;
+        this.epitopeBulkRepository = epitopeBulkRepository;
     }
 
     /**
@@ -55,6 +65,55 @@ public class EpitopeTaskDataService {
         return epitopeTaskDataRepository.findTasksByTaskStatusStatus(status);
     }
 
+    /**
+     * Inserts the epitopes of a task and marks it as COMPLETED, in a single
+     * transaction, so a task interrupted meanwhile is left RUNNING without
+     * epitopes and can be processed again. The task is updated with bulk
+     * updates, without merging it with its epitopes.
+     *
+     * @param task
+     * @param epitopes epitopes with their topologies and BLAST hits
+     * @param proteomeSize number of proteins of the input
+     * @param finishedDate
+     */
+    public void complete(EpitopeTaskData task, List<Epitope> epitopes, int proteomeSize,
+            LocalDateTime finishedDate) {
+        epitopeBulkRepository.insertAll(task.getId(), epitopes);
+        epitopeTaskDataRepository.updateResults(task.getId(), proteomeSize, finishedDate);
+        epitopeTaskDataRepository.updateStatus(task.getTaskStatus().getId(), Status.COMPLETED);
+    }
+
+    public List<EpitopeTaskData> findTasksByTaskStatusStatusIn(List<Status> statuses) {
+        return epitopeTaskDataRepository.findTasksByTaskStatusStatusIn(statuses);
+    }
+
+    /**
+     * @param status
+     * @return the id, PID, user id, residue count, execution date and start
+     * date of the tasks with the status, without loading the tasks
+     */
+    public List<Object[]> findQueueEntriesByStatus(Status status) {
+        return epitopeTaskDataRepository.findQueueEntriesByStatus(status);
+    }
+
+    /**
+     * @param limit
+     * @return the residue count, start date and finished date of the last
+     * completed tasks that waited in the queue
+     */
+    public List<Object[]> findRecentDurations(int limit) {
+        return epitopeTaskDataRepository.findDurationsByStatus(Status.COMPLETED, PageRequest.of(0, limit));
+    }
+
+    /**
+     * @param status
+     * @return the id and the PID of the tasks with the status, without loading
+     * the tasks
+     */
+    public List<Object[]> findTaskPidsByStatus(Status status) {
+        return epitopeTaskDataRepository.findTaskPidsByStatus(status);
+    }
+
     @Transactional
     public void deleteEpitopeTaskDataWithAssociations(Long id) {
         epitopeTaskDataRepository.deleteTopologiesByTaskId(id);
@@ -63,6 +122,19 @@ public class EpitopeTaskDataService {
         epitopeTaskDataRepository.deleteTaskById(id);
     }
 
+    /**
+     * Retrieves a page of the tasks of a user as summaries, without loading
+     * the tasks or their epitopes.
+     *
+     * @param userId
+     * @param pageable
+     * @return
+     */
+    @Transactional(readOnly = true)
+    public Page<TaskSummaryDTO> findTaskSummariesByUserId(Long userId, Pageable pageable) {
+        return epitopeTaskDataRepository.findTaskSummariesByUserId(userId, pageable);
+    }
+
     public List<EpitopeTaskData> findTasksByUserId(Long userId) {
 
         log.info("Fetching tasks for user ID: {}", userId);
@@ -15,14 +15,20 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import io.jsonwebtoken.lang.Objects;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import ufsc.br.epibuilder.model.ActionType;
 import ufsc.br.epibuilder.model.Blast;
@@ -52,19 +58,39 @@ import java.time.ZonedDateTime;
 @Slf4j
 public class PipelineService {
 
-    private final ExecutorService executor = Executors.newCachedThreadPool();
     private final Map<String, TaskStatus> tasks = new ConcurrentHashMap<>();
+    // tasks whose results are being read, so a task is never ingested twice
+    private final Set<Long> ingesting = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor ingestionExecutor;
     private final EpitopeTaskDataService epitopeTaskDataService;
-    private final EpitopeService epitopeService;
     private final EpitopeTopologyService epitopeTopologyService;
     private final AuthService authService;
 
+    @Value("${epibuilder.blast.cache-folder}")
+    private String blastCacheFolder;
+
+    @Value("${epibuilder.blast.cache-size-gb}")
+    private int blastCacheSizeGb;
+
+    @Value("${epibuilder.score.cache-folder:}")
+    private String scoreCacheFolder;
+
+    @Value("${epibuilder.score.cache-size-gb:5}")
+    private int scoreCacheSizeGb;
+
     public PipelineService(EpitopeTaskDataService epitopeTaskDataService, EpitopeTopologyService epitopeTopologyService,
-            EpitopeService epitopeService, AuthService authService) {
+            AuthService authService, @Value("${epibuilder.ingestion.threads:2}") int ingestionThreads) {
         this.epitopeTaskDataService = epitopeTaskDataService;
         this.authService = authService;
         this.epitopeTopologyService = epitopeTopologyService;
-        this.epitopeService = epitopeService;
+        AtomicInteger count = new AtomicInteger();
+        this.ingestionExecutor = new ThreadPoolExecutor(ingestionThreads, ingestionThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "epibuilder-ingestion-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
     }
 
     /**
@@ -111,11 +137,7 @@ public class PipelineService {
             if (taskData.isDoBlast()) {
                 fullCommand.append("--search blast ");
 
-                List<String> proteomes = taskData.getProteomes().stream()
-                        .map(Database::toString)
-                        .collect(Collectors.toList());
-
-                fullCommand.append("--proteomes ").append(String.join(":", proteomes)).append(" ");
+                fullCommand.append("--proteomes ").append(getProteomePaths(taskData)).append(" ");
 
                 if (taskData.getBlastMinCoverCutoff() != 90) {
                     fullCommand.append("--cover ").append(taskData.getBlastMinCoverCutoff()).append(" ");
@@ -128,6 +150,14 @@ public class PipelineService {
                 if (taskData.getBlastWordSize() != 4) {
                     fullCommand.append("--word-size ").append(taskData.getBlastWordSize()).append(" ");
                 }
+
+                fullCommand.append("--blast_cache ").append(blastCacheFolder).append(" ");
+                fullCommand.append("--blast_cache_size ").append(blastCacheSizeGb).append(" ");
+            }
+
+            if (scoreCacheFolder != null && !scoreCacheFolder.isBlank()) {
+                fullCommand.append("--score_cache ").append(scoreCacheFolder).append(" ");
+                fullCommand.append("--score_cache_size ").append(scoreCacheSizeGb).append(" ");
             }
 
             command.add(fullCommand.toString().trim());
@@ -169,6 +199,22 @@ public class PipelineService {
         }
     }
 
+    /**
+     * Returns the proteomes of the BLAST search as passed to the pipeline,
+     * keeping them in the task so they are saved with it.
+     * 
+     * @param taskData
+     * @return alias=path:alias=path
+     */
+    public static String getProteomePaths(EpitopeTaskData taskData) {
+        if (taskData.getProteomePaths() == null && taskData.getProteomes() != null) {
+            taskData.setProteomePaths(taskData.getProteomes().stream()
+                    .map(Database::toString)
+                    .collect(Collectors.joining(":")));
+        }
+        return taskData.getProteomePaths();
+    }
+
     /**
      * Adds an optional parameter to the command if the parameter value is not null
      * or "none".
@@ -186,32 +232,85 @@ public class PipelineService {
     }
 
     /**
-     * This method is scheduled to run every 5 minutes. It checks for running tasks
-     * and updates their status if the process is no longer running.
-     * It also logs the files in the complete directory of the task.
+     * Reads the results of a pipeline started by
+     * {@link #runPipeline(EpitopeTaskData)} as soon as its process exits.
      * 
-     * If the process is not running, it updates the task status to COMPLETED.
+     * @param task    the task already saved with the PID of the process
+     * @param process
+     */
+    public void watch(EpitopeTaskData task, Process process) {
+        Long taskId = task.getId();
+        process.onExit().thenAccept(exited -> {
+            log.info("Pipeline of task {} exited with code {}", taskId, exited.exitValue());
+            ingest(taskId);
+        });
+    }
+
+    /**
+     * Recovers the tasks left RUNNING by a previous instance of the backend.
+     * The pipelines still alive are watched until they exit, the results of
+     * the others are read now. Only the ids and PIDs are loaded.
      * 
+     * The tasks analysed in-process, without PID, are recovered by
+     * {@link EpitopeEngineService}.
      */
-    @Scheduled(fixedRate = 60_000)
-    public void monitorRunningTasks() {
-        log.info("Monitoring running tasks...");
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverRunningTasks() {
         try {
-            log.info("Searching for running tasks...");
-            List<EpitopeTaskData> runningTasks = epitopeTaskDataService.findTasksByTaskStatusStatus(Status.RUNNING);
+            List<Object[]> runningTasks = epitopeTaskDataService.findTaskPidsByStatus(Status.RUNNING);
             log.info("Found {} running tasks", runningTasks.size());
-            for (EpitopeTaskData task : runningTasks) {
-                log.info("Checking task ID {} with PID {}", task.getId(), task.getTaskStatus().getPid());
-                long pid = task.getTaskStatus().getPid();
-                boolean isRunning = isProcessRunning(pid);
-
-                if (!isRunning) {
-                    log.info("PID {} is not running anymore. Processing task ID {}", pid, task.getId());
-                    processCompletedTask(task);
+            for (Object[] runningTask : runningTasks) {
+                Long taskId = (Long) runningTask[0];
+                Long pid = (Long) runningTask[1];
+                if (pid == null) {
+                    continue;
+                }
+                ProcessHandle process = ProcessHandle.of(pid).filter(ProcessHandle::isAlive).orElse(null);
+                if (process != null) {
+                    log.info("PID {} of task {} is still running, waiting for it", pid, taskId);
+                    process.onExit().thenRun(() -> ingest(taskId));
+                } else {
+                    log.info("PID {} is not running anymore. Processing task ID {}", pid, taskId);
+                    ingest(taskId);
                 }
             }
         } catch (Exception e) {
-            log.error("Error in monitorRunningTasks: {}", e.getMessage());
+            log.error("Error recovering running tasks: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Queues the reading of the results of a task whose pipeline has exited.
+     * 
+     * @param taskId
+     */
+    private void ingest(Long taskId) {
+        if (!ingesting.add(taskId)) {
+            log.info("Results of task {} are already being processed", taskId);
+            return;
+        }
+        try {
+            ingestionExecutor.execute(() -> {
+                EpitopeTaskData task = null;
+                try {
+                    task = epitopeTaskDataService.findById(taskId);
+                    if (task == null || task.getTaskStatus().getStatus() != Status.RUNNING) {
+                        log.info("Task {} is not running anymore, skipping its results", taskId);
+                        return;
+                    }
+                    processCompletedTask(task);
+                } catch (Exception e) {
+                    log.error("Error processing results of task {}: {}", taskId, e.getMessage(), e);
+                    if (task != null) {
+                        failTask(task);
+                    }
+                } finally {
+                    ingesting.remove(taskId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            ingesting.remove(taskId);
+            log.error("Results of task {} not queued: {}", taskId, e.getMessage());
         }
     }
 
@@ -268,8 +367,7 @@ public class PipelineService {
                             List<Blast> convertedBlasts = parseBlastCsv(blastPath.toString());
                             log.info("BLASTs converted: {}", convertedBlasts.size());
 
-                            List<Epitope> updatedEpitopes = associateBlasts(completeEpitopes, convertedBlasts);
-                            completeEpitopes.addAll(updatedEpitopes);
+                            associateBlasts(completeEpitopes, convertedBlasts);
 
                             log.info("BLAST completed for file {}", blastPath.getFileName());
                         }
@@ -282,35 +380,51 @@ public class PipelineService {
                 }
             }
 
-            try {
-                log.info("Saving {} epitopes to database with all associations...", completeEpitopes.size());
-                completeEpitopes = epitopeService.saveAll(completeEpitopes);
-                log.info("Epitopes successfully saved to database.");
-            } catch (Exception e) {
-                log.error("Failed to save epitopes to database: {}", e.getMessage(), e);
-                throw new RuntimeException("Database save operation failed", e);
-            }
-
-            // Save the task with the epitopes
-            task.setEpitopes(completeEpitopes);
-
             // Count proteome size
             int proteomeSize = countProteins(proteinSummary.toString());
-            task.setProteomeSize(proteomeSize);
 
-            // Update task status
-            task.getTaskStatus().setStatus(Status.COMPLETED);
-            LocalDateTime now = ZonedDateTime.now(ZoneId.of("America/Sao_Paulo")).toLocalDateTime();
-            task.setFinishedDate(now);
-            epitopeTaskDataService.save(task);
-
-            log.info("Successfully processed results for task {}", task.getId());
+            completeTask(task, completeEpitopes, proteomeSize);
 
         } catch (IOException e) {
             log.error("Error processing result files for task {}: {}", task.getId(), e.getMessage());
-            task.getTaskStatus().setStatus(Status.FAILED);
-            epitopeTaskDataService.save(task);
+            failTask(task);
+        }
+    }
+
+    /**
+     * Saves the epitopes of a finished task, with their topologies and BLAST
+     * hits, and marks the task as COMPLETED.
+     * 
+     * @param task
+     * @param epitopes
+     * @param proteomeSize number of proteins of the input
+     */
+    public void completeTask(EpitopeTaskData task, List<Epitope> epitopes, int proteomeSize) {
+        LocalDateTime now = ZonedDateTime.now(ZoneId.of("America/Sao_Paulo")).toLocalDateTime();
+        try {
+            log.info("Saving {} epitopes to database with all associations...", epitopes.size());
+            epitopeTaskDataService.complete(task, epitopes, proteomeSize, now);
+            log.info("Epitopes successfully saved to database.");
+        } catch (Exception e) {
+            log.error("Failed to save epitopes to database: {}", e.getMessage(), e);
+            throw new RuntimeException("Database save operation failed", e);
         }
+
+        task.setProteomeSize(proteomeSize);
+        task.getTaskStatus().setStatus(Status.COMPLETED);
+        task.setFinishedDate(now);
+
+        log.info("Successfully processed results for task {}", task.getId());
+    }
+
+    /**
+     * Marks the task as FAILED.
+     * 
+     * @param task
+     */
+    public void failTask(EpitopeTaskData task) {
+        task.getTaskStatus().setStatus(Status.FAILED);
+        epitopeTaskDataService.save(task);
     }
 
     public List<Blast> parseBlastCsv(String filePath) throws IOException {
@@ -318,19 +432,14 @@ public class PipelineService {
 
         try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
             String line;
-            boolean isFirstLine = true;
 
             while ((line = br.readLine()) != null) {
-                if (isFirstLine) {
-                    isFirstLine = false;
-                    continue;
-                }
-
-                if (line.trim().isEmpty())
+                // the header line was written only by older versions of the core
+                if (line.trim().isEmpty() || line.startsWith("qacc\t"))
                     continue;
 
                 String[] columns = line.split("\\t");
-                log.info("Columns length: {}", columns.length);
+                log.debug("Columns length: {}", columns.length);
                 for (int i = 0; i < columns.length; i++) {
                     columns[i] = columns[i].trim();
                 }
@@ -400,9 +509,9 @@ public class PipelineService {
         while ((line = reader.readLine()) != null) {
             String[] columns = line.split("\t");
             Epitope epitope = new Epitope();
-            log.info("Columns length: {}", columns.length);
-            log.info("Columns: {}", (Object) columns);
-            log.info("Processing line: {}", line);
+            log.debug("Columns length: {}", columns.length);
+            log.debug("Columns: {}", (Object) columns);
+            log.debug("Processing line: {}", line);
 
             epitope.setN(Long.parseLong(columns[0]));
             epitope.setEpitopeId(columns[1]);
@@ -440,7 +549,7 @@ public class PipelineService {
 
             String line = lines.get(i);
 
-            log.info("Processing line: {}", line);
+            log.debug("Processing line: {}", line);
 
             if (line.trim().isEmpty()) {
                 continue;
@@ -448,7 +557,7 @@ public class PipelineService {
 
             String[] parts = line.split("\t");
 
-            log.info("Parts length: {}", parts.length);
+            log.debug("Parts length: {}", parts.length);
 
             if (!parts[0].trim().isEmpty()) {
                 currentN = Long.parseLong(parts[0]);
@@ -469,9 +578,9 @@ public class PipelineService {
         EpitopeTopology topology = new EpitopeTopology();
         topology.setN(n);
 
-        log.info("Creating topology for N: {}", n);
-        log.info("Parts: {}", (Object) parts);
-        log.info("Method name: {}", methodName);
+        log.debug("Creating topology for N: {}", n);
+        log.debug("Parts: {}", (Object) parts);
+        log.debug("Method name: {}", methodName);
 
         try {
             // Clean up method name from input
@@ -482,11 +591,11 @@ public class PipelineService {
                 cleanedMethodName = "BepiPred";
             }
 
-            log.info("Method name: {}", cleanedMethodName);
+            log.debug("Method name: {}", cleanedMethodName);
 
             // Use the enum's fromDescription method
             Method method = Method.fromDescription(cleanedMethodName);
-            log.info(method.getDescription());
+            log.debug(method.getDescription());
             topology.setMethod(method);
         } catch (IllegalArgumentException e) {
             log.error("Invalid method name: '{}', using ALL_MATCHES as fallback. Error: {}", methodName,
@@ -504,7 +613,8 @@ public class PipelineService {
             topology.setThreshold(parseDoubleSafe(parts[3]));
             topology.setAvgScore(parseDoubleSafe(parts[4]));
             topology.setCover(parts[5].equals("-") ? 0.0 : parseDoubleSafe(parts[5]));
-            topology.setTopologyData(parts[6]);
+            // the report pads the topology, the in-process engine stores it unpadded
+            topology.setTopologyData(parts[6].trim());
 
         } catch (Exception e) {
             log.error("Error parsing topology data for method {}: {}", methodName, e.getMessage());
@@ -562,7 +672,12 @@ public class PipelineService {
         return epitopes;
     }
 
-    private boolean isProcessRunning(long pid) {
-        return ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false);
+    /**
+     * Stops the ingestion. The tasks interrupted are still RUNNING and are
+     * recovered on the next start.
+     */
+    @PreDestroy
+    public void shutdown() {
+        ingestionExecutor.shutdownNow();
     }
 }
@@ -0,0 +1,329 @@
+package ufsc.br.epibuilder.service;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.data.domain.Page;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import lombok.extern.slf4j.Slf4j;
+import ufsc.br.epibuilder.dto.TaskSummaryDTO;
+import ufsc.br.epibuilder.model.EpitopeTaskData;
+import ufsc.br.epibuilder.model.Status;
+
+/**
+ * Starts the Nextflow pipelines of the tasks on a fixed number of slots.
+ *
+ * A submitted task is saved as PENDING and waits in the queue until a slot is
+ * free. The queue is the PENDING tasks in the database, so it survives a
+ * restart, and a slot is taken by each RUNNING task whose process is alive.
+ *
+ * The next task is the one of the user with the fewest running tasks, and
+ * among them the smallest input by residue count. The size of a task shrinks
+ * while it waits, so a large input is not postponed forever.
+ */
+@Service
+@Slf4j
+public class TaskSchedulerService {
+
+    private static final ZoneId ZONE = ZoneId.of("America/Sao_Paulo");
+    // last completed tasks used to estimate the pipeline speed
+    private static final int HISTORY = 20;
+
+    private final PipelineService pipelineService;
+    private final EpitopeTaskDataService epitopeTaskDataService;
+    private final int slots;
+    private final long agingMinutes;
+    private final double secondsPerResidue;
+    private final long overheadSeconds;
+
+    public TaskSchedulerService(PipelineService pipelineService, EpitopeTaskDataService epitopeTaskDataService,
+            @Value("${epibuilder.scheduler.slots:2}") int slots,
+            @Value("${epibuilder.scheduler.aging-minutes:30}") long agingMinutes,
+            @Value("${epibuilder.scheduler.seconds-per-residue:0.01}") double secondsPerResidue,
+            @Value("${epibuilder.scheduler.overhead-seconds:120}") long overheadSeconds) {
+        this.pipelineService = pipelineService;
+        this.epitopeTaskDataService = epitopeTaskDataService;
+        this.slots = Math.max(1, slots);
+        this.agingMinutes = Math.max(1, agingMinutes);
+        this.secondsPerResidue = secondsPerResidue;
+        this.overheadSeconds = overheadSeconds;
+    }
+
+    /**
+     * Entry of the queue or of a running pipeline, read without loading the
+     * task.
+     */
+    private record Entry(Long id, Long pid, Long userId, long residues, LocalDateTime executionDate,
+            LocalDateTime startDate) {
+
+        Entry(Object[] row) {
+            this((Long) row[0], (Long) row[1], (Long) row[2], row[3] != null ? (Long) row[3] : 0L,
+                    (LocalDateTime) row[4], (LocalDateTime) row[5]);
+        }
+    }
+
+    /**
+     * Counts the residues of an input: the sequence letters of a FASTA file or
+     * the lines of a BepiPred-3.0 CSV file, one per residue.
+     *
+     * @param input
+     * @return
+     * @throws IOException
+     */
+    public static long countResidues(Path input) throws IOException {
+        boolean csv = input.getFileName().toString().toLowerCase().endsWith(".csv");
+        long count = 0;
+        try (BufferedReader reader = Files.newBufferedReader(input)) {
+            String line;
+            boolean header = csv;
+            while ((line = reader.readLine()) != null) {
+                if (csv) {
+                    if (header) {
+                        header = false;
+                    } else if (!line.isBlank()) {
+                        count++;
+                    }
+                } else if (!line.startsWith(">") && !line.startsWith(";")) {
+                    for (int i = 0; i < line.length(); i++) {
+                        if (Character.isLetter(line.charAt(i))) {
+                            count++;
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Starts the pipelines of the next PENDING tasks while there are free
+     * slots. Called when a task is queued and when a pipeline exits.
+     */
+    public synchronized void schedule() {
+        try {
+            List<Entry> running = runningPipelines();
+            int free = slots - running.size();
+            if (free <= 0) {
+                return;
+            }
+            List<Entry> queue = order(pending(), running);
+            for (Entry entry : queue.subList(0, Math.min(free, queue.size()))) {
+                start(entry.id());
+            }
+        } catch (Exception e) {
+            log.error("Error scheduling tasks: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Position in the queue and estimated start of a PENDING task.
+     */
+    public record QueueSlot(int position, LocalDateTime estimatedStart) {
+    }
+
+    /**
+     * Orders the queue and estimates when each task starts, simulating the
+     * slots with the speed of the last completed pipelines.
+     *
+     * @return the slot of each PENDING task, by task id
+     */
+    public Map<Long, QueueSlot> queue() {
+        List<Entry> running = runningPipelines();
+        List<Entry> queue = order(pending(), running);
+        LocalDateTime now = ZonedDateTime.now(ZONE).toLocalDateTime();
+        double speed = estimateSecondsPerResidue();
+
+        // when each slot is free, the queue taking the first one free
+        PriorityQueue<LocalDateTime> freeSlots = new PriorityQueue<>();
+        for (Entry entry : running) {
+            LocalDateTime started = entry.startDate() != null ? entry.startDate() : now;
+            LocalDateTime end = started.plus(estimateDuration(entry.residues(), speed));
+            freeSlots.add(end.isAfter(now) ? end : now);
+        }
+        while (freeSlots.size() < slots) {
+            freeSlots.add(now);
+        }
+        Map<Long, QueueSlot> slotsByTask = new HashMap<>();
+        for (int i = 0; i < queue.size(); i++) {
+            Entry entry = queue.get(i);
+            LocalDateTime start = freeSlots.poll();
+            slotsByTask.put(entry.id(), new QueueSlot(i + 1, start));
+            freeSlots.add(start.plus(estimateDuration(entry.residues(), speed)));
+        }
+        return slotsByTask;
+    }
+
+    /**
+     * Fills the queue position and the estimated start of the PENDING tasks.
+     *
+     * @param tasks
+     * @return the tasks
+     */
+    public List<EpitopeTaskData> annotate(List<EpitopeTaskData> tasks) {
+        if (tasks.stream().noneMatch(TaskSchedulerService::isPending)) {
+            return tasks;
+        }
+        Map<Long, QueueSlot> queue = queue();
+        for (EpitopeTaskData task : tasks) {
+            QueueSlot slot = queue.get(task.getId());
+            if (isPending(task) && slot != null) {
+                task.setQueuePosition(slot.position());
+                task.setEstimatedStartDate(slot.estimatedStart());
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * Fills the queue position and the estimated start of the PENDING task
+     * summaries.
+     *
+     * @param tasks
+     * @return the page with the queue fields
+     */
+    public Page<TaskSummaryDTO> annotateSummaries(Page<TaskSummaryDTO> tasks) {
+        if (tasks.stream().noneMatch(task -> task.status() == Status.PENDING)) {
+            return tasks;
+        }
+        Map<Long, QueueSlot> queue = queue();
+        return tasks.map(task -> {
+            QueueSlot slot = queue.get(task.id());
+            return slot != null ? task.withQueue(slot.position(), slot.estimatedStart()) : task;
+        });
+    }
+
+    private static boolean isPending(EpitopeTaskData task) {
+        return task.getTaskStatus() != null && task.getTaskStatus().getStatus() == Status.PENDING;
+    }
+
+    /**
+     * Checks the queue after a restart, and in case a recovered pipeline has
+     * exited.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelay = 60_000, fixedDelay = 60_000)
+    public void resume() {
+        schedule();
+    }
+
+    private List<Entry> pending() {
+        return epitopeTaskDataService.findQueueEntriesByStatus(Status.PENDING).stream()
+                .map(Entry::new)
+                .toList();
+    }
+
+    private List<Entry> runningPipelines() {
+        return epitopeTaskDataService.findQueueEntriesByStatus(Status.RUNNING).stream()
+                .map(Entry::new)
+                .filter(entry -> entry.pid() != null
+                        && ProcessHandle.of(entry.pid()).map(ProcessHandle::isAlive).orElse(false))
+                .toList();
+    }
+
+    /**
+     * Orders the queue as it will be started: each next task is of the user
+     * with the fewest tasks running or already picked, and then the smallest
+     * by residue count, aged by its waiting time.
+     */
+    private List<Entry> order(List<Entry> pending, List<Entry> running) {
+        LocalDateTime now = ZonedDateTime.now(ZONE).toLocalDateTime();
+        Map<Long, Integer> perUser = new HashMap<>();
+        for (Entry entry : running) {
+            perUser.merge(entry.userId(), 1, Integer::sum);
+        }
+        List<Entry> remaining = new ArrayList<>(pending);
+        List<Entry> ordered = new ArrayList<>(pending.size());
+        while (!remaining.isEmpty()) {
+            Entry next = null;
+            for (Entry entry : remaining) {
+                if (next == null || compare(entry, next, perUser, now) < 0) {
+                    next = entry;
+                }
+            }
+            remaining.remove(next);
+            ordered.add(next);
+            perUser.merge(next.userId(), 1, Integer::sum);
+        }
+        return ordered;
+    }
+
+    private int compare(Entry a, Entry b, Map<Long, Integer> perUser, LocalDateTime now) {
+        int byUser = Integer.compare(perUser.getOrDefault(a.userId(), 0), perUser.getOrDefault(b.userId(), 0));
+        if (byUser != 0) {
+            return byUser;
+        }
+        int bySize = Double.compare(agedSize(a, now), agedSize(b, now));
+        if (bySize != 0) {
+            return bySize;
+        }
+        return Long.compare(a.id(), b.id());
+    }
+
+    private double agedSize(Entry entry, LocalDateTime now) {
+        long waited = entry.executionDate() != null ? Duration.between(entry.executionDate(), now).toMinutes() : 0;
+        return entry.residues() / (1.0 + (double) Math.max(0, waited) / agingMinutes);
+    }
+
+    /**
+     * @return the seconds per residue of the last completed pipelines, or the
+     * configured one when there are none
+     */
+    private double estimateSecondsPerResidue() {
+        long residues = 0;
+        long seconds = 0;
+        for (Object[] row : epitopeTaskDataService.findRecentDurations(HISTORY)) {
+            if (row[2] == null) {
+                continue;
+            }
+            residues += (Long) row[0];
+            seconds += Math.max(0, Duration.between((LocalDateTime) row[1], (LocalDateTime) row[2]).getSeconds()
+                    - overheadSeconds);
+        }
+        return residues > 0 ? (double) seconds / residues : secondsPerResidue;
+    }
+
+    private Duration estimateDuration(long residues, double speed) {
+        return Duration.ofSeconds(overheadSeconds + (long) (residues * speed));
+    }
+
+    private void start(Long taskId) {
+        EpitopeTaskData task = epitopeTaskDataService.findById(taskId);
+        if (task == null || !isPending(task)) {
+            return;
+        }
+        try {
+            if (task.getFile() == null) {
+                task.setFile(new File(task.getAbsolutePath()));
+            }
+            Process process = pipelineService.runPipeline(task);
+            task.getTaskStatus().setPid(process.pid());
+            task.getTaskStatus().setStatus(Status.RUNNING);
+            task.setStartDate(ZonedDateTime.now(ZONE).toLocalDateTime());
+            task = epitopeTaskDataService.save(task);
+            log.info("Task {} started from the queue with PID {}", taskId, process.pid());
+
+            pipelineService.watch(task, process);
+            process.onExit().thenRunAsync(this::schedule);
+        } catch (Exception e) {
+            log.error("Error starting task {}: {}", taskId, e.getMessage(), e);
+            pipelineService.failTask(task);
+        }
+    }
+}
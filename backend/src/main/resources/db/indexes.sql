@@ -0,0 +1,15 @@
+-- Secondary indexes of the result tables, created after Hibernate updates the
+-- schema (spring.jpa.defer-datasource-initialization).
+
+-- epitopes of a task, in the sort orders of the epitope queries
+CREATE INDEX IF NOT EXISTS idx_epitopes_task_id ON epitopes (task_data_id, id);
+CREATE INDEX IF NOT EXISTS idx_epitopes_task_n ON epitopes (task_data_id, n, id);
+CREATE INDEX IF NOT EXISTS idx_epitopes_task_bepipred3 ON epitopes (task_data_id, bepi_pred3, id);
+CREATE INDEX IF NOT EXISTS idx_epitopes_task_length ON epitopes (task_data_id, length, id);
+
+-- topologies and BLAST hits of the epitopes
+CREATE INDEX IF NOT EXISTS idx_epitope_topologies_epitope ON epitope_topologies (epitope_id, method);
+CREATE INDEX IF NOT EXISTS idx_blasts_epitope ON blasts (epitope_id, db_name);
+
+-- task lists of a user
+CREATE INDEX IF NOT EXISTS idx_epitope_task_data_user ON epitope_task_data (user_id, execution_date);
@@ -0,0 +1,8 @@
+-- Schema changes that ddl-auto=update does not make, run after Hibernate
+-- updates the schema (spring.jpa.defer-datasource-initialization).
+
+-- the check of an enum column lists its values when the table is created and
+-- is never updated, so it is recreated with the values of Status (PENDING)
+ALTER TABLE task_status DROP CONSTRAINT IF EXISTS task_status_status_check;
+ALTER TABLE task_status ADD CONSTRAINT task_status_status_check
+    CHECK (status IN ('PENDING', 'RUNNING', 'COMPLETED', 'FAILED'));
@@ -0,0 +1,179 @@
+package ufsc.br.epibuilder.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+
+import ufsc.br.epibuilder.dto.EpitopeFilter;
+import ufsc.br.epibuilder.dto.EpitopeSliceDTO;
+import ufsc.br.epibuilder.dto.EpitopeSummaryDTO;
+import ufsc.br.epibuilder.model.ActionType;
+import ufsc.br.epibuilder.model.Epitope;
+import ufsc.br.epibuilder.model.EpitopeTaskData;
+import ufsc.br.epibuilder.model.Role;
+import ufsc.br.epibuilder.model.Status;
+import ufsc.br.epibuilder.model.TaskStatus;
+import ufsc.br.epibuilder.model.User;
+import ufsc.br.epibuilder.service.EpitopeTaskDataService;
+
+/**
+ * Walks the epitopes of a task slice by slice and compares the order with
+ * the sort of the keyset query: nulls as the largest values, then the id.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class EpitopeQueryRepositoryTest {
+
+    private static final EpitopeFilter NO_FILTER = new EpitopeFilter(null, null, null, null, null, null, null,
+            null, null, null);
+
+    @Autowired
+    private EpitopeQueryRepository epitopeQueryRepository;
+
+    @Autowired
+    private EpitopeBulkRepository epitopeBulkRepository;
+
+    @Autowired
+    private EpitopeTaskDataService epitopeTaskDataService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+    private EpitopeTaskData task;
+    private List<Epitope> epitopes;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setName("Epitope Query Repository Test");
+        user.setUsername("epitope-query-repository-test");
+        user.setPassword("password");
+        user.setRole(Role.USER);
+        userRepository.findByUsername(user.getUsername()).ifPresent(userRepository::delete);
+        user = userRepository.save(user);
+
+        TaskStatus status = new TaskStatus();
+        status.setStatus(Status.COMPLETED);
+        task = new EpitopeTaskData();
+        task.setUser(user);
+        task.setTaskStatus(status);
+        task.setRunName("epitope-query-repository-test");
+        task.setAbsolutePath("/tmp");
+        task.setActionType(ActionType.DEFAULT);
+        task.setExecutionDate(ZonedDateTime.now(ZoneId.of("America/Sao_Paulo")).toLocalDateTime());
+        task = epitopeTaskDataService.save(task);
+
+        // few distinct values, so there are many duplicates and nulls
+        Double[] scores = {null, 0.1, 0.5, 0.9};
+        String[] proteins = {"protA", "protB", "protC"};
+        Random random = new Random(25);
+        epitopes = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Epitope epitope = new Epitope();
+            epitope.setN((long) random.nextInt(10));
+            epitope.setEpitopeId(proteins[random.nextInt(proteins.length)]);
+            epitope.setEpitope("ACDEFGHIK");
+            epitope.setLength(5 + random.nextInt(5));
+            epitope.setBepiPred3(scores[random.nextInt(scores.length)]);
+            epitope.setEmini(scores[random.nextInt(scores.length)]);
+            epitope.setEpitopeTaskData(task);
+            epitopes.add(epitope);
+        }
+        epitopeBulkRepository.insertAll(task.getId(), epitopes);
+    }
+
+    @AfterEach
+    void tearDown() {
+        epitopeTaskDataService.deleteEpitopeTaskDataWithAssociations(task.getId());
+        userRepository.deleteById(user.getId());
+    }
+
+    @Test
+    void slicesFollowTheSortAcrossNullsAndDuplicates() {
+        assertWalk("bepiPred3", Epitope::getBepiPred3, NO_FILTER);
+        assertWalk("emini", Epitope::getEmini, NO_FILTER);
+        assertWalk("n", Epitope::getN, NO_FILTER);
+        assertWalk("epitopeId", Epitope::getEpitopeId, NO_FILTER);
+        assertWalk("id", Epitope::getId, NO_FILTER);
+    }
+
+    @Test
+    void slicesKeepTheFilter() {
+        EpitopeFilter filter = new EpitopeFilter(0.5, null, 7, null, null, null, null, null, null, null);
+        assertWalk("emini", Epitope::getEmini, filter);
+    }
+
+    @Test
+    void emptySliceHasNoCursor() {
+        EpitopeFilter filter = new EpitopeFilter(null, null, 100, null, null, null, null, null, null, null);
+        EpitopeSliceDTO slice = epitopeQueryRepository.findSlice(task.getId(), filter,
+                Sort.Order.desc("bepiPred3"), null, null, 10);
+        assertEquals(List.of(), slice.content());
+        assertFalse(slice.hasNext());
+        assertNull(slice.nextAfterId());
+    }
+
+    private <T extends Comparable<T>> void assertWalk(String property, Function<Epitope, T> value,
+            EpitopeFilter filter) {
+        for (Sort.Direction direction : Sort.Direction.values()) {
+            for (int size : new int[]{1, 3, 7, 100}) {
+                assertEquals(expected(value, filter, direction), walk(property, filter, direction, size),
+                        property + " " + direction + " in slices of " + size);
+            }
+        }
+    }
+
+    /**
+     * The ids in the order of the query: nulls last ascending and first
+     * descending, and the id in the direction of the sort.
+     */
+    private <T extends Comparable<T>> List<Long> expected(Function<Epitope, T> value, EpitopeFilter filter,
+            Sort.Direction direction) {
+        Comparator<Epitope> order = Comparator.comparing(value, Comparator.nullsLast(Comparator.naturalOrder()));
+        order = order.thenComparing(Epitope::getId);
+        if (direction.isDescending()) {
+            order = order.reversed();
+        }
+        return epitopes.stream()
+                .filter(e -> filter.minScore() == null
+                        || (e.getBepiPred3() != null && e.getBepiPred3() >= filter.minScore()))
+                .filter(e -> filter.minLength() == null || e.getLength() >= filter.minLength())
+                .sorted(order)
+                .map(Epitope::getId)
+                .toList();
+    }
+
+    private List<Long> walk(String property, EpitopeFilter filter, Sort.Direction direction, int size) {
+        List<Long> ids = new ArrayList<>();
+        String afterValue = null;
+        Long afterId = null;
+        while (true) {
+            EpitopeSliceDTO slice = epitopeQueryRepository.findSlice(task.getId(), filter,
+                    new Sort.Order(direction, property), afterValue, afterId, size);
+            slice.content().stream().map(EpitopeSummaryDTO::id).forEach(ids::add);
+            // a cursor that does not advance reads more ids than there are
+            if (!slice.hasNext() || ids.size() > epitopes.size()) {
+                return ids;
+            }
+            afterValue = slice.nextAfterValue() != null ? slice.nextAfterValue().toString() : null;
+            afterId = slice.nextAfterId();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package ufsc.br.epibuilder.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+
+import ufsc.br.epibuilder.dto.EpitopeFilter;
+import ufsc.br.epibuilder.dto.EpitopeSummaryDTO;
+import ufsc.br.epibuilder.model.ActionType;
+import ufsc.br.epibuilder.model.Epitope;
+import ufsc.br.epibuilder.model.EpitopeTaskData;
+import ufsc.br.epibuilder.model.Role;
+import ufsc.br.epibuilder.model.Status;
+import ufsc.br.epibuilder.model.TaskStatus;
+import ufsc.br.epibuilder.model.User;
+import ufsc.br.epibuilder.repository.UserRepository;
+
+/**
+ * Ingests the detailed report of a task as the pipeline does and reads its
+ * epitopes back a page at a time.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class EpitopeQueryTest {
+
+    private static final String HEADER = "N\tId\tEpitope\tStart\tEnd\tN-Glyc\tN-Glyc-Count\tN-Glyc-Motifs\tLength"
+            + "\tMW(kDa)\tI.P\tHydropathy\tAll Matches Cover\tAvg Cover\tBepiPred3\tEmini\tKolaskar\tChou-Fosman"
+            + "\tKarplus-Schulz\tParker\n";
+
+    @Autowired
+    private EpitopeService epitopeService;
+
+    @Autowired
+    private EpitopeTaskDataService epitopeTaskDataService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @TempDir
+    Path folder;
+
+    private User user;
+    private EpitopeTaskData task;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        user = new User();
+        user.setName("Epitope Query Test");
+        user.setUsername("epitope-query-test");
+        user.setPassword("password");
+        user.setRole(Role.USER);
+        userRepository.findByUsername(user.getUsername()).ifPresent(userRepository::delete);
+        user = userRepository.save(user);
+
+        TaskStatus status = new TaskStatus();
+        status.setStatus(Status.RUNNING);
+        task = new EpitopeTaskData();
+        task.setUser(user);
+        task.setTaskStatus(status);
+        task.setRunName("epitope-query-test");
+        task.setAbsolutePath(folder.toString());
+        task.setActionType(ActionType.DEFAULT);
+        task.setExecutionDate(ZonedDateTime.now(ZoneId.of("America/Sao_Paulo")).toLocalDateTime());
+        task = epitopeTaskDataService.save(task);
+
+        // N, bepiPred3, length
+        Path report = folder.resolve("epibuilder-detailed.tsv");
+        Files.writeString(report, HEADER
+                + row(1, 0.9, 10)
+                + row(2, 0.2, 12)
+                + row(3, 0.5, 8)
+                + row(4, 0.5, 15)
+                + row(5, 0.7, 9));
+        List<Epitope> epitopes = PipelineService.convertTsvToEpitopes(report.toString(), task);
+        epitopeTaskDataService.complete(task, epitopes, 1, LocalDateTime.now());
+    }
+
+    @AfterEach
+    void tearDown() {
+        epitopeTaskDataService.deleteEpitopeTaskDataWithAssociations(task.getId());
+        userRepository.deleteById(user.getId());
+    }
+
+    private static String row(long n, double bepiPred3, int length) {
+        return String.join("\t", String.valueOf(n), "prot" + n, "A".repeat(length), "1", String.valueOf(length),
+                "-", "0", "-", String.valueOf(length), "1.0", "7.0", "0.1", "0.5", "0.5", String.valueOf(bepiPred3),
+                "1.0", "1.0", "1.0", "1.0", "1.0") + "\n";
+    }
+
+    private static EpitopeFilter filter(Double minScore, Double maxScore, Integer minLength, Integer maxLength) {
+        return new EpitopeFilter(minScore, maxScore, minLength, maxLength, null, null, null, null, null, null);
+    }
+
+    private List<Long> ns(EpitopeFilter filter, Sort sort) {
+        Page<EpitopeSummaryDTO> page = epitopeService.findByTask(task.getId(), filter, PageRequest.of(0, 10, sort));
+        return page.getContent().stream().map(EpitopeSummaryDTO::n).toList();
+    }
+
+    @Test
+    void defaultSortIsByBepiPred3ThenId() {
+        assertEquals(List.of(1L, 5L, 3L, 4L, 2L), ns(filter(null, null, null, null),
+                Sort.by(Sort.Direction.DESC, "bepiPred3")));
+        assertEquals(List.of(2L, 3L, 4L, 5L, 1L), ns(filter(null, null, null, null),
+                Sort.by(Sort.Direction.ASC, "bepiPred3")));
+    }
+
+    @Test
+    void scoreFiltersUseBepiPred3() {
+        Sort sort = Sort.by(Sort.Direction.DESC, "bepiPred3");
+        assertEquals(List.of(1L, 5L, 3L, 4L), ns(filter(0.5, null, null, null), sort));
+        assertEquals(List.of(3L, 4L, 2L), ns(filter(null, 0.5, null, null), sort));
+        assertEquals(List.of(5L, 3L, 4L), ns(filter(0.3, 0.8, null, null), sort));
+        assertEquals(List.of(1L, 4L), ns(filter(0.5, null, 10, null), sort));
+    }
+
+    @Test
+    void pageCountsTheFilteredEpitopes() {
+        Page<EpitopeSummaryDTO> page = epitopeService.findByTask(task.getId(), filter(0.5, null, null, null),
+                PageRequest.of(0, 3, Sort.by(Sort.Direction.DESC, "bepiPred3")));
+        assertEquals(4, page.getTotalElements());
+        assertEquals(List.of(1L, 5L, 3L), page.getContent().stream().map(EpitopeSummaryDTO::n).toList());
+    }
+
+    @Test
+    void unknownSortPropertyIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> ns(filter(null, null, null, null), Sort.by("score")));
+    }
+}
@@ -0,0 +1,187 @@
+package ufsc.br.epibuilder.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import ufsc.br.epibuilder.model.EpitopeTaskData;
+import ufsc.br.epibuilder.model.Status;
+import ufsc.br.epibuilder.model.TaskStatus;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class TaskSchedulerServiceTest {
+
+    private static final long ALIVE_PID = ProcessHandle.current().pid();
+
+    @Mock
+    private PipelineService pipelineService;
+
+    @Mock
+    private EpitopeTaskDataService epitopeTaskDataService;
+
+    private TaskSchedulerService scheduler;
+    private LocalDateTime now;
+    private final List<Object[]> pending = new ArrayList<>();
+    private final List<Object[]> running = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        // 2 slots, aged by 30 minutes, 0.01 s per residue and 120 s per task
+        scheduler = new TaskSchedulerService(pipelineService, epitopeTaskDataService, 2, 30, 0.01, 120);
+        now = ZonedDateTime.now(ZoneId.of("America/Sao_Paulo")).toLocalDateTime();
+        when(epitopeTaskDataService.findQueueEntriesByStatus(Status.PENDING)).thenReturn(pending);
+        when(epitopeTaskDataService.findQueueEntriesByStatus(Status.RUNNING)).thenReturn(running);
+        when(epitopeTaskDataService.findRecentDurations(anyInt())).thenReturn(List.of());
+    }
+
+    private void pending(long id, long userId, long residues, long waitedMinutes) {
+        pending.add(new Object[]{id, null, userId, residues, now.minusMinutes(waitedMinutes), null});
+    }
+
+    private void running(long id, long userId, long residues) {
+        running.add(new Object[]{id, ALIVE_PID, userId, residues, now, now});
+    }
+
+    private List<Long> order() {
+        Map<Long, TaskSchedulerService.QueueSlot> queue = scheduler.queue();
+        return queue.keySet().stream()
+                .sorted(Comparator.comparingInt(id -> queue.get(id).position()))
+                .toList();
+    }
+
+    @Test
+    void smallestInputFirst() {
+        pending(1, 1, 5000, 0);
+        pending(2, 1, 100, 0);
+        pending(3, 1, 1000, 0);
+
+        assertEquals(List.of(2L, 3L, 1L), order());
+    }
+
+    @Test
+    void userWithFewerRunningTasksFirst() {
+        running(1, 1, 100);
+        pending(2, 1, 100, 0);
+        pending(3, 2, 10000, 0);
+
+        assertEquals(List.of(3L, 2L), order());
+    }
+
+    @Test
+    void usersTakeTurns() {
+        pending(1, 1, 100, 0);
+        pending(2, 1, 200, 0);
+        pending(3, 1, 300, 0);
+        pending(4, 2, 5000, 0);
+
+        assertEquals(List.of(1L, 4L, 2L, 3L), order());
+    }
+
+    @Test
+    void waitingShrinksTheSize() {
+        // 10000 residues waiting 300 minutes count as 10000 / 11
+        pending(1, 1, 10000, 300);
+        pending(2, 1, 1000, 0);
+        assertEquals(List.of(1L, 2L), order());
+
+        pending.clear();
+        pending(1, 1, 10000, 30);
+        pending(2, 1, 1000, 0);
+        assertEquals(List.of(2L, 1L), order());
+    }
+
+    @Test
+    void sameSizeByIdOrder() {
+        pending(2, 1, 100, 0);
+        pending(1, 1, 100, 0);
+
+        assertEquals(List.of(1L, 2L), order());
+    }
+
+    @Test
+    void estimatesTheStartOnTheFirstFreeSlot() {
+        running(1, 1, 60000);
+        pending(2, 2, 1000, 0);
+        pending(3, 2, 2000, 0);
+
+        Map<Long, TaskSchedulerService.QueueSlot> queue = scheduler.queue();
+        // task 2 takes the free slot now, and task 3 its slot after 120 + 10 s,
+        // before the running task ends after 120 + 600 s
+        assertEquals(1, queue.get(2L).position());
+        assertEquals(2, queue.get(3L).position());
+        assertTrue(Duration.between(now, queue.get(2L).estimatedStart()).abs().getSeconds() < 5);
+        assertTrue(Duration.between(now.plusSeconds(130), queue.get(3L).estimatedStart()).abs().getSeconds() < 5);
+    }
+
+    @Test
+    void schedulesOnlyTheFreeSlots() {
+        running(1, 1, 100);
+        pending(2, 1, 100, 0);
+        pending(3, 2, 5000, 0);
+        pending(4, 2, 100, 0);
+        for (long id = 2; id <= 4; id++) {
+            when(epitopeTaskDataService.findById(id)).thenReturn(pendingTask(id));
+        }
+        Process process = mock(Process.class);
+        when(process.pid()).thenReturn(ALIVE_PID);
+        when(process.onExit()).thenReturn(new CompletableFuture<>());
+        when(pipelineService.runPipeline(any())).thenReturn(process);
+        when(epitopeTaskDataService.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        scheduler.schedule();
+
+        ArgumentCaptor<EpitopeTaskData> started = ArgumentCaptor.forClass(EpitopeTaskData.class);
+        verify(pipelineService, times(1)).runPipeline(started.capture());
+        assertEquals(4L, started.getValue().getId());
+        assertEquals(Status.RUNNING, started.getValue().getTaskStatus().getStatus());
+        assertNotNull(started.getValue().getStartDate());
+    }
+
+    @Test
+    void schedulesNothingWithoutFreeSlots() {
+        running(1, 1, 100);
+        running(2, 2, 100);
+        pending(3, 3, 100, 0);
+
+        scheduler.schedule();
+
+        verify(pipelineService, never()).runPipeline(any());
+    }
+
+    private static EpitopeTaskData pendingTask(long id) {
+        TaskStatus status = new TaskStatus();
+        status.setStatus(Status.PENDING);
+        EpitopeTaskData task = new EpitopeTaskData();
+        task.setId(id);
+        task.setTaskStatus(status);
+        task.setAbsolutePath("/tmp");
+        return task;
+    }
+}
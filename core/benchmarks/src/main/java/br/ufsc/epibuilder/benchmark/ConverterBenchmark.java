@@ -0,0 +1,56 @@
+package br.ufsc.epibuilder.benchmark;
+
+import br.ufsc.epibuilder.converter.BepiPred3Converter;
+import br.ufsc.epibuilder.converter.ProteinConverter;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading of a BepiPred-3.0 CSV file. The 100k proteins file has about 40
+ * million lines, so it is left out of the default parameters.
+ *
+ * @author renato
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class ConverterBenchmark {
+
+    @Param({"1000", "20000"})
+    public int proteins;
+
+    private File csv;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        csv = File.createTempFile("bepipred3-" + proteins + "-", ".csv");
+        new SyntheticProteome(proteins).writeBepipredCsv(csv, proteins);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        csv.delete();
+    }
+
+    @Benchmark
+    public ArrayList<ProteinConverter> getBepipred3FromBiolib() throws Exception {
+        return BepiPred3Converter.getBepipred3FromBiolib(csv);
+    }
+}
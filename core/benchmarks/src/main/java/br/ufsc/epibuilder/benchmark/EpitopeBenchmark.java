@@ -0,0 +1,93 @@
+package br.ufsc.epibuilder.benchmark;
+
+import br.udesc.cav.tese.glycosylation.GlycosylationFinder;
+import br.ufsc.epibuilder.RunConfiguration;
+import br.ufsc.epibuilder.entity.Epitopo;
+import br.ufsc.epibuilder.entity.Protein;
+import br.ufsc.epibuilder.entity.SoftwareBcellEnum;
+import br.ufsc.epibuilder.proteomics.ProteomicCalculator;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Epitope extraction and the per-epitope calculations of the reports, over
+ * 1000 scored proteins.
+ *
+ * @author renato
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EpitopeBenchmark {
+
+    private ArrayList<Protein> proteins;
+    private ArrayList<Epitopo> epitopes;
+    private double threshold;
+    private int minLength;
+    private int maxLength;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        RunConfiguration config = RunConfiguration.builder().build();
+        threshold = config.getThresholdBepipred();
+        minLength = config.getMinLength();
+        maxLength = config.getMaxLength();
+        proteins = new SyntheticProteome(SyntheticProteome.SMALL).scoredProteins(SyntheticProteome.SMALL);
+        epitopes = new ArrayList<>();
+        for (Protein protein : proteins) {
+            protein.process(threshold, minLength, maxLength);
+            epitopes.addAll(protein.getEpitopes());
+        }
+    }
+
+    @Benchmark
+    public void proteinProcess(Blackhole blackhole) {
+        for (Protein protein : proteins) {
+            protein.process(threshold, minLength, maxLength);
+            blackhole.consume(protein.getEpitopes());
+        }
+    }
+
+    @Benchmark
+    public void getTopologyValue(Blackhole blackhole) {
+        for (Epitopo epitopo : epitopes) {
+            for (SoftwareBcellEnum method : SoftwareBcellEnum.values()) {
+                if (method != SoftwareBcellEnum.BEPIPRED) {
+                    blackhole.consume(epitopo.getTopologyValue(method, 1.0));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void getNGlycMotif(Blackhole blackhole) {
+        for (Epitopo epitopo : epitopes) {
+            blackhole.consume(GlycosylationFinder.getNGlycMotif(epitopo.getSequence()));
+        }
+    }
+
+    @Benchmark
+    public void proteomicCalculator(Blackhole blackhole) throws Exception {
+        for (Epitopo epitopo : epitopes) {
+            String sequence = epitopo.getSequence();
+            blackhole.consume(ProteomicCalculator.getMolecularWeight(sequence));
+            blackhole.consume(ProteomicCalculator.getIsoelectricPoint(sequence));
+            blackhole.consume(ProteomicCalculator.getHydropathy(sequence));
+        }
+    }
+}
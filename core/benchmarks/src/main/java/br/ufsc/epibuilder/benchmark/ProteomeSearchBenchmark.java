@@ -0,0 +1,76 @@
+package br.ufsc.epibuilder.benchmark;
+
+import br.ufsc.epibuilder.EpitopeCount;
+import br.ufsc.epibuilder.EpitopeFinder;
+import br.ufsc.epibuilder.converter.ProteinConverter;
+import br.ufsc.epibuilder.entity.Proteome;
+import br.ufsc.epibuilder.proteomics.ProteomeIndex;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Search of 1000 epitopes in proteomes of 1k, 20k and 100k proteins, by
+ * {@link EpitopeFinder#count} over the loaded proteome and over its index.
+ *
+ * @author renato
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class ProteomeSearchBenchmark {
+
+    @Param({"1000", "20000", "100000"})
+    public int proteins;
+
+    private Proteome proteome;
+    private ArrayList<String> epitopes;
+    private File fasta;
+    private ProteomeIndex index;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        SyntheticProteome generator = new SyntheticProteome(proteins);
+        fasta = File.createTempFile("proteome-" + proteins + "-", ".fasta");
+        generator.writeFasta(fasta, proteins);
+        proteome = new Proteome("synthetic", fasta);
+        proteome.load();
+        ProteomeIndex.build(fasta);
+        index = ProteomeIndex.open(fasta);
+        ArrayList<ProteinConverter> sequences = proteome.getProteins();
+        epitopes = generator.epitopes(sequences, 1000);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ProteomeIndex.getIndexFile(fasta).delete();
+        fasta.delete();
+    }
+
+    @Benchmark
+    public Map<String, EpitopeCount> count() {
+        return EpitopeFinder.count(epitopes, proteome, true);
+    }
+
+    @Benchmark
+    public Map<String, EpitopeCount> countIndex() {
+        return EpitopeFinder.count(epitopes, index, true);
+    }
+}
@@ -0,0 +1,83 @@
+package br.ufsc.epibuilder.benchmark;
+
+import br.ufsc.epibuilder.converter.BcellScoreEngine;
+import br.ufsc.epibuilder.converter.IEDBBcellCalculator;
+import br.ufsc.epibuilder.entity.ReportBCell;
+import br.ufsc.epibuilder.entity.ResidueAlphabet;
+import br.ufsc.epibuilder.entity.SoftwareBcellEnum;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Scores of the B-cell methods over 1000 proteins, per method.
+ *
+ * @author renato
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScoreBenchmark {
+
+    @Param({"PARKER", "CHOU_FOSMAN", "EMINI", "KARPLUS_SCHULZ", "KOLASKAR"})
+    public SoftwareBcellEnum method;
+
+    private String[] sequences;
+    private byte[][] codes;
+    private ArrayList<ReportBCell> report;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SyntheticProteome generator = new SyntheticProteome(SyntheticProteome.SMALL);
+        sequences = new String[SyntheticProteome.SMALL];
+        codes = new byte[sequences.length][];
+        for (int i = 0; i < sequences.length; i++) {
+            sequences[i] = generator.nextSequence();
+            codes[i] = ResidueAlphabet.encode(sequences[i].getBytes(StandardCharsets.US_ASCII));
+        }
+        report = IEDBBcellCalculator.run(method, sequences[0]);
+    }
+
+    @Benchmark
+    public void iedbRun(Blackhole blackhole) {
+        for (String sequence : sequences) {
+            blackhole.consume(IEDBBcellCalculator.run(method, sequence));
+        }
+    }
+
+    @Benchmark
+    public void scoreEngine(Blackhole blackhole) {
+        for (byte[] code : codes) {
+            blackhole.consume(BcellScoreEngine.score(method, code));
+        }
+    }
+
+    /**
+     * The score of each position of one protein, looked up in the report of
+     * the method.
+     */
+    @Benchmark
+    public float getScoreByPosition() {
+        float sum = 0;
+        for (int pos = 1; pos <= sequences[0].length(); pos++) {
+            sum += IEDBBcellCalculator.getScoreByPosition(pos, report);
+        }
+        return sum;
+    }
+}
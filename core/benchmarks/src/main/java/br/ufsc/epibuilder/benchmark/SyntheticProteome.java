@@ -0,0 +1,195 @@
+package br.ufsc.epibuilder.benchmark;
+
+import br.ufsc.epibuilder.EpitopeFinder;
+import br.ufsc.epibuilder.converter.ProteinConverter;
+import br.ufsc.epibuilder.entity.Protein;
+import br.ufsc.epibuilder.entity.ProteinScores;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Random proteomes for the benchmarks, the same for a given seed.
+ *
+ * The residues follow the amino acid frequencies of UniProtKB/Swiss-Prot,
+ * the lengths a log-normal distribution with a mean close to 400 residues,
+ * and the BepiPred-3.0 scores a smoothed walk around the default threshold,
+ * so the proteins have epitopes of the usual lengths.
+ *
+ * @author renato
+ */
+public class SyntheticProteome {
+
+    public static final int SMALL = 1_000;
+    public static final int MEDIUM = 20_000;
+    public static final int LARGE = 100_000;
+
+    private static final String RESIDUES = "ARNDCQEGHILKMFPSTWYV";
+    private static final double[] FREQUENCIES = {8.25, 5.53, 4.06, 5.45, 1.37, 3.93, 6.75, 7.07, 2.27, 5.96,
+        9.66, 5.84, 2.42, 3.86, 4.70, 6.56, 5.34, 1.08, 2.92, 6.87};
+    private static final double[] CUMULATIVE = new double[FREQUENCIES.length];
+
+    static {
+        double total = 0;
+        for (double frequency : FREQUENCIES) {
+            total += frequency;
+        }
+        double sum = 0;
+        for (int i = 0; i < FREQUENCIES.length; i++) {
+            sum += FREQUENCIES[i] / total;
+            CUMULATIVE[i] = sum;
+        }
+        CUMULATIVE[CUMULATIVE.length - 1] = 1;
+    }
+
+    private final Random random;
+
+    public SyntheticProteome(long seed) {
+        random = new Random(seed);
+    }
+
+    public int nextLength() {
+        return (int) Math.max(30, Math.min(5000, Math.round(Math.exp(5.8 + 0.6 * random.nextGaussian()))));
+    }
+
+    public char nextResidue() {
+        double p = random.nextDouble();
+        for (int i = 0; i < CUMULATIVE.length; i++) {
+            if (p < CUMULATIVE[i]) {
+                return RESIDUES.charAt(i);
+            }
+        }
+        return RESIDUES.charAt(RESIDUES.length() - 1);
+    }
+
+    public String nextSequence() {
+        int length = nextLength();
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(nextResidue());
+        }
+        return sb.toString();
+    }
+
+    public float[] nextBepipred(int length) {
+        float[] scores = new float[length];
+        double score = 0.15;
+        for (int i = 0; i < length; i++) {
+            score = 0.8 * score + 0.2 * (0.15 + 0.12 * random.nextGaussian());
+            scores[i] = (float) Math.max(0, Math.min(1, score));
+        }
+        return scores;
+    }
+
+    /**
+     * @param count
+     * @return proteins with sequences only, as read from a proteome FASTA
+     */
+    public ArrayList<ProteinConverter> proteome(int count) {
+        ArrayList<ProteinConverter> proteins = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            proteins.add(new ProteinConverter(id(i), nextSequence()));
+        }
+        return proteins;
+    }
+
+    /**
+     * @param count
+     * @return proteins with BepiPred-3.0 scores and the scores of all the
+     * methods, as after the conversion of a BepiPred-3.0 file
+     */
+    public ArrayList<Protein> scoredProteins(int count) {
+        ArrayList<Protein> proteins = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String sequence = nextSequence();
+            Protein protein = new Protein();
+            protein.setId(id(i));
+            protein.setScores(new ProteinScores(sequence.getBytes(StandardCharsets.US_ASCII),
+                    nextBepipred(sequence.length())));
+            EpitopeFinder.processMethods(protein);
+            proteins.add(protein);
+        }
+        return proteins;
+    }
+
+    /**
+     * Writes a BepiPred-3.0 CSV file, one line per residue.
+     *
+     * @param file
+     * @param count proteins
+     * @throws IOException
+     */
+    public void writeBepipredCsv(File file, int count) throws IOException {
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(file), 1 << 16)) {
+            out.write("Accession,Residue,BepiPred-3.0 score\n");
+            for (int i = 0; i < count; i++) {
+                String id = id(i);
+                String sequence = nextSequence();
+                float[] scores = nextBepipred(sequence.length());
+                for (int pos = 0; pos < sequence.length(); pos++) {
+                    out.write(id);
+                    out.write(',');
+                    out.write(sequence.charAt(pos));
+                    out.write(',');
+                    out.write(Float.toString(scores[pos]));
+                    out.write('\n');
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a proteome FASTA file, 60 residues per line.
+     *
+     * @param file
+     * @param count proteins
+     * @throws IOException
+     */
+    public void writeFasta(File file, int count) throws IOException {
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(file), 1 << 16)) {
+            for (int i = 0; i < count; i++) {
+                String sequence = nextSequence();
+                out.write(">" + id(i) + " synthetic protein\n");
+                for (int pos = 0; pos < sequence.length(); pos += 60) {
+                    out.write(sequence, pos, Math.min(60, sequence.length() - pos));
+                    out.write('\n');
+                }
+            }
+        }
+    }
+
+    /**
+     * Peptides for the proteome searches, half of them taken from the
+     * proteins, so they have hits, and half random.
+     *
+     * @param proteins
+     * @param count
+     * @return
+     */
+    public ArrayList<String> epitopes(ArrayList<ProteinConverter> proteins, int count) {
+        ArrayList<String> epitopes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int length = 10 + random.nextInt(21);
+            if (i % 2 == 0) {
+                String sequence = proteins.get(random.nextInt(proteins.size())).getSequence();
+                int start = random.nextInt(sequence.length() - length + 1);
+                epitopes.add(sequence.substring(start, start + length));
+            } else {
+                StringBuilder sb = new StringBuilder(length);
+                for (int j = 0; j < length; j++) {
+                    sb.append(nextResidue());
+                }
+                epitopes.add(sb.toString());
+            }
+        }
+        return epitopes;
+    }
+
+    private static String id(int i) {
+        return String.format("sp|SYN%06d|SYN%06d_BENCH", i, i);
+    }
+}
@@ -11,6 +11,7 @@ import org.apache.commons.lang3.StringUtils;
 
 import br.ufsc.epibuilder.EpitopeFinder;
 import br.ufsc.epibuilder.Parameters;
+import br.ufsc.epibuilder.RunConfiguration;
 import br.ufsc.epibuilder.entity.Proteome;
 import br.ufsc.epibuilder.entity.SoftwareBcellEnum;
 import picocli.CommandLine;
@@ -54,6 +55,21 @@ public class Main implements Callable<Integer> {
     Integer blastCover;
     @Option(names = { "-ws", "--word-size" }, description = "Word-size. Default: ${DEFAULT-VALUE}", defaultValue = "4")
     Integer blastWordsize;
+    @Option(names = { "-bcache",
+            "--blast-cache" }, description = "Folder where the BLAST databases are kept between runs. Default: built in the output folder on every run")
+    String blastCache;
+    @Option(names = { "-bcsize",
+            "--blast-cache-size" }, description = "Maximum size of the BLAST database cache in GB. Default: ${DEFAULT-VALUE}", defaultValue = "20")
+    Integer blastCacheSize;
+    @Option(names = { "-bt",
+            "--blast-threads" }, description = "Number of CPUs shared by the BLAST searches of the proteomes. Default: all the CPUs")
+    Integer blastThreads;
+    @Option(names = { "-scache",
+            "--score-cache" }, description = "Folder where the scores of the inputs are kept, so a rerun of the same input with other thresholds or lengths is not scored again. Default: no cache")
+    String scoreCache;
+    @Option(names = { "-scsize",
+            "--score-cache-size" }, description = "Maximum size of the score cache in GB. Default: ${DEFAULT-VALUE}", defaultValue = "5")
+    Integer scoreCacheSize;
     @Option(names = { "-p1", "--proteome1" }, description = "Proteome 1 file", defaultValue = "null")
     String proteome1;
     @Option(names = { "-p1a",
@@ -85,42 +101,54 @@ public class Main implements Callable<Integer> {
             "--proteome6-alias" }, description = "Proteome 6 alias - appears in the report file", defaultValue = "proteome6")
     String proteome6Alias;
 
+    @Option(names = { "-par",
+            "--parallelism" }, description = "Number of threads used to process the proteins. Default: ${DEFAULT-VALUE}", defaultValue = "1")
+    Integer parallelism;
+
     @Option(names = { "-proteomes",
             "--proteomes" }, required = false, description = "Input proteome files format (separated by :) <alias1>=<fasta1>:<alias2>=<fasta2>\nUse this option to search in one or more proteomes. This option can be used with the p1-p6 option.")
     String proteomes;
 
     @Override
     public Integer call() throws IOException {
-        Parameters.FASTA = input;
-        Parameters.BEPIPRED_FILE = input;
+        RunConfiguration.Builder config = RunConfiguration.builder()
+                .fasta(input)
+                .bepipredFile(input);
         if (type == FileType.fasta) {
-            Parameters.BEPIPRED_INPUT = Parameters.BEPIPRED_TYPE.FASTA;
+            config.bepipredInput(Parameters.BEPIPRED_TYPE.FASTA);
         } else {
-            Parameters.BEPIPRED_INPUT = Parameters.BEPIPRED_TYPE.CSV;
+            config.bepipredInput(Parameters.BEPIPRED_TYPE.CSV);
         }
 
-        Parameters.THRESHOLD_BEPIPRED = threshold;
-        Parameters.MIN_LENGTH_BEPIPRED = minLength;
-        Parameters.MAX_LENGTH_BEPIPRED = maxLength;
+        config.thresholdBepipred(threshold)
+                .minLength(minLength)
+                .maxLength(maxLength)
+                .parallelism(parallelism)
+                .scoreCacheFolder(scoreCache)
+                .scoreCacheSize(scoreCacheSize * 1024L * 1024 * 1024);
 
-        Parameters.MAP_SOFTWARES.put(SoftwareBcellEnum.EMINI, null);
-        Parameters.MAP_SOFTWARES.put(SoftwareBcellEnum.KOLASKAR, null);
-        Parameters.MAP_SOFTWARES.put(SoftwareBcellEnum.CHOU_FOSMAN, null);
-        Parameters.MAP_SOFTWARES.put(SoftwareBcellEnum.KARPLUS_SCHULZ, null);
-        Parameters.MAP_SOFTWARES.put(SoftwareBcellEnum.PARKER, null);
+        config.software(SoftwareBcellEnum.EMINI, null)
+                .software(SoftwareBcellEnum.KOLASKAR, null)
+                .software(SoftwareBcellEnum.CHOU_FOSMAN, null)
+                .software(SoftwareBcellEnum.KARPLUS_SCHULZ, null)
+                .software(SoftwareBcellEnum.PARKER, null);
 
-        Parameters.BASENAME = basename;
-        Path p1 = Paths.get(Parameters.BASENAME);
+        Path p1 = Paths.get(basename);
         Files.createDirectories(p1);
 
-        Parameters.BASENAME += "/" + Parameters.BASENAME;
+        config.basename(basename + "/" + basename);
 
         if (search != Search.none) {
             if (search == Search.blast) {
-                Parameters.SEARCH_BLAST = true;
-                Parameters.BLAST_IDENTITY = blastIdentity;
-                Parameters.BLAST_COVER = blastCover;
-                Parameters.BLAST_WORD_SIZE = blastWordsize;
+                config.searchBlast(true)
+                        .blastIdentity(blastIdentity)
+                        .blastCover(blastCover)
+                        .blastWordSize(blastWordsize)
+                        .blastCacheFolder(blastCache)
+                        .blastCacheSize(blastCacheSize * 1024L * 1024 * 1024);
+                if (blastThreads != null) {
+                    config.blastThreads(blastThreads);
+                }
             }
             ArrayList<Proteome> proteomeFiles = new ArrayList<>();
 
@@ -145,10 +173,10 @@ public class Main implements Callable<Integer> {
                 System.out.println("ERROR: Choose at least one proteome to perform the search");
                 System.exit(0);
             }
-            Parameters.PROTEOMES = proteomeFiles;
+            config.proteomes(proteomeFiles);
         }
-        Parameters.OUTPUT_FILE = false;
-        EpitopeFinder.process();
+        config.outputFile(false);
+        EpitopeFinder.process(config.build());
         return 0;
     }
 
@@ -5,6 +5,7 @@
  */
 package br.udesc.cav.tese.glycosylation;
 
+import br.ufsc.epibuilder.entity.ResidueAlphabet;
 import br.ufsc.epibuilder.entity.report.FormatHelper;
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -26,37 +27,37 @@ public class GlycosylationFinder {
         SQL, TXT
     }
 
+    private static final byte ASN = ResidueAlphabet.code('N');
+    private static final byte PRO = ResidueAlphabet.code('P');
+    private static final byte SER = ResidueAlphabet.code('S');
+    private static final byte THR = ResidueAlphabet.code('T');
+
+    /**
+     * @return the motif N + any residue but P + S/T starts at the position
+     */
+    private static boolean isMotifAt(String proteina, int i) {
+        if (ResidueAlphabet.code(proteina.charAt(i)) != ASN
+                || ResidueAlphabet.code(proteina.charAt(i + 1)) == PRO) {
+            return false;
+        }
+        byte last = ResidueAlphabet.code(proteina.charAt(i + 2));
+        return last == SER || last == THR;
+    }
+
     public static boolean isNGlycMotif(String proteina) {
-        boolean positive = false;
-        for (int i = 0; i < proteina.length(); i++) {
-            if ((i + 3) <= proteina.length()) {
-                char pos1 = proteina.charAt(i);
-                if (pos1 == 'N') {
-                    String seq = proteina.substring(i, i + 3);
-                    if (seq.charAt(1) != 'P' && (seq.endsWith("S") || seq.endsWith("T"))) {
-                        positive = true;
-
-                        i += 3;
-                    }
-                }
+        for (int i = 0; i + 3 <= proteina.length(); i++) {
+            if (isMotifAt(proteina, i)) {
+                return true;
             }
-
         }
-        return positive;
+        return false;
     }
 
     public static ArrayList<Motif> getNGlycMotif(String proteina) {
-        // System.out.println("ID\tMotif\tStart\tEnd");
         ArrayList<Motif> motifs = new ArrayList<>();
-        for (int i = 0; i < proteina.length(); i++) {
-            if ((i + 3) <= proteina.length()) {
-                char pos1 = proteina.charAt(i);
-                if (pos1 == 'N') {
-                    String seq = proteina.substring(i, i + 3);
-                    if (seq.charAt(1) != 'P' && (seq.endsWith("S") || seq.endsWith("T"))) {
-                        motifs.add(new Motif(seq, (i + 1), (i + 3)));
-                    }
-                }
+        for (int i = 0; i + 3 <= proteina.length(); i++) {
+            if (isMotifAt(proteina, i)) {
+                motifs.add(new Motif(proteina.substring(i, i + 3), (i + 1), (i + 3)));
             }
         }
         return motifs;
@@ -66,28 +67,22 @@ public class GlycosylationFinder {
         // System.out.println("ID\tMotif\tStart\tEnd");
         StringBuffer res = new StringBuffer();
         boolean positive = false;
-        for (int i = 0; i < proteina.length(); i++) {
-            if ((i + 3) <= proteina.length()) {
-                char pos1 = proteina.charAt(i);
-                if (pos1 == 'N') {
-                    String seq = proteina.substring(i, i + 3);
-                    if (seq.charAt(1) != 'P' && (seq.endsWith("S") || seq.endsWith("T"))) {
-                        positive = true;
-                        if (type == Type.TXT) {
-                            res.append(id + "\t" + seq + "\t" + (i + 1) + "\t" + (i + 3));
-                            res.append("\n");
-
-                        } else {
-                            res.append(String.format("INSERT INTO NGLYC VALUES (NULL, '%s', '%s', %s, %s);", id, seq,
-                                    (i + 1), (i + 3)));
-                            res.append("\n");
-
-                        }
-                        i += 3;
-                    }
+        for (int i = 0; i + 3 <= proteina.length(); i++) {
+            if (isMotifAt(proteina, i)) {
+                String seq = proteina.substring(i, i + 3);
+                positive = true;
+                if (type == Type.TXT) {
+                    res.append(id + "\t" + seq + "\t" + (i + 1) + "\t" + (i + 3));
+                    res.append("\n");
+
+                } else {
+                    res.append(String.format("INSERT INTO NGLYC VALUES (NULL, '%s', '%s', %s, %s);", id, seq,
+                            (i + 1), (i + 3)));
+                    res.append("\n");
+
                 }
+                i += 3;
             }
-
         }
         if (positive) {
             return res.toString();
@@ -5,14 +5,13 @@
  */
 package br.udesc.epibuilder.blast;
 
-import br.ufsc.epibuilder.Parameters;
 import com.google.common.base.Joiner;
+import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Scanner;
 import java.util.TreeMap;
-import java.util.TreeSet;
 
 /**
  *
@@ -20,18 +19,44 @@ import java.util.TreeSet;
  */
 public class Blast {
 
+    private static final String HEADER = "qacc\t";
+
     private String name;
     private File file;
-    ArrayList<Peptide> peps = new ArrayList<>();
+    // hits of each query passing the identity and cover cutoffs, in file
+    // order; queries with hits below the cutoffs have an empty list
+    private final TreeMap<String, ArrayList<Peptide>> hits = new TreeMap<>();
+
+    public Blast(String name, File file) throws IOException {
+        this(name, file, 0, 0);
+    }
 
-    public Blast(String name, File file) throws FileNotFoundException {
+    /**
+     * Reads a blastp tabular output (-outfmt "6 qacc sacc pident qcovs ...")
+     * line by line, keeping only the hits with at least the given identity
+     * and cover. A header line is skipped.
+     *
+     * @param name
+     * @param file
+     * @param identity
+     * @param cover
+     * @throws IOException
+     */
+    public Blast(String name, File file, double identity, double cover) throws IOException {
         this.name = name;
         this.file = file;
-        Scanner s = new Scanner(file);
-        s.nextLine();
-        while (s.hasNext()) {
-            Peptide pep = new Peptide(s.nextLine());
-            peps.add(pep);
+        try (BufferedReader reader = new BufferedReader(new FileReader(file), 1 << 16)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith(HEADER)) {
+                    continue;
+                }
+                Peptide pep = new Peptide(line);
+                ArrayList<Peptide> peps = hits.computeIfAbsent(pep.getPeptideAccessId(), k -> new ArrayList<>());
+                if (pep.getIdentity() >= identity && pep.getCover() >= cover) {
+                    peps.add(pep);
+                }
+            }
         }
     }
 
@@ -51,59 +76,35 @@ public class Blast {
         return name;
     }
 
-    private void clear(double id, double cov) {
-        ArrayList<Peptide> res = new ArrayList<Peptide>();
-        for (Peptide pep : peps) {
-            if (pep.getIdentity() >= id && pep.getCover() >= cov) {
-                res.add(pep);
-            }
-        }
-        peps.clear();
-        peps.addAll(res);
-    }
-
-    private int getCount(String peptideAccessId, TreeMap<String, ArrayList<Peptide>> map) {
-        if (map.get(peptideAccessId) != null) {
-            return map.get(peptideAccessId).size();
-        }
-        return 0;
-    }
-
-    private String getIds(String peptideAccessId, TreeMap<String, ArrayList<Peptide>> map) {
-        String res = "-";
-        if (map.get(peptideAccessId) != null && Parameters.HIT_ACCESSION) {
-            ArrayList<Peptide> pep = map.get(peptideAccessId);
-            return Joiner.on(",").join(pep);
-        }
-        return res;
+    /**
+     * @param peptideAccessId the query id, N-epitope
+     * @return the hits of the query over the cutoffs, -1 when the query has
+     * no hits at all
+     */
+    public int getCount(String peptideAccessId) {
+        ArrayList<Peptide> peps = hits.get(peptideAccessId);
+        return peps == null ? -1 : peps.size();
     }
 
-    private TreeMap<String, ArrayList<Peptide>> getMap() {
-        TreeMap<String, ArrayList<Peptide>> map = new TreeMap<>();
-        for (Peptide pep : peps) {
-            if (map.get(pep.getPeptideAccessId()) == null) {
-                map.put(pep.getPeptideAccessId(), new ArrayList<>());
-            }
-            map.get(pep.getPeptideAccessId()).add(pep);
+    /**
+     * @param peptideAccessId the query id, N-epitope
+     * @param hitAccession
+     * @return the hits of the query separated by comma, "-" when the query
+     * has no hits or hitAccession is false
+     */
+    public String getIds(String peptideAccessId, boolean hitAccession) {
+        ArrayList<Peptide> peps = hits.get(peptideAccessId);
+        if (peps == null || peps.isEmpty() || !hitAccession) {
+            return "-";
         }
-        return map;
+        return Joiner.on(",").join(peps);
     }
 
-    public String getListReport(double identity, double cover) {
+    public String getListReport(boolean hitAccession) {
         StringBuilder sb = new StringBuilder();
-        //remove duplicated ids
-        TreeSet<String> listIds = new TreeSet<>();
-        for (Peptide pep : peps) {
-            listIds.add(pep.getPeptideAccessId());
-        }
-        //remove hits less than identity and cover
-        clear(identity, cover);
-
-        TreeMap<String, ArrayList<Peptide>> map = getMap();
-
         sb.append("Peptide\tAccession\tCount\tId\n");
-        for (String listId : listIds) {
-            sb.append(String.format("%s\t%s\t%s\n", listId, getCount(listId, map), getIds(listId, map)));
+        for (String listId : hits.keySet()) {
+            sb.append(String.format("%s\t%s\t%s\n", listId, getCount(listId), getIds(listId, hitAccession)));
         }
 
         return sb.toString();
@@ -0,0 +1,298 @@
+package br.udesc.epibuilder.blast;
+
+import br.ufsc.epibuilder.converter.FileHelper;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * BLAST databases built by makeblastdb, kept between runs in a cache folder.
+ *
+ * Each database is stored in a folder named by the SHA-256 of the proteome
+ * FASTA, so the same content is built once whatever the name of the file. A
+ * database in use is held with a shared file lock and a database is built
+ * under an exclusive one, so concurrent runs, in this JVM or in other
+ * processes, wait for a single build. When the cache grows over its size, the
+ * least recently used databases that are not in use are deleted.
+ *
+ * @author renato
+ */
+public class BlastDatabaseCache {
+
+    private static final String COMPLETE = "complete";
+    private static final String DATABASE = "db";
+
+    // the locks held by this JVM, by cache folder and hash
+    private static final Map<String, Object> MONITORS = new ConcurrentHashMap<>();
+    private static final Map<String, Holder> HOLDERS = new HashMap<>();
+
+    private final File folder;
+    private final long maxSize;
+    private final String makeblastdbPath;
+
+    /**
+     * @param folder the cache folder, created if it does not exist
+     * @param maxSize size of the cache in bytes, exceeded only by the
+     * databases in use
+     * @param makeblastdbPath
+     */
+    public BlastDatabaseCache(File folder, long maxSize, String makeblastdbPath) {
+        this.folder = folder;
+        this.maxSize = maxSize;
+        this.makeblastdbPath = makeblastdbPath;
+    }
+
+    /**
+     * Gets the BLAST database of the proteome, building it if it is not in the
+     * cache. The database cannot be evicted until the lease is closed.
+     *
+     * @param fasta the proteome
+     * @return the lease of the database
+     * @throws IOException if makeblastdb fails
+     * @throws InterruptedException
+     */
+    public Lease acquire(File fasta) throws IOException, InterruptedException {
+        Files.createDirectories(folder.toPath());
+        String hash = hash(fasta);
+        String key = folder.getCanonicalPath() + File.separator + hash;
+        File entry = new File(folder, hash);
+
+        synchronized (MONITORS.computeIfAbsent(key, k -> new Object())) {
+            Holder holder;
+            synchronized (HOLDERS) {
+                holder = HOLDERS.get(key);
+            }
+            if (holder != null) {
+                // held by this JVM, so it is complete and cannot be evicted
+                holder.count++;
+            } else {
+                holder = lock(fasta, entry);
+                synchronized (HOLDERS) {
+                    HOLDERS.put(key, holder);
+                }
+            }
+            touch(entry);
+        }
+        evict();
+        return new Lease(key, new File(entry, DATABASE));
+    }
+
+    /**
+     * Builds the database if needed and takes the shared lock of the entry.
+     */
+    private Holder lock(File fasta, File entry) throws IOException, InterruptedException {
+        RandomAccessFile file = new RandomAccessFile(new File(folder, entry.getName() + ".lock"), "rw");
+        FileChannel channel = file.getChannel();
+        try {
+            while (true) {
+                FileLock exclusive = channel.lock();
+                try {
+                    if (!new File(entry, COMPLETE).isFile()) {
+                        build(fasta, entry);
+                    }
+                } finally {
+                    exclusive.release();
+                }
+                // an eviction can get in between the two locks
+                FileLock shared = channel.lock(0, Long.MAX_VALUE, true);
+                if (new File(entry, COMPLETE).isFile()) {
+                    return new Holder(file, shared);
+                }
+                shared.release();
+            }
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    private void build(File fasta, File entry) throws IOException, InterruptedException {
+        delete(entry.toPath());
+        Files.createDirectories(entry.toPath());
+        String[] cmd = {makeblastdbPath,
+            "-dbtype", "prot",
+            "-in", fasta.getAbsolutePath(),
+            "-out", new File(entry, DATABASE).getAbsolutePath()};
+        System.out.println("Running command[: " + String.join(" ", cmd) + " ]");
+
+        Process p = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+        String output = new String(p.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        int exit = p.waitFor();
+        System.out.println(output);
+        if (exit != 0) {
+            delete(entry.toPath());
+            throw new IOException("makeblastdb failed for " + fasta + " with exit code " + exit);
+        }
+        Files.writeString(new File(entry, COMPLETE).toPath(), fasta.getAbsolutePath());
+    }
+
+    /**
+     * Deletes the least recently used databases while the cache is over its
+     * size. Databases locked by any process are kept.
+     */
+    private void evict() {
+        synchronized (BlastDatabaseCache.class) {
+            File[] entries = folder.listFiles(f -> f.isDirectory());
+            if (entries == null) {
+                return;
+            }
+            long total = 0;
+            List<File> candidates = new ArrayList<>();
+            Map<File, Long> sizes = new HashMap<>();
+            Map<File, Long> used = new HashMap<>();
+            for (File entry : entries) {
+                long size = size(entry.toPath());
+                total += size;
+                sizes.put(entry, size);
+                used.put(entry, new File(entry, COMPLETE).lastModified());
+                candidates.add(entry);
+            }
+            candidates.sort(Comparator.comparing(used::get));
+            for (File entry : candidates) {
+                if (total <= maxSize) {
+                    return;
+                }
+                if (tryDelete(entry)) {
+                    total -= sizes.get(entry);
+                }
+            }
+        }
+    }
+
+    private boolean tryDelete(File entry) {
+        File lockFile = new File(folder, entry.getName() + ".lock");
+        try {
+            String key = folder.getCanonicalPath() + File.separator + entry.getName();
+            synchronized (MONITORS.computeIfAbsent(key, k -> new Object())) {
+                synchronized (HOLDERS) {
+                    if (HOLDERS.containsKey(key)) {
+                        return false;
+                    }
+                }
+                try (RandomAccessFile file = new RandomAccessFile(lockFile, "rw");
+                        FileChannel channel = file.getChannel()) {
+                    FileLock lock = channel.tryLock();
+                    if (lock == null) {
+                        // in use by another process
+                        return false;
+                    }
+                    try {
+                        System.out.println("Removing BLAST database from cache: " + entry);
+                        delete(entry.toPath());
+                        return true;
+                    } finally {
+                        lock.release();
+                    }
+                }
+            }
+        } catch (OverlappingFileLockException e) {
+            return false;
+        } catch (IOException e) {
+            System.out.println("Error removing BLAST database " + entry + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static void touch(File entry) {
+        new File(entry, COMPLETE).setLastModified(System.currentTimeMillis());
+    }
+
+    private static long size(Path path) {
+        try (Stream<Path> files = Files.walk(path)) {
+            return files.filter(Files::isRegularFile).mapToLong(f -> f.toFile().length()).sum();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static void delete(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(path)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * @param fasta
+     * @return the hex SHA-256 of the file content
+     * @throws IOException
+     */
+    public static String hash(File fasta) throws IOException {
+        return FileHelper.sha256(fasta);
+    }
+
+    private static class Holder {
+
+        private final RandomAccessFile file;
+        private final FileLock lock;
+        private int count = 1;
+
+        Holder(RandomAccessFile file, FileLock lock) {
+            this.file = file;
+            this.lock = lock;
+        }
+    }
+
+    /**
+     * A database in use. Close it when the BLAST search is over.
+     */
+    public static class Lease implements Closeable {
+
+        private final String key;
+        private final File database;
+        private boolean closed = false;
+
+        private Lease(String key, File database) {
+            this.key = key;
+            this.database = database;
+        }
+
+        /**
+         * @return the database name to pass to blastp -db
+         */
+        public File getDatabase() {
+            return database;
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (MONITORS.get(key)) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                Holder holder;
+                synchronized (HOLDERS) {
+                    holder = HOLDERS.get(key);
+                    if (--holder.count > 0) {
+                        return;
+                    }
+                    HOLDERS.remove(key);
+                }
+                try {
+                    holder.lock.release();
+                } finally {
+                    holder.file.close();
+                }
+            }
+        }
+    }
+}
@@ -6,14 +6,13 @@
 package br.udesc.epibuilder.blast;
 
 import br.ufsc.epibuilder.Parameters;
-import br.ufsc.epibuilder.converter.FileHelper;
+import br.ufsc.epibuilder.RunConfiguration;
 import br.ufsc.epibuilder.entity.Proteome;
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.util.ArrayList;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 
 /**
  *
@@ -21,45 +20,17 @@ import java.util.ArrayList;
  */
 public class BlastRunner {
 
-    public static void runCommand(String command) throws IOException {
-        String s;
-        Process p = Runtime.getRuntime().exec(command);
-        BufferedReader stdInput = new BufferedReader(new InputStreamReader(p.getInputStream()));
-        BufferedReader stdError = new BufferedReader(new InputStreamReader(p.getErrorStream()));
-
-        boolean success = false;
-        String stSuccess = "";
-        while ((s = stdInput.readLine()) != null) {
-            stSuccess += s;
-            stSuccess += "\n";
-            success = true;
-        }
-
-        boolean error = false;
-        String stError = "";
-
-        while ((s = stdError.readLine()) != null) {
-            stError += s;
-            stError += "\n";
-            error = true;
-        }
-
-        if (success) {
-            System.out.println("Success:");
-            System.out.println(stSuccess);
-        }
-        if (error) {
-            System.out.println("Error:");
-            System.out.println(stError);
-        }
+    public static void runCommand(String command) throws IOException, InterruptedException {
+        run(command.split(" "));
     }
 
-    public static void chmodBlast(Parameters.SO so) {
+    public static void chmodBlast(RunConfiguration config) {
         System.out.println("Giving permission to execution to blastp and makeblastdb");
         try {
+            Parameters.SO so = config.getOperationalSystem();
             if (so == Parameters.SO.linux || so == Parameters.SO.macos) {
-                runCommand("chmod +x " + Parameters.BLASTP_PATH);
-                runCommand("chmod +x " + Parameters.MAKEBLASTDB_PATH);
+                runCommand("chmod +x " + config.getBlastpPath());
+                runCommand("chmod +x " + config.getMakeblastdbPath());
             }
         } catch (Exception e) {
 //            e.printStackTrace();
@@ -67,83 +38,112 @@ public class BlastRunner {
         }
     }
 
-    public static void addHeader(File file) throws Exception {
-        String res = FileHelper.readFile(file);
-        FileWriter fw = new FileWriter(file);
-        fw.write("qacc\tsacc\tpident\tqcovs\tqseq\tsseq\tqacc\n" + res);
-        fw.close();
-    }
-
-    public static File getBlastResults(Proteome proteome, String epiBuilderFastaEpitopesFile) {
-        String s = null;
-        String db = String.format("%s/%s-epibuilder-blast-%s", Parameters.DESTINATION_FOLDER, Parameters.BASENAME, proteome.getOrganism());
+    /**
+     * Searches the epitopes in the proteome.
+     *
+     * @param config
+     * @param proteome
+     * @param epiBuilderFastaEpitopesFile
+     * @param threads value of -num_threads of blastp
+     * @return the blastp tabular output
+     * @throws IOException if makeblastdb or blastp fail
+     * @throws InterruptedException
+     */
+    public static File getBlastResults(RunConfiguration config, Proteome proteome, String epiBuilderFastaEpitopesFile,
+            int threads) throws IOException, InterruptedException {
+        String db = String.format("%s/%s-epibuilder-blast-%s", config.getDestinationFolder(), config.getBasename(), proteome.getOrganism());
         String blastOutput = db + "_blast.csv";
 
-        String[] makeblast = {Parameters.MAKEBLASTDB_PATH,
-            "-dbtype", "prot",
-            "-in", proteome.getFile().getAbsolutePath(),
-            "-out", db};
+        if (config.getBlastCacheFolder() != null) {
+            BlastDatabaseCache cache = new BlastDatabaseCache(new File(config.getBlastCacheFolder()),
+                    config.getBlastCacheSize(), config.getMakeblastdbPath());
+            try (BlastDatabaseCache.Lease lease = cache.acquire(proteome.getFile())) {
+                run(blastp(config, lease.getDatabase().getAbsolutePath(), epiBuilderFastaEpitopesFile, blastOutput, threads));
+            }
+        } else {
+            String[] makeblast = {config.getMakeblastdbPath(),
+                "-dbtype", "prot",
+                "-in", proteome.getFile().getAbsolutePath(),
+                "-out", db};
+            run(makeblast);
+            run(blastp(config, db, epiBuilderFastaEpitopesFile, blastOutput, threads));
+        }
+        return new File(blastOutput);
+    }
 
-        String[] blastp = {Parameters.BLASTP_PATH,
+    private static String[] blastp(RunConfiguration config, String db, String epiBuilderFastaEpitopesFile, String blastOutput,
+            int threads) {
+        return new String[]{config.getBlastpPath(),
             "-query", epiBuilderFastaEpitopesFile,
             "-db", db,
             "-outfmt", "6 qacc sacc pident qcovs qseq sseq qacc",
-            "-task", Parameters.BLAST_TASK,
-            "-word_size", Parameters.BLAST_WORD_SIZE + "",
+            "-task", config.getBlastTask(),
+            "-word_size", config.getBlastWordSize() + "",
+            "-num_threads", threads + "",
             "-out", blastOutput};
+    }
 
-        ArrayList<String[]> cmds = new ArrayList<>();
-        cmds.add(makeblast);
-        cmds.add(blastp);
-        try {
-            for (String[] cmd : cmds) {
-                System.out.print("Running command[: ");
-
-                for (String string : cmd) {
-                    System.out.print(string + " ");
-                }
-                System.out.println("]");
-
-                Process p = Runtime.getRuntime().exec(cmd);
-                BufferedReader stdInput = new BufferedReader(new InputStreamReader(p.getInputStream()));
-                BufferedReader stdError = new BufferedReader(new InputStreamReader(p.getErrorStream()));
-
-                boolean success = false;
-                String stSuccess = "";
-                while ((s = stdInput.readLine()) != null) {
-                    stSuccess += s;
-                    stSuccess += "\n";
-                    success = true;
-                }
+    /**
+     * Runs the command. Its standard output and error are read at the same
+     * time, each by its own thread, so the command never blocks on a full
+     * pipe.
+     *
+     * @param cmd
+     * @throws IOException if the command cannot be started or exits with an
+     * error
+     * @throws InterruptedException
+     */
+    private static void run(String[] cmd) throws IOException, InterruptedException {
+        System.out.println("Running command[: " + String.join(" ", cmd) + " ]");
+
+        Process p = new ProcessBuilder(cmd).start();
+        StreamDrainer stdInput = new StreamDrainer(p.getInputStream());
+        StreamDrainer stdError = new StreamDrainer(p.getErrorStream());
+        stdInput.start();
+        stdError.start();
+        int exit = p.waitFor();
+        stdInput.join();
+        stdError.join();
+
+        String stSuccess = stdInput.getOutput();
+        String stError = stdError.getOutput();
+        // printed together, so the output of parallel searches is not mixed
+        synchronized (System.out) {
+            if (!stSuccess.isEmpty()) {
+                System.out.println("Success:");
+                System.out.println(stSuccess);
+            }
+            if (!stError.isEmpty()) {
+                System.out.println("Error:");
+                System.out.println(stError);
+            }
+        }
+        if (exit != 0) {
+            throw new IOException(cmd[0] + " exited with code " + exit);
+        }
+    }
 
-                boolean error = false;
-                String stError = "";
+    private static class StreamDrainer extends Thread {
 
-                while ((s = stdError.readLine()) != null) {
-                    stError += s;
-                    stError += "\n";
-                    error = true;
-                }
+        private final InputStream in;
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
 
-                if (success) {
-                    System.out.println("Success:");
-                    System.out.println(stSuccess);
-                }
-                if (error) {
-                    System.out.println("Error:");
-                    System.out.println(stError);
-                }
+        StreamDrainer(InputStream in) {
+            this.in = in;
+            setDaemon(true);
+        }
 
+        @Override
+        public void run() {
+            try (InputStream stream = in) {
+                stream.transferTo(out);
+            } catch (IOException e) {
+                // the process was destroyed
             }
-            File blastfile = new File(blastOutput);
-            addHeader(blastfile);
-
-            return blastfile;
-        } catch (Exception e) {
-            e.printStackTrace();
-            System.exit(-1);
         }
 
-        return null;
+        String getOutput() {
+            return out.toString(StandardCharsets.UTF_8);
+        }
     }
 }
@@ -0,0 +1,72 @@
+package br.udesc.epibuilder.blast;
+
+import br.ufsc.epibuilder.RunConfiguration;
+import br.ufsc.epibuilder.entity.Proteome;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the BLAST searches of all the proteomes of a run concurrently.
+ *
+ * The CPUs of {@link RunConfiguration#getBlastThreads()} are split between
+ * the searches: up to that many proteomes are searched at the same time and
+ * each blastp gets the remaining CPUs as -num_threads.
+ *
+ * @author renato
+ */
+public class BlastScheduler {
+
+    /**
+     * Searches the epitopes in every proteome of the run.
+     *
+     * @param config
+     * @param epiBuilderFastaEpitopesFile
+     * @return the blastp output of each proteome, in the order of the
+     * proteomes of the run
+     * @throws IOException if a search fails
+     * @throws InterruptedException
+     */
+    public static List<File> run(RunConfiguration config, String epiBuilderFastaEpitopesFile)
+            throws IOException, InterruptedException {
+        List<Proteome> proteomes = config.getProteomes();
+        List<File> results = new ArrayList<>();
+        if (proteomes.isEmpty()) {
+            return results;
+        }
+        int budget = config.getBlastThreads();
+        int concurrent = Math.min(proteomes.size(), budget);
+        int threads = Math.max(1, budget / concurrent);
+        System.out.println(String.format("Searching %s proteomes, %s at a time with %s threads each",
+                proteomes.size(), concurrent, threads));
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrent);
+        try {
+            List<Future<File>> futures = new ArrayList<>();
+            for (Proteome proteome : proteomes) {
+                futures.add(executor.submit(
+                        () -> BlastRunner.getBlastResults(config, proteome, epiBuilderFastaEpitopesFile, threads)));
+            }
+            for (Future<File> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
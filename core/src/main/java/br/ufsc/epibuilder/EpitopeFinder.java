@@ -7,26 +7,25 @@ package br.ufsc.epibuilder;
  */
 import br.udesc.cav.tese.glycosylation.Motif;
 import br.udesc.epibuilder.blast.Blast;
-import static br.udesc.epibuilder.blast.BlastRunner.getBlastResults;
-import br.udesc.epibuilder.blast.ReportBlastJoiner;
+import br.udesc.epibuilder.blast.BlastScheduler;
 import br.ufsc.epibuilder.entity.Proteome;
-import br.ufsc.epibuilder.converter.IEDBBcellCalculator;
+import br.ufsc.epibuilder.converter.BcellScoreEngine;
 import br.ufsc.epibuilder.converter.ProteinConverter;
 
-import br.ufsc.epibuilder.entity.AminoEpitopo;
 import br.ufsc.epibuilder.entity.Epitopo;
 import br.ufsc.epibuilder.entity.Protein;
-import br.ufsc.epibuilder.entity.ReportBCell;
+import br.ufsc.epibuilder.entity.ProteinScores;
 import br.ufsc.epibuilder.entity.SoftwareBcellEnum;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeSet;
 
-import static br.ufsc.epibuilder.Parameters.*;
 
 import br.ufsc.epibuilder.Parameters.BEPIPRED_TYPE;
-import br.ufsc.epibuilder.converter.BepiPred3Converter;
+import br.ufsc.epibuilder.converter.BepiPred3Protein;
+import br.ufsc.epibuilder.converter.BepiPred3Reader;
 import static br.ufsc.epibuilder.entity.SoftwareBcellEnum.CHOU_FOSMAN;
 import static br.ufsc.epibuilder.entity.SoftwareBcellEnum.EMINI;
 import static br.ufsc.epibuilder.entity.SoftwareBcellEnum.KARPLUS_SCHULZ;
@@ -34,19 +33,30 @@ import static br.ufsc.epibuilder.entity.SoftwareBcellEnum.KOLASKAR;
 import static br.ufsc.epibuilder.entity.SoftwareBcellEnum.PARKER;
 import static br.ufsc.epibuilder.entity.report.FormatHelper.*;
 import br.ufsc.epibuilder.entity.Topology;
+import br.ufsc.epibuilder.exceptions.InputException;
+import br.ufsc.epibuilder.entity.report.AnalysisResult;
 import br.ufsc.epibuilder.entity.report.EpitopeReport;
 import br.ufsc.epibuilder.entity.report.ExcelReport;
-import br.ufsc.epibuilder.entity.report.ExcelTabReport;
 import br.ufsc.epibuilder.entity.report.FormatHelper;
 import br.ufsc.epibuilder.entity.report.Report;
+import br.ufsc.epibuilder.entity.report.RowWriter;
+import br.ufsc.epibuilder.entity.report.TsvWriter;
 import br.ufsc.epibuilder.proteomics.ProteomicCalculator;
+import br.ufsc.epibuilder.proteomics.ProteomeIndex;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Calendar;
 import java.util.Collections;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 import org.apache.commons.lang3.StringUtils;
 import org.biojava.nbio.core.exceptions.CompoundNotFoundException;
 
@@ -56,25 +66,43 @@ import org.biojava.nbio.core.exceptions.CompoundNotFoundException;
  */
 public class EpitopeFinder {
 
-    public static EpitopeCount count(String epitopo, Proteome proteome) {
-        int total = 0;
-        int totalProteins = 0;
-        StringBuilder ids = new StringBuilder();
-        for (ProteinConverter protein : proteome.getProteins()) {
-            int count = protein.count(epitopo);
-            total += count;
-            if (count > 0) {
-                totalProteins++;
-                if (Parameters.HIT_ACCESSION) {
-                    ids.append(protein.getId());
-                    ids.append(" ");
-                }
-            }
+    public static EpitopeCount count(String epitopo, Proteome proteome, boolean hitAccession) {
+        return count(Collections.singletonList(epitopo), proteome, hitAccession).get(epitopo);
+    }
+
+    /**
+     * Counts the epitopes in the proteins of the proteome, reading the
+     * proteome once.
+     *
+     * @param epitopes
+     * @param proteome
+     * @param hitAccession
+     * @return the count of each epitope
+     */
+    public static Map<String, EpitopeCount> count(Collection<String> epitopes, Proteome proteome,
+            boolean hitAccession) {
+        Map<String, EpitopeCount> counts = new EpitopeMatcher(epitopes).count(proteome, hitAccession);
+        for (String epitope : epitopes) {
+            counts.putIfAbsent(epitope, new EpitopeCount(hitAccession ? "" : "-", 0, 0));
         }
-        if (!Parameters.HIT_ACCESSION) {
-            return new EpitopeCount("-", total, totalProteins);
+        return counts;
+    }
+
+    /**
+     * Counts the epitopes in an indexed proteome.
+     *
+     * @param epitopes
+     * @param index
+     * @param hitAccession
+     * @return the count of each epitope
+     */
+    public static Map<String, EpitopeCount> count(Collection<String> epitopes, ProteomeIndex index,
+            boolean hitAccession) {
+        Map<String, EpitopeCount> counts = new HashMap<>();
+        for (String epitope : epitopes) {
+            counts.computeIfAbsent(epitope, e -> index.count(e, hitAccession));
         }
-        return new EpitopeCount(ids.toString().trim(), total, totalProteins);
+        return counts;
     }
 
     public static int countByOrganism(String epitopo, Proteome proteome) {
@@ -135,8 +163,8 @@ public class EpitopeFinder {
     public static boolean validateEpitope(Epitopo epitopo, double mediaEmini, double mediaParker, int qtd) {
         int i = 0;
         TreeSet<Integer> areas = new TreeSet<>();
-        for (AminoEpitopo ae : epitopo.getAaEpitopes()) {
-            if (ae.getEmini() >= mediaEmini && ae.getParker() >= mediaParker) {
+        for (int pos = 0; pos < epitopo.getLength(); pos++) {
+            if (epitopo.getValue(EMINI, pos) >= mediaEmini && epitopo.getValue(PARKER, pos) >= mediaParker) {
                 i++;
             } else {
                 if (i > 0) {
@@ -172,343 +200,442 @@ public class EpitopeFinder {
         return total;
     }
 
-    public static String process() {
+    public static String process(RunConfiguration config) {
         try {
-            setOutput();
+            setOutput(config);
 
             sout("Process started: ");
-            ArrayList<ProteinConverter> proteins = new ArrayList<>();
 
             sout("Reading BepiPred-3.0 file");
-            if (Parameters.BEPIPRED_INPUT == BEPIPRED_TYPE.FASTA) {
+            String key = scoreKey(config);
+            ArrayList<Protein> cached = loadScores(config, key);
+            if (config.getBepipredInput() == BEPIPRED_TYPE.FASTA) {
                 sout("Source file: FASTA");
-                sout("Executing BepiPred-3.0");
-                BepiPred3Runner.execute();
-                sout("BepiPred-3.0 finished");
+                if (cached != null) {
+                    sout("BepiPred-3.0 scores found in the score cache");
+                } else {
+                    sout("Executing BepiPred-3.0");
+                    config = config.toBuilder().bepipredFile(BepiPred3Runner.execute(config)).build();
+                    sout("BepiPred-3.0 finished");
+                }
             }
-            sout("Loading BepiPred-3.0 - CSV file");
-            proteins = BepiPred3Converter.getBepipred3FromBiolib(BEPIPRED_FILE);
-            sout("BepiPred-3.0 - Done");
+            AnalysisResult result = analyze(config, key, cached);
+            sout("Creating report's structure - Done");
 
-            Map<String, ProteinConverter> bepipredMap = getMap(proteins);
+            String report = writeReports(config, result);
+            sout("Finish\t");
+            return report;
+        } catch (Exception e) {
+            sout("An error occured: " + e.getMessage());
+            e.printStackTrace();
+            return e.getMessage();
+        }
+    }
 
-            HashMap<String, Protein> map = new HashMap<>();
-            sout("Converting AA in Protein");
-            for (String id : bepipredMap.keySet()) {
-                ProteinConverter protein = bepipredMap.get(id);
+    /**
+     * Writes the report files of the run in its destination folder, running
+     * the BLAST searches when they are enabled.
+     *
+     * @param config
+     * @param result
+     * @return the parameters of the run and the generated files, also saved
+     * with the padded tables in the epibuilder.txt file
+     */
+    public static String writeReports(RunConfiguration config, AnalysisResult result) throws Exception {
+        ArrayList<Protein> proteinList = result.getProteins();
+        ArrayList<Report> reportList = result.getReports();
+        int totalNglyc = result.getTotalNglyc();
+        int totalEpitopes = result.getTotalEpitopes();
+        int totalEpitopesNglyc = result.getTotalEpitopesNglyc();
+
+        sout("Creating reports");
+        String dest = config.getDestinationFolder();
+        String basename = config.getBasename();
+        if (basename.trim().length() > 0) {
+            basename += "-";
+        }
+
+        sout("\t Parameters\t");
+        StringBuilder stParameters = new StringBuilder();
+        stParameters.append("\n---- Running Parameters ----");
+        stParameters.append("\nBepiPred-3.0 Threshold : " + config.getThresholdBepipred());
+        stParameters.append("\nMin epitope length     : " + config.getMinLength());
+        stParameters.append("\nMax epitope length     : " + config.getMaxLength());
+        stParameters.append("\n");
+        stParameters.append("\n---- Softwares Threshold ----");
+        Map<SoftwareBcellEnum, Double> softwares = config.getSoftwares();
+        if (softwares.containsKey(EMINI)) {
+            stParameters
+                    .append("\nEmini                  : " + (softwares.get(EMINI) == null ? "Default"
+                            : softwares.get(EMINI)));
+        }
+        if (softwares.containsKey(PARKER)) {
+            stParameters.append(
+                    "\nParker                 : " + (softwares.get(PARKER) == null ? "Default"
+                            : softwares.get(PARKER)));
+        }
+        if (softwares.containsKey(CHOU_FOSMAN)) {
+            stParameters.append(
+                    "\nChou Fosman            : " + (softwares.get(CHOU_FOSMAN) == null ? "Default"
+                            : softwares.get(CHOU_FOSMAN)));
+        }
+        if (softwares.containsKey(KARPLUS_SCHULZ)) {
+            stParameters.append("\nKarplus Schulz         : "
+                    + (softwares.get(KARPLUS_SCHULZ) == null ? "Default"
+                            : softwares.get(KARPLUS_SCHULZ)));
+        }
+        if (softwares.containsKey(KOLASKAR)) {
+            stParameters.append(
+                    "\nKolaskar               : " + (softwares.get(KOLASKAR) == null ? "Default"
+                            : softwares.get(KOLASKAR)));
+        }
+
+        stParameters.append("\n\n---- Proteomes ----");
+        stParameters.append("\n" + StringUtils.rightPad("Alias", 15, ' ') + "\tFile");
+        for (Proteome proteome : config.getProteomes()) {
+            stParameters.append("\n" + StringUtils.rightPad(proteome.getOrganism(), 15, ' ') + "\t"
+                    + proteome.getFile().getAbsolutePath());
+        }
 
-                for (Integer pos : protein.getAminoacidMap().keySet()) {
-                    ProteinConverter.Amino aminoBepipred2 = protein.getAminoacidMap().get(pos);
+        if (config.isSearchBlast()) {
+            stParameters.append("\n\n---- Blast ----");
+            stParameters.append("\nIdentity         : " + config.getBlastIdentity());
+            stParameters.append("\nCover            : " + config.getBlastCover());
+            stParameters.append("\nWord size        : " + config.getBlastWordSize());
+            stParameters.append("\nTask blastp-short: " + config.getBlastTask());
 
-                    String amino = aminoBepipred2.getAa();
-                    double bepipred2 = aminoBepipred2.getValue();
+        }
+        stParameters.append("\n\n---- Stats ----");
+        stParameters.append("\nProcessed proteins     : " + proteinList.size());
+        stParameters.append("\nN-Glycosylated proteins : " + totalNglyc);
+        stParameters.append("\nIdentified epitopes    : " + totalEpitopes);
+        stParameters.append("\nN-Glycosylated epitopes: " + totalEpitopesNglyc);
+        stParameters.append("\n");
+        String fileParameters = saveRandomFileName(dest + "/" + basename + "epibuilder-parameters",
+                stParameters.toString(), "txt");
+        sout("\t Parameters - done\t");
+
+        // the Excel sheets are written with the TSV files, from the same rows
+        ExcelReport excel = new ExcelReport();
+        RowWriter excelDetail = excel.createSheet("Epitopes Detailed");
+        RowWriter excelProteinSummary = excel.createSheet("Protein Summary");
+        RowWriter excelTopology = excel.createSheet("Epitopes Topology");
+
+        sout("\t Report by Protein\t");
+        String fileEpibuilderProteinSummary = dest + "/" + basename + "epibuilder-protein-summary.tsv";
+        try (TsvWriter out = new TsvWriter(new File(fileEpibuilderProteinSummary))) {
+            writeReportByProtein(proteinList, RowWriter.all(out, excelProteinSummary));
+        }
+        sout("\t Report by Protein - done\t");
 
-                    AminoEpitopo aa = new AminoEpitopo(amino, pos);
+        sout("\t Report by Topology\t");
+        String fileEpibuilderTopology = dest + "/" + basename + "epibuilder-topology.tsv";
+        try (TsvWriter out = new TsvWriter(new File(fileEpibuilderTopology))) {
+            writeReportByTopology(reportList, config, RowWriter.all(out, excelTopology));
+        }
 
-                    aa.setBepipred2(bepipred2);
+        sout("\t Report by Topology - Done\t");
 
-                    Protein pe = map.get(id);
-                    if (pe == null) {
-                        pe = new Protein();
-                        pe.setId(id);
-                        pe.addAminoEpitopo(aa);
-                        map.put(id, pe);
-                    } else {
-                        pe.addAminoEpitopo(aa);
-                    }
-                }
+        sout("\t Report Scores\t");
+        String fileEpibuilderScores = dest + "/" + basename + "epibuilder-scores.tsv";
+        try (TsvWriter out = new TsvWriter(new File(fileEpibuilderScores))) {
+            writeMethodScore(proteinList, config, out);
+        }
 
+        sout("\t Report Scores - done\t");
+
+        sout("\t Epitopes FASTA\t");
+
+        String fileEpibuilderFastaEpitopo = saveRandomFileName(dest + "/" + basename + "epibuilder-epitopes-fasta",
+                generateReportFastaEpitope(reportList), "fasta");
+        sout("\t Epitopes FASTA - done\t");
+
+        sout("\t Report Detailed\t");
+        // Performe a BLAST search and join it to the report
+        List<Blast> blasts = new ArrayList<>();
+        if (config.isSearchBlast()) {
+            sout("\tBlast\t");
+            // The searches run concurrently, the hits are added to the
+            // detailed report in the order of the proteomes
+            List<File> blastOutputs = BlastScheduler.run(config, fileEpibuilderFastaEpitopo);
+            for (int i = 0; i < blastOutputs.size(); i++) {
+                Proteome proteome = config.getProteomes().get(i);
+                blasts.add(new Blast(proteome.getOrganism(), blastOutputs.get(i), config.getBlastIdentity(),
+                        config.getBlastCover()));
             }
-            sout("Converting AA in Protein - Done");
-
-            sout("Processing Methods");
-            ArrayList<Protein> proteinList = new ArrayList<>(map.values());
-            for (Protein re : proteinList) {
-                String sequence = re.getSequence();
-                ArrayList<ReportBCell> list_chou_fosman = IEDBBcellCalculator.run(CHOU_FOSMAN, sequence);
-                ArrayList<ReportBCell> list_emini = IEDBBcellCalculator.run(EMINI, sequence);
-                ArrayList<ReportBCell> list_karplus = IEDBBcellCalculator.run(KARPLUS_SCHULZ, sequence);
-                ArrayList<ReportBCell> list_kolaskar = IEDBBcellCalculator.run(KOLASKAR, sequence);
-                ArrayList<ReportBCell> list_parker = IEDBBcellCalculator.run(PARKER, sequence);
-
-                for (AminoEpitopo aa : re.getAminoEpitopos()) {
-                    int pos = aa.getPosition();
-                    aa.setParker(IEDBBcellCalculator.getScoreByPosition(pos + 1, list_parker));
-                    aa.setEmini(IEDBBcellCalculator.getScoreByPosition(pos + 1, list_emini));
-                    aa.setKarplus_schulz(IEDBBcellCalculator.getScoreByPosition(pos + 1, list_karplus));
-                    aa.setKolaskar(IEDBBcellCalculator.getScoreByPosition(pos + 1, list_kolaskar));
-                    aa.setChou_fasman(IEDBBcellCalculator.getScoreByPosition(pos + 1, list_chou_fosman));
-                }
-            }
-            sout("Processing Methods - Done");
-
-            int totalNglyc = 0;
-            int totalEpitopes = 0;
-            int totalEpitopesNglyc = 0;
-
-            sout("Building epitopes");
-            for (Protein re : proteinList) {
-                re.process(THRESHOLD_BEPIPRED, MIN_LENGTH_BEPIPRED, MAX_LENGTH_BEPIPRED);
-                for (Epitopo epitopo : re.getEpitopes()) {
-                    totalEpitopes++;
-                    if (epitopo.isNglycolised()) {
-                        totalEpitopesNglyc++;
-                    }
-                }
-                if (re.isNglyco()) {
-                    totalNglyc++;
-                }
-            }
-            sout("Building epitopes - Done");
-
-            sout("Creating report's structure");
-            ArrayList<Report> reportList = new ArrayList<>();
-            for (Protein re : proteinList) {
-                ArrayList<Epitopo> epitopos = re.getEpitopes();
-
-                for (Epitopo epitopo : epitopos) {
-                    Report rep = new Report();
-                    rep.setProteinId(re.getId());
-                    rep.setStart(epitopo.getStart());
-                    rep.setEndEpitope(epitopo.getEndEpitope());
-                    rep.setnGlyc(epitopo.isNglycolised() ? "Y" : "N");
-                    rep.setLength(epitopo.getSequence().length());
-                    rep.setEpitope(epitopo.getSequence());
-                    rep.setMw(epitopo.getMW());
-                    rep.setIp(epitopo.getIP());
-                    rep.setAvgHydropathy(epitopo.getHydropathy());
-                    rep.setNglycmotif(epitopo.getNglycMotifs());
-                    rep.setnGlycMotifs(epitopo.getnGlycMotifs());
-                    rep.setnGlycTopology(epitopo.getNglycTopology());
-                    rep.setHydropathyTopology(epitopo.getHydropathyTopology());
-
-                    int total = 0;
-                    double sumCover = 0;
-                    for (SoftwareBcellEnum softwareBcellEnum : Parameters.MAP_SOFTWARES.keySet()) {
-                        double threshold = re.getThreshold(softwareBcellEnum);
-                        Topology topology = epitopo.getTopologyValue(softwareBcellEnum, threshold);
-                        total++;
-                        sumCover += topology.getValue();
-
-                        double totalScore = 0;
-
-                        for (AminoEpitopo aminoEpitopo : epitopo.getAaEpitopes()) {
-                            switch (softwareBcellEnum) {
-                                case PARKER:
-                                    totalScore += aminoEpitopo.getParker();
-                                    break;
-                                case CHOU_FOSMAN:
-                                    totalScore += aminoEpitopo.getChou_fasman();
-                                    break;
-                                case EMINI:
-                                    totalScore += aminoEpitopo.getEmini();
-                                    break;
-                                case KARPLUS_SCHULZ:
-                                    totalScore += aminoEpitopo.getKarplus_schulz();
-                                    break;
-                                case KOLASKAR:
-                                    totalScore += aminoEpitopo.getKolaskar();
-                                    break;
-                            }
-                        }
-                        double avgScore = totalScore / epitopo.getAaEpitopes().size();
-                        rep.addEpitopeReport(new EpitopeReport(threshold, softwareBcellEnum, topology, avgScore));
-                    }
-                    double avgCover = sumCover / total;
-                    rep.setAvgCover(avgCover);
-
-                    double totalBepipred = 0;
-                    for (AminoEpitopo aminoEpitopo : epitopo.getAaEpitopes()) {
-                        totalBepipred += aminoEpitopo.getBepipred2();
-                    }
-                    double avgBepiPred = totalBepipred / epitopo.getAaEpitopes().size();
-
-                    rep.setAvgBepipredScore(avgBepiPred);
-
-                    reportList.add(rep);
+            sout("\tBlast - done\t");
+        }
+        String fileEpibuilderDetail = dest + "/" + basename + "epibuilder-epitope-detail.tsv";
+        try (TsvWriter out = new TsvWriter(new File(fileEpibuilderDetail))) {
+            writeReportDetailed(reportList, config, blasts, RowWriter.all(out, excelDetail));
+        }
+        sout("\t Report Detailed - Done\t");
+        // END BLAST
+
+        boolean excelReport = false;
+        String fileEpibuilderExcel = dest + "/" + basename + "epibuilder.xlsx";
+        try (excel) {
+            excel.write(fileEpibuilderExcel);
+            excelReport = true;
+        } catch (Exception e) {
+            sout("Error generating excel files:" + e.getMessage());
+            e.printStackTrace();
+            new File(fileEpibuilderExcel).delete();
+        }
 
-                }
-            }
+        StringBuilder stFiles = new StringBuilder();
+        stFiles.append("Generated files:");
+        stFiles.append("\n\t");
+        stFiles.append(fileParameters);
+        stFiles.append("\n\t");
+        stFiles.append(fileEpibuilderProteinSummary);
+        stFiles.append("\n\t");
+        stFiles.append(fileEpibuilderTopology);
+        stFiles.append("\n\t");
+        stFiles.append(fileEpibuilderDetail);
+        if (excelReport) {
+            stFiles.append("\n\t");
+            stFiles.append(fileEpibuilderExcel);
+        }
+        stFiles.append("\n\t");
+        stFiles.append(fileEpibuilderScores);
+        stFiles.append("\n\t");
+        stFiles.append(fileEpibuilderFastaEpitopo);
+
+        // the tables are padded from the files already written
+        try (Writer out = new BufferedWriter(new FileWriter(dest + "/" + basename + "epibuilder.txt"), 1 << 16)) {
+            out.write(stParameters.toString());
+            out.write("\n---- Protein Summary ----\n");
+            convertTabFile(new File(fileEpibuilderProteinSummary), out);
+            out.write("\n---- Detailed  ----\n");
+            convertTabFile(new File(fileEpibuilderDetail), out);
+            out.write("\n---- Epitopes topology  ----\n");
+            convertTabFile(new File(fileEpibuilderTopology), out);
+            out.write(stFiles.toString());
+        }
+        return stParameters + "\n" + stFiles;
+    }
 
-            Collections.sort(reportList, new Comparator<Report>() {
-                @Override
-                public int compare(Report arg0, Report arg1) {
-                    return arg1.getAvgCover().compareTo(arg0.getAvgCover());
-                }
-            });
-            sout("Creating report's structure - Done");
+    /**
+     * Reads the BepiPred-3.0 CSV file of the run, scores the methods and builds
+     * the epitopes and their reports. No file is written, so the result can be
+     * used directly by callers that keep EpiBuilder in the same JVM.
+     *
+     * With a score cache, the scores of an input already analysed are read
+     * from the cache and only the epitopes and reports are built again.
+     *
+     * @param config
+     * @return the proteins and the reports sorted by average cover
+     */
+    public static AnalysisResult analyze(RunConfiguration config)
+            throws IOException, InputException, InterruptedException, ExecutionException {
+        String key = scoreKey(config);
+        return analyze(config, key, loadScores(config, key));
+    }
 
-            sout("Creating reports");
-            String dest = Parameters.DESTINATION_FOLDER;
-            String basename = Parameters.BASENAME;
-            if (basename.trim().length() > 0) {
-                basename += "-";
-            }
+    /**
+     * @return the key of the input of the run in the score cache, null if the
+     * run has no score cache
+     */
+    private static String scoreKey(RunConfiguration config) throws IOException {
+        if (ScoreCache.of(config) == null) {
+            return null;
+        }
+        return ScoreCache.key(config.getBepipredInput() == BEPIPRED_TYPE.FASTA ? config.getFasta() : config.getBepipredFile());
+    }
 
-            sout("\t Parameters\t");
-            StringBuilder stParameters = new StringBuilder();
-            stParameters.append("\n---- Running Parameters ----");
-            stParameters.append("\nBepiPred-3.0 Threshold : " + THRESHOLD_BEPIPRED);
-            stParameters.append("\nMin epitope length     : " + MIN_LENGTH_BEPIPRED);
-            stParameters.append("\nMax epitope length     : " + MAX_LENGTH_BEPIPRED);
-            stParameters.append("\n");
-            stParameters.append("\n---- Softwares Threshold ----");
-            if (Parameters.MAP_SOFTWARES.containsKey(EMINI)) {
-                stParameters
-                        .append("\nEmini                  : " + (Parameters.MAP_SOFTWARES.get(EMINI) == null ? "Default"
-                                : Parameters.MAP_SOFTWARES.get(EMINI)));
+    /**
+     * @return the proteins scored in a previous run, null if they are not in
+     * the score cache
+     */
+    private static ArrayList<Protein> loadScores(RunConfiguration config, String key) throws IOException {
+        return key != null ? ScoreCache.of(config).load(key) : null;
+    }
+
+    /**
+     * @param config
+     * @param key the key of the input in the score cache, null without cache
+     * @param proteinList the proteins loaded from the score cache, null to
+     * read them from the BepiPred-3.0 CSV file of the run
+     */
+    private static AnalysisResult analyze(RunConfiguration config, String key, ArrayList<Protein> proteinList)
+            throws IOException, InputException, InterruptedException, ExecutionException {
+        ScoreCache cache = ScoreCache.of(config);
+        boolean cached = proteinList != null;
+        if (cached) {
+            sout("Scores loaded from the score cache: " + key);
+        } else {
+            sout("Loading BepiPred-3.0 - CSV file");
+            HashMap<String, Protein> map = new HashMap<>();
+            try (BepiPred3Reader reader = new BepiPred3Reader(config.getBepipredFile())) {
+                BepiPred3Protein bepipred;
+                while ((bepipred = reader.next()) != null) {
+                    Protein protein = toProtein(bepipred);
+                    map.put(protein.getId(), protein);
+                }
             }
-            if (Parameters.MAP_SOFTWARES.containsKey(PARKER)) {
-                stParameters.append(
-                        "\nParker                 : " + (Parameters.MAP_SOFTWARES.get(PARKER) == null ? "Default"
-                                : Parameters.MAP_SOFTWARES.get(PARKER)));
+            proteinList = new ArrayList<>(map.values());
+            sout("BepiPred-3.0 - Done");
+        }
+
+        sout("Processing methods, building epitopes and creating report's structure");
+        ArrayList<ArrayList<Report>> reportsByProtein = processProteins(proteinList, config);
+        if (cache != null && !cached) {
+            try {
+                cache.store(key, proteinList);
+            } catch (IOException e) {
+                sout("Could not store the scores in the cache: " + e.getMessage());
             }
-            if (Parameters.MAP_SOFTWARES.containsKey(CHOU_FOSMAN)) {
-                stParameters.append(
-                        "\nChou Fosman            : " + (Parameters.MAP_SOFTWARES.get(CHOU_FOSMAN) == null ? "Default"
-                                : Parameters.MAP_SOFTWARES.get(CHOU_FOSMAN)));
+        }
+
+        int totalNglyc = 0;
+        int totalEpitopes = 0;
+        int totalEpitopesNglyc = 0;
+        ArrayList<Report> reportList = new ArrayList<>();
+        for (int i = 0; i < proteinList.size(); i++) {
+            Protein re = proteinList.get(i);
+            for (Epitopo epitopo : re.getEpitopes()) {
+                totalEpitopes++;
+                if (epitopo.isNglycolised()) {
+                    totalEpitopesNglyc++;
+                }
             }
-            if (Parameters.MAP_SOFTWARES.containsKey(KARPLUS_SCHULZ)) {
-                stParameters.append("\nKarplus Schulz         : "
-                        + (Parameters.MAP_SOFTWARES.get(KARPLUS_SCHULZ) == null ? "Default"
-                                : Parameters.MAP_SOFTWARES.get(KARPLUS_SCHULZ)));
+            if (re.isNglyco()) {
+                totalNglyc++;
             }
-            if (Parameters.MAP_SOFTWARES.containsKey(KOLASKAR)) {
-                stParameters.append(
-                        "\nKolaskar               : " + (Parameters.MAP_SOFTWARES.get(KOLASKAR) == null ? "Default"
-                                : Parameters.MAP_SOFTWARES.get(KOLASKAR)));
+            reportList.addAll(reportsByProtein.get(i));
+        }
+
+        Collections.sort(reportList, new Comparator<Report>() {
+            @Override
+            public int compare(Report arg0, Report arg1) {
+                return arg1.getAvgCover().compareTo(arg0.getAvgCover());
             }
+        });
+        return new AnalysisResult(proteinList, reportList, totalNglyc, totalEpitopes, totalEpitopesNglyc);
+    }
 
-            stParameters.append("\n\n---- Proteomes ----");
-            stParameters.append("\n" + StringUtils.rightPad("Alias", 15, ' ') + "\tFile");
-            for (Proteome proteome : Parameters.PROTEOMES) {
-                stParameters.append("\n" + StringUtils.rightPad(proteome.getOrganism(), 15, ' ') + "\t"
-                        + proteome.getFile().getAbsolutePath());
+    /**
+     * Scores the methods, builds the epitopes and the reports of each protein.
+     * With more than one thread the proteins are processed in a fork-join
+     * pool; the reports are returned in the order of the proteins either way,
+     * so the output does not depend on the parallelism.
+     *
+     * @param proteinList
+     * @param config
+     * @return the reports of each protein, in the order of proteinList
+     */
+    public static ArrayList<ArrayList<Report>> processProteins(ArrayList<Protein> proteinList, RunConfiguration config)
+            throws InterruptedException, ExecutionException {
+        int parallelism = config.getParallelism();
+        ArrayList<ArrayList<Report>> reports = new ArrayList<>(Collections.nCopies(proteinList.size(), null));
+        if (parallelism <= 1) {
+            for (int i = 0; i < proteinList.size(); i++) {
+                reports.set(i, processProtein(proteinList.get(i), config));
             }
+        } else {
+            // each task sets only its own index, the list is never resized
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.submit(() -> IntStream.range(0, proteinList.size()).parallel()
+                        .forEach(i -> reports.set(i, processProtein(proteinList.get(i), config)))).get();
+            } finally {
+                pool.shutdown();
+            }
+        }
+        return reports;
+    }
 
-            if (Parameters.SEARCH_BLAST) {
-                stParameters.append("\n\n---- Blast ----");
-                stParameters.append("\nIdentity         : " + Parameters.BLAST_IDENTITY);
-                stParameters.append("\nCover            : " + Parameters.BLAST_COVER);
-                stParameters.append("\nWord size        : " + Parameters.BLAST_WORD_SIZE);
-                stParameters.append("\nTask blastp-short: " + Parameters.BLAST_TASK);
+    /**
+     * Scores the methods, builds the epitopes and the reports of one protein.
+     *
+     * @param re
+     * @param config
+     * @return the reports of the epitopes of the protein
+     */
+    public static ArrayList<Report> processProtein(Protein re, RunConfiguration config) {
+        if (!re.getScores().isScored()) {
+            processMethods(re);
+        }
+        re.process(config.getThresholdBepipred(), config.getMinLength(), config.getMaxLength());
+
+        ArrayList<Report> reportList = new ArrayList<>();
+        for (Epitopo epitopo : re.getEpitopes()) {
+            Report rep = new Report();
+            rep.setProteinId(re.getId());
+            rep.setStart(epitopo.getStart());
+            rep.setEndEpitope(epitopo.getEndEpitope());
+            rep.setnGlyc(epitopo.isNglycolised() ? "Y" : "N");
+            rep.setLength(epitopo.getSequence().length());
+            rep.setEpitope(epitopo.getSequence());
+            rep.setMw(epitopo.getMW());
+            rep.setIp(epitopo.getIP());
+            rep.setAvgHydropathy(epitopo.getHydropathy());
+            rep.setNglycmotif(epitopo.getNglycMotifs());
+            rep.setnGlycMotifs(epitopo.getnGlycMotifs());
+            rep.setnGlycTopology(epitopo.getNglycTopology());
+            rep.setHydropathyTopology(epitopo.getHydropathyTopology());
 
-            }
-            stParameters.append("\n\n---- Stats ----");
-            stParameters.append("\nProcessed proteins     : " + proteinList.size());
-            stParameters.append("\nN-Glycosylated proteins : " + totalNglyc);
-            stParameters.append("\nIdentified epitopes    : " + totalEpitopes);
-            stParameters.append("\nN-Glycosylated epitopes: " + totalEpitopesNglyc);
-            stParameters.append("\n");
-            String fileParameters = saveRandomFileName(dest + "/" + basename + "epibuilder-parameters",
-                    stParameters.toString(), "txt");
-            sout("\t Parameters - done\t");
-
-            StringBuilder stReport = new StringBuilder();
-
-            sout("\t Report by Protein\t");
-            String reportByProtein = generateReportByProtein(proteinList);
-            String fileEpibuilderProteinSummary = saveRandomFileName(
-                    dest + "/" + basename + "epibuilder-protein-summary", reportByProtein, "tsv");
-            sout("\t Report by Protein - done\t");
-
-            sout("\t Report by Topology\t");
-            String reportTopology = generateReportByTopology(reportList);
-            String fileEpibuilderTopology = saveRandomFileName(dest + "/" + basename + "epibuilder-topology",
-                    reportTopology, "tsv");
-
-            sout("\t Report by Topology - Done\t");
-
-            sout("\t Report Scores\t");
-            String reportScores = generateMethodScore(proteinList);
-            String fileEpibuilderScores = saveRandomFileName(dest + "/" + basename + "epibuilder-scores", reportScores,
-                    "tsv");
-
-            sout("\t Report Scores - done\t");
-
-            sout("\t Epitopes FASTA\t");
-
-            String fileEpibuilderFastaEpitopo = saveRandomFileName(dest + "/" + basename + "epibuilder-epitopes-fasta",
-                    generateReportFastaEpitope(reportList), "fasta");
-            sout("\t Epitopes FASTA - done\t");
-
-            sout("\t Report Detailed\t");
-            String reportDetailed = generateReportDetailed(reportList);
-
-            // Performe a BLAST search and append it to the report
-            if (Parameters.SEARCH_BLAST) {
-                sout("\tBlast\t");
-                // Each blast result append in the last reportDetaild textFile until generate
-                // the last
-                for (Proteome proteome : Parameters.PROTEOMES) {
-                    File blastoutput = getBlastResults(proteome, fileEpibuilderFastaEpitopo);
-                    Blast blast = new Blast(proteome.getOrganism(), blastoutput);
-                    reportDetailed = ReportBlastJoiner.joinReport(reportDetailed,
-                            blast.getListReport(Parameters.BLAST_IDENTITY, Parameters.BLAST_COVER), blast.getName());
+            int total = 0;
+            double sumCover = 0;
+            for (SoftwareBcellEnum softwareBcellEnum : config.getSoftwares().keySet()) {
+                double threshold = re.getThreshold(softwareBcellEnum, config);
+                Topology topology = epitopo.getTopologyValue(softwareBcellEnum, threshold);
+                total++;
+                sumCover += topology.getValue();
+
+                float[] values = epitopo.getScores().get(softwareBcellEnum);
+                double totalScore = 0;
+                for (int pos = epitopo.getStart(); pos < epitopo.getStart() + epitopo.getLength(); pos++) {
+                    totalScore += values[pos];
                 }
-                sout("\tBlast - done\t");
-            }
-            String fileEpibuilderDetail = saveRandomFileName(dest + "/" + basename + "epibuilder-epitope-detail",
-                    reportDetailed, "tsv");
-            sout("\t Report Detailed - Done\t");
-            // END BLAST
-
-            stReport.append(stParameters.toString());
-            stReport.append("\n---- Protein Summary ----\n");
-            stReport.append(convertTabString(reportByProtein));
-            stReport.append("\n---- Detailed  ----\n");
-            stReport.append(convertTabString(reportDetailed));
-            stReport.append("\n---- Epitopes topology  ----\n");
-            stReport.append(convertTabString(reportTopology));
-
-            ArrayList<ExcelTabReport> excelTab = new ArrayList<>();
-
-            excelTab.add(new ExcelTabReport("Epitopes Detailed", reportDetailed));
-            excelTab.add(new ExcelTabReport("Protein Summary", reportByProtein));
-            excelTab.add(new ExcelTabReport("Epitopes Topology", reportTopology));
-            // excelTab.add(new ExcelTabReport("Scores", reportScores));
-
-            boolean excelReport = false;
-            String fileEpibuilderExcel = dest + "/" + basename + "epibuilder.xlsx";
-            try {
-                ExcelReport.generateExcelXlsx(excelTab, fileEpibuilderExcel);
-                excelReport = true;
-            } catch (Exception e) {
-                sout("Error generating excel files:" + e.getMessage());
-                e.printStackTrace();
+                double avgScore = totalScore / epitopo.getLength();
+                rep.addEpitopeReport(new EpitopeReport(threshold, softwareBcellEnum, topology, avgScore));
             }
+            double avgCover = sumCover / total;
+            rep.setAvgCover(avgCover);
 
-            stReport.append("Generated files:");
-            stReport.append("\n\t");
-            stReport.append(fileParameters);
-            stReport.append("\n\t");
-            stReport.append(fileEpibuilderProteinSummary);
-            stReport.append("\n\t");
-            stReport.append(fileEpibuilderTopology);
-            stReport.append("\n\t");
-            stReport.append(fileEpibuilderDetail);
-            if (excelReport) {
-                stReport.append("\n\t");
-                stReport.append(fileEpibuilderExcel);
+            float[] bepipred = epitopo.getScores().getBepipred();
+            double totalBepipred = 0;
+            for (int pos = epitopo.getStart(); pos < epitopo.getStart() + epitopo.getLength(); pos++) {
+                totalBepipred += bepipred[pos];
             }
-            stReport.append("\n\t");
-            stReport.append(fileEpibuilderScores);
-            stReport.append("\n\t");
-            stReport.append(fileEpibuilderFastaEpitopo);
+            double avgBepiPred = totalBepipred / epitopo.getLength();
 
-            saveRandomFileName(dest + "/" + basename + "epibuilder", stReport.toString(), "txt");
-            sout("Finish\t");
-            return stReport.toString();
-        } catch (Exception e) {
-            sout("An error occured: " + e.getMessage());
-            e.printStackTrace();
-            return e.getMessage();
+            rep.setAvgBepipredScore(avgBepiPred);
+
+            reportList.add(rep);
         }
+        return reportList;
     }
 
-    public static String generateReportByProtein(ArrayList<Protein> proteinList) {
-        StringBuilder stParameters = new StringBuilder();
-        stParameters.append("Id\tEpitopes\tN-Glyc\n");
+    /**
+     * Converts a protein read from the BepiPred-3.0 file, keeping the 0-based
+     * residue positions.
+     */
+    public static Protein toProtein(BepiPred3Protein bepipred) {
+        Protein protein = new Protein();
+        protein.setId(bepipred.getId());
+        protein.setScores(new ProteinScores(bepipred.getResidues(), bepipred.getScores()));
+        return protein;
+    }
+
+    /**
+     * Runs the IEDB methods over the protein sequence and stores the score of
+     * each residue.
+     */
+    public static void processMethods(Protein re) {
+        BcellScoreEngine.score(re.getScores());
+    }
+
+    public static String generateReportByProtein(ArrayList<Protein> proteinList) throws IOException {
+        StringWriter sw = new StringWriter();
+        writeReportByProtein(proteinList, new TsvWriter(sw));
+        return sw.toString();
+    }
+
+    public static void writeReportByProtein(ArrayList<Protein> proteinList, RowWriter out) throws IOException {
+        out.row("Id", "Epitopes", "N-Glyc");
         for (Protein re : proteinList) {
             int nglycLocal = 0;
 
@@ -517,9 +644,11 @@ public class EpitopeFinder {
                     nglycLocal++;
                 }
             }
-            stParameters.append(String.format("%s\t%s\t%s\n", re.getId(), re.getEpitopes().size(), nglycLocal));
+            out.cell(re.getId());
+            out.cell(re.getEpitopes().size());
+            out.cell(nglycLocal);
+            out.endRow();
         }
-        return stParameters.toString();
     }
 
     public static String saveRandomFileName(String name, String content, String ext) throws IOException {
@@ -553,61 +682,86 @@ public class EpitopeFinder {
         return sb.toString();
     }
 
-    public static String generateReportByTopology(ArrayList<Report> reportList) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("N\tId\t" + StringUtils.leftPad("Method", 15, ' ')
-                + "\tThreshold\tAvg Score\tCover\tEpitope\tStart\tEnd\tN-Glyc\tN-Glyc-Count\tN-Glyc-Motifs\tLength\tkDa\tI.P\tAvg Hydropathy\tAvg Cover");
-        sb.append("\n");
+    public static String generateReportByTopology(ArrayList<Report> reportList, RunConfiguration config)
+            throws IOException {
+        StringWriter sw = new StringWriter();
+        writeReportByTopology(reportList, config, new TsvWriter(sw));
+        return sw.toString();
+    }
+
+    public static void writeReportByTopology(ArrayList<Report> reportList, RunConfiguration config, RowWriter out)
+            throws IOException {
+        out.row("N", "Id", StringUtils.leftPad("Method", 15, ' '), "Threshold", "Avg Score", "Cover", "Epitope",
+                "Start", "End", "N-Glyc", "N-Glyc-Count", "N-Glyc-Motifs", "Length", "kDa", "I.P",
+                "Avg Hydropathy", "Avg Cover");
+        String bepipred = StringUtils.leftPad(SoftwareBcellEnum.BEPIPRED.description, 15, ' ');
+        String allMatches = StringUtils.leftPad("All matches", 15, ' ');
+        String nGlyc = StringUtils.leftPad("N-Glyc", 15, ' ');
+        String hydropathy = StringUtils.leftPad("Hydropathy", 15, ' ');
+        // the topology is followed by 9 spaces and an empty column
+        String padding = StringUtils.leftPad("", 9, ' ');
         int count = 1;
         for (Report report : reportList) {
-            sb.append(String.format("%s\t%s\t%s\t%.2f\t%.2f\t-\t%s",
-                    count++,
-                    report.getProteinId(),
-                    StringUtils.leftPad(SoftwareBcellEnum.BEPIPRED.description, 15, ' '),
-                    Parameters.THRESHOLD_BEPIPRED,
-                    report.getAvgBepipredScore(),
-                    report.getEpitope()));
-
-            sb.append(String.format("\t%s\t%s\t%s\t%s\t%s\t%s\t%.2f\t%.2f\t%.2f\t%.2f\n",
-                    report.getStart(),
-                    report.getEndEpitope(),
-                    report.getnGlyc(),
-                    report.getnGlycMotifs().size(),
-                    report.getNglycmotif(),
-                    report.getLength(),
-                    report.getMw() / 1000,
-                    report.getIp(),
-                    report.getAvgHydropathy(),
-                    report.getAvgCover()));
+            out.cell(count++);
+            out.cell(report.getProteinId());
+            out.cell(bepipred);
+            out.cell(config.getThresholdBepipred());
+            out.cell(report.getAvgBepipredScore());
+            out.cell("-");
+            out.cell(report.getEpitope());
+            out.cell(report.getStart());
+            out.cell(report.getEndEpitope());
+            out.cell(report.getnGlyc());
+            out.cell(report.getnGlycMotifs().size());
+            out.cell(report.getNglycmotif());
+            out.cell(report.getLength());
+            out.cell(report.getMw() / 1000);
+            out.cell(report.getIp());
+            out.cell(report.getAvgHydropathy());
+            out.cell(report.getAvgCover());
+            out.endRow();
 
             for (EpitopeReport epitopeReport : report.getEpitopeReports()) {
-                sb.append(String.format("\t\t%s\t%.2f\t%.2f\t%.2f\t%s%s\n",
-                        StringUtils.leftPad(epitopeReport.getMethod().description, 15, ' '),
-                        epitopeReport.getThreshold(),
-                        epitopeReport.getAvgScore(),
-                        epitopeReport.getTopology().getValue(),
-                        epitopeReport.getTopology().getDescription(),
-                        StringUtils.leftPad("\t", 10, ' ')));
+                out.cell("");
+                out.cell("");
+                out.cell(StringUtils.leftPad(epitopeReport.getMethod().description, 15, ' '));
+                out.cell(epitopeReport.getThreshold());
+                out.cell(epitopeReport.getAvgScore());
+                out.cell(epitopeReport.getTopology().getValue());
+                out.cell(epitopeReport.getTopology().getDescription() + padding);
+                out.cell("");
+                out.endRow();
             }
             if (!report.getEpitopeReports().isEmpty()) {
-                sb.append(String.format("\t\t%s\t-\t-\t%.2f\t%s%s\n",
-                        StringUtils.leftPad("All matches", 15, ' '),
-                        report.getTopologyCoverValidation(),
-                        report.getTopologyValidation(),
-                        StringUtils.leftPad("\t", 10, ' ')));
+                out.cell("");
+                out.cell("");
+                out.cell(allMatches);
+                out.cell("-");
+                out.cell("-");
+                out.cell(report.getTopologyCoverValidation());
+                out.cell(report.getTopologyValidation() + padding);
+                out.cell("");
+                out.endRow();
             }
-            sb.append(String.format("\t\t%s\t-\t-\t%.2f\t%s%s\n",
-                    StringUtils.leftPad("N-Glyc", 15, ' '),
-                    report.getnGlycTopology().getValue(),
-                    report.getnGlycTopology().getDescription(),
-                    StringUtils.leftPad("\t", 10, ' ')));
-            sb.append(String.format("\t\t%s\t-\t%.2f\t-\t%s%s\n",
-                    StringUtils.leftPad("Hydropathy", 15, ' '),
-                    report.getAvgHydropathy(),
-                    report.getHydropathyTopology().getDescription(),
-                    StringUtils.leftPad("\t", 10, ' ')));
+            out.cell("");
+            out.cell("");
+            out.cell(nGlyc);
+            out.cell("-");
+            out.cell("-");
+            out.cell(report.getnGlycTopology().getValue());
+            out.cell(report.getnGlycTopology().getDescription() + padding);
+            out.cell("");
+            out.endRow();
+            out.cell("");
+            out.cell("");
+            out.cell(hydropathy);
+            out.cell("-");
+            out.cell(report.getAvgHydropathy());
+            out.cell("-");
+            out.cell(report.getHydropathyTopology().getDescription() + padding);
+            out.cell("");
+            out.endRow();
         }
-        return sb.toString();
     }
 
     public static String getNglycTopology(Report report) {
@@ -620,141 +774,162 @@ public class EpitopeFinder {
         return res;
     }
 
-    public static String generateReportDetailed(ArrayList<Report> reportList) {
-        String stOrganismCount = "";
+    public static String generateReportDetailed(ArrayList<Report> reportList, RunConfiguration config)
+            throws IOException {
+        StringWriter sw = new StringWriter();
+        writeReportDetailed(reportList, config, new ArrayList<>(), new TsvWriter(sw));
+        return sw.toString();
+    }
 
-        for (Proteome proteome : Parameters.PROTEOMES) {
+    /**
+     * @param reportList
+     * @param config
+     * @param blasts the BLAST hits of the epitopes in each proteome, added as
+     * two columns per proteome, joined by the N-epitope query id
+     * @param out
+     * @throws IOException
+     */
+    public static void writeReportDetailed(ArrayList<Report> reportList, RunConfiguration config,
+            List<Blast> blasts, RowWriter out) throws IOException {
+        // proteomes with an index are searched in the index, without reading
+        // the FASTA file
+        ArrayList<ProteomeIndex> indexes = new ArrayList<>();
+        for (Proteome proteome : config.getProteomes()) {
+            ProteomeIndex index = null;
             try {
                 sout("\t\tLoading proteome: " + proteome.getOrganism() + "\t" + proteome.getFile().getAbsolutePath()
                         + "\t");
-                proteome.load();
-                sout("\t\tLoaded " + proteome.getProteins().size() + " proteins\t");
+                index = ProteomeIndex.open(proteome.getFile());
+                if (index != null) {
+                    sout("\t\tLoaded index of " + index.getProteinCount() + " proteins\t");
+                } else {
+                    proteome.load();
+                    sout("\t\tLoaded " + proteome.getProteins().size() + " proteins\t");
+                }
             } catch (Exception ex) {
                 ex.printStackTrace();
             }
+            indexes.add(index);
         }
 
-        for (Proteome proteome : Parameters.PROTEOMES) {
-            stOrganismCount += "\t" + proteome.getOrganism() + "_count\t" + proteome.getOrganism() + "_acc";
+        ArrayList<String> header = new ArrayList<>(List.of("N", "Id", "Epitope", "Start", "End", "N-Glyc",
+                "N-Glyc-Count", "N-Glyc-Motifs", "Length", "MW(kDa)", "I.P", "Hydropathy", "All Matches Cover",
+                "Avg Cover", "BepiPred3"));
+        for (SoftwareBcellEnum softwareBcellEnum : config.getSoftwares().keySet()) {
+            header.add(softwareBcellEnum.description);
         }
-
-        /*
-         * String stOrganismId = "";
-         * for (Proteome proteome : Parameters.PROTEOMES) {
-         * stOrganismId += "\t" + proteome.getOrganism() + "_acc";
-         * }
-         */
-        String stMethod = "";
-        for (SoftwareBcellEnum softwareBcellEnum : Parameters.MAP_SOFTWARES.keySet()) {
-            stMethod += "\t" + softwareBcellEnum.description;
+        for (Proteome proteome : config.getProteomes()) {
+            header.add(proteome.getOrganism() + "_count");
+            header.add(proteome.getOrganism() + "_acc");
+        }
+        for (Blast blast : blasts) {
+            header.add("blast_" + blast.getName() + "_count");
+            header.add("blast_" + blast.getName() + "_acc");
+        }
+        out.row(header.toArray(new String[0]));
+        // all the epitopes are searched in one pass over each proteome
+        ArrayList<String> epitopes = new ArrayList<>();
+        for (Report report : reportList) {
+            epitopes.add(report.getEpitope());
+        }
+        ArrayList<Map<String, EpitopeCount>> organismCounts = new ArrayList<>();
+        for (int i = 0; i < config.getProteomes().size(); i++) {
+            Proteome proteome = config.getProteomes().get(i);
+            ProteomeIndex index = indexes.get(i);
+            int proteins = index != null ? index.getProteinCount() : proteome.getProteins().size();
+            sout(String.format("Start searching for %s epitopes in %s(%s proteins)", epitopes.size(),
+                    proteome.getOrganism(), proteins));
+            organismCounts.add(index != null ? count(epitopes, index, config.isHitAccession())
+                    : count(epitopes, proteome, config.isHitAccession()));
+            sout(String.format("End searching for %s epitopes in %s(%s proteins)", epitopes.size(),
+                    proteome.getOrganism(), proteins));
         }
 
-        StringBuilder sb = new StringBuilder();
-        sb.append(
-                "N\tId\tEpitope\tStart\tEnd\tN-Glyc\tN-Glyc-Count\tN-Glyc-Motifs\tLength\tMW(kDa)\tI.P\tHydropathy\tAll Matches Cover\tAvg Cover\tBepiPred3"
-                        + stMethod + stOrganismCount + "\n");
         int count = 1;
         for (Report report : reportList) {
-            String stOrganismEpitopeCount = "";
-            String stMethodScore = "";
-
-            // String stOrganismEpitopeProteinId = "";
-            for (Proteome proteome : Parameters.PROTEOMES) {
-                sout(String.format("Start searching for epitope: %s\t%s/%s in %s(%s proteins)", report.getEpitope(),
-                        count, reportList.size(), proteome.getOrganism(), proteome.getProteins().size()));
-                // sout("Start searching for epitope: " + count + "/" + reportList.size() + " in
-                // " + proteome.getOrganism() + " - " + report.getEpitope());
-                EpitopeCount epitopeCount = count(report.getEpitope(), proteome);
-
-                stOrganismEpitopeCount += "\t" + epitopeCount.getTotalhits() + "\t" + epitopeCount.getIds();
-                // stOrganismEpitopeProteinId += "\t" + epitopeCount.getIds();
-                sout(String.format("End searching for epitope: %s\t%s/%s in %s(%s proteins). Found (%s hits)",
-                        report.getEpitope(), count, reportList.size(), proteome.getOrganism(),
-                        proteome.getProteins().size(), epitopeCount.getTotalhits()));
-            }
-
+            String queryId = count + "-" + report.getEpitope();
+            out.cell(count++);
+            out.cell(report.getProteinId());
+            out.cell(report.getEpitope());
+            out.cell(report.getStart());
+            out.cell(report.getEndEpitope());
+            out.cell(report.getnGlyc());
+            out.cell(report.getnGlycMotifs().size());
+            out.cell(report.getNglycmotif());
+            out.cell(report.getLength());
+            out.cell(report.getMw() / 1000);
+            out.cell(report.getIp());
+            out.cell(report.getAvgHydropathy());
+            out.cell(report.getTopologyCoverValidation());
+            out.cell(report.getAvgCover());
+            out.cell(report.getAvgBepipredScore());
             for (EpitopeReport epitopeReport : report.getEpitopeReports()) {
-                stMethodScore += String.format("\t%.2f", epitopeReport.getAvgScore());
+                out.cell(epitopeReport.getAvgScore());
             }
-
-            sb.append(String.format("%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f%s%s\n",
-                    count++,
-                    report.getProteinId(),
-                    report.getEpitope(),
-                    report.getStart(),
-                    report.getEndEpitope(),
-                    report.getnGlyc(),
-                    report.getnGlycMotifs().size(),
-                    report.getNglycmotif(),
-                    report.getLength(),
-                    report.getMw() / 1000,
-                    report.getIp(),
-                    report.getAvgHydropathy(),
-                    report.getTopologyCoverValidation(),
-                    report.getAvgCover(),
-                    report.getAvgBepipredScore(),
-                    stMethodScore,
-                    stOrganismEpitopeCount
-            // stOrganismEpitopeProteinId
-            ));
-        }
-
-        System.gc();
-        return sb.toString();
+            for (Map<String, EpitopeCount> counts : organismCounts) {
+                EpitopeCount epitopeCount = counts.get(report.getEpitope());
+                out.cell(epitopeCount.getTotalhits());
+                out.cell(epitopeCount.getIds());
+            }
+            for (Blast blast : blasts) {
+                int hits = blast.getCount(queryId);
+                if (hits < 0) {
+                    out.cell("-");
+                } else {
+                    out.cell(hits);
+                }
+                out.cell(blast.getIds(queryId, config.isHitAccession()));
+            }
+            out.endRow();
+        }
     }
 
     public static void sout(String st) {
         System.out.println(Calendar.getInstance().getTime() + "\t" + st);
     }
 
-    public static String generateMethodScore(ArrayList<Protein> proteinas) throws CompoundNotFoundException {
-        String stMethod = "";
-        for (SoftwareBcellEnum softwareBcellEnum : Parameters.MAP_SOFTWARES.keySet()) {
-            stMethod += "\t" + softwareBcellEnum.description;
+    public static String generateMethodScore(ArrayList<Protein> proteinas, RunConfiguration config)
+            throws CompoundNotFoundException, IOException {
+        StringWriter sw = new StringWriter();
+        writeMethodScore(proteinas, config, new TsvWriter(sw));
+        return sw.toString();
+    }
+
+    public static void writeMethodScore(ArrayList<Protein> proteinas, RunConfiguration config, RowWriter out)
+            throws CompoundNotFoundException, IOException {
+        ArrayList<String> header = new ArrayList<>(List.of("Id", "Position", "Residue", "Bepipred3"));
+        for (SoftwareBcellEnum softwareBcellEnum : config.getSoftwares().keySet()) {
+            header.add(softwareBcellEnum.description);
         }
-        StringBuffer sb = new StringBuffer("Id\tPosition\tResidue\tBepipred3" + stMethod + "\tMW\tIP\tHydropathy\n");
+        header.addAll(List.of("MW", "IP", "Hydropathy"));
+        out.row(header.toArray(new String[0]));
         for (Protein proteina : proteinas) {
-            for (AminoEpitopo aminoEpitopo : proteina.getAminoEpitopos()) {
-
-                stMethod = "";
-                for (SoftwareBcellEnum softwareBcellEnum : Parameters.MAP_SOFTWARES.keySet()) {
-                    switch (softwareBcellEnum) {
-                        case PARKER:
-                            stMethod += String.format("\t%.2f", aminoEpitopo.getParker());
-                            break;
-                        case CHOU_FOSMAN:
-                            stMethod += String.format("\t%.2f", aminoEpitopo.getChou_fasman());
-                            break;
-                        case EMINI:
-                            stMethod += String.format("\t%.2f", aminoEpitopo.getEmini());
-                            break;
-                        case KARPLUS_SCHULZ:
-                            stMethod += String.format("\t%.2f", aminoEpitopo.getKarplus_schulz());
-                            break;
-                        case KOLASKAR:
-                            stMethod += String.format("\t%.2f", aminoEpitopo.getKolaskar());
-                            break;
-                    }
+            ProteinScores scores = proteina.getScores();
+            for (int pos = 0; pos < scores.length(); pos++) {
+                String amino = String.valueOf(scores.getResidue(pos));
+                out.cell(proteina.getId());
+                out.cell(pos + 1);
+                out.cell(amino);
+                out.cell(scores.getValue(SoftwareBcellEnum.BEPIPRED, pos));
+                for (SoftwareBcellEnum softwareBcellEnum : config.getSoftwares().keySet()) {
+                    out.cell(scores.getValue(softwareBcellEnum, pos));
                 }
-                String res = String.format("%s\t%s\t%s\t%.2f%s\t%.2f\t%.2f\t%.2f\n",
-                        proteina.getId(),
-                        aminoEpitopo.getPosition() + 1,
-                        aminoEpitopo.getAmino(),
-                        aminoEpitopo.getBepipred2(),
-                        stMethod,
-                        ProteomicCalculator.getMolecularWeight(aminoEpitopo.getAmino()),
-                        ProteomicCalculator.getIsoelectricPoint(aminoEpitopo.getAmino()),
-                        ProteomicCalculator.getHydropathy(aminoEpitopo.getAmino()));
-                sb.append(res);
-
+                out.cell(ProteomicCalculator.getMolecularWeight(amino));
+                out.cell(ProteomicCalculator.getIsoelectricPoint(amino));
+                out.cell(ProteomicCalculator.getHydropathy(amino));
+                out.endRow();
             }
         }
-        return sb.toString();
     }
 
-    private static void setOutput() throws Exception {
-        if (Parameters.OUTPUT_FILE) {
-            File file = new File(Parameters.DESTINATION_FOLDER + "/" + Parameters.BASENAME + "-epibuilder.log");
+    /**
+     * Redirects the standard output of the JVM to the log file of the run when
+     * {@link RunConfiguration#isOutputFile()}, only for runs from the command
+     * line.
+     */
+    private static void setOutput(RunConfiguration config) throws Exception {
+        if (config.isOutputFile()) {
+            File file = new File(config.getDestinationFolder() + "/" + config.getBasename() + "-epibuilder.log");
             PrintStream stream = new PrintStream(file);
             System.setOut(stream);
         }
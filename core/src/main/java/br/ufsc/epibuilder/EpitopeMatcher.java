@@ -0,0 +1,171 @@
+package br.ufsc.epibuilder;
+
+import br.ufsc.epibuilder.converter.ProteinConverter;
+import br.ufsc.epibuilder.entity.Proteome;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Exact search of many epitopes in a proteome with an Aho-Corasick automaton.
+ *
+ * The automaton is built once over all the epitopes, so each proteome is read
+ * once instead of once per epitope. The hits of an epitope in a protein are
+ * counted as StringUtils.countMatches counts them: from left to right,
+ * skipping the occurrences that overlap the previous counted one.
+ *
+ * @author renato
+ */
+public class EpitopeMatcher {
+
+    private final String[] patterns;
+    private final int[] lengths;
+    // column of each char in the transition table, 0 for chars of no epitope
+    private final int[] columns = new int[Character.MAX_VALUE + 1];
+    private final int width;
+    // complete transition table, [state * width + column]
+    private final int[] next;
+    // epitope ending at the state, -1 for none
+    private final int[] output;
+    // nearest state on the failure path with an output, -1 for none
+    private final int[] dictionary;
+
+    /**
+     * @param epitopes the epitopes, duplicated and empty ones are ignored
+     */
+    public EpitopeMatcher(Collection<String> epitopes) {
+        LinkedHashMap<String, Integer> unique = new LinkedHashMap<>();
+        int states = 1;
+        int nextColumn = 1;
+        for (String epitope : epitopes) {
+            if (epitope.isEmpty() || unique.containsKey(epitope)) {
+                continue;
+            }
+            unique.put(epitope, unique.size());
+            states += epitope.length();
+            for (int i = 0; i < epitope.length(); i++) {
+                char c = epitope.charAt(i);
+                if (columns[c] == 0) {
+                    columns[c] = nextColumn++;
+                }
+            }
+        }
+        patterns = unique.keySet().toArray(new String[0]);
+        lengths = new int[patterns.length];
+        width = nextColumn;
+
+        // trie, with 0 for a missing child since the root is never a child
+        int[] trie = new int[states * width];
+        int[] stateOutput = new int[states];
+        Arrays.fill(stateOutput, -1);
+        int size = 1;
+        for (int p = 0; p < patterns.length; p++) {
+            lengths[p] = patterns[p].length();
+            int state = 0;
+            for (int i = 0; i < patterns[p].length(); i++) {
+                int column = columns[patterns[p].charAt(i)];
+                if (trie[state * width + column] == 0) {
+                    trie[state * width + column] = size++;
+                }
+                state = trie[state * width + column];
+            }
+            stateOutput[state] = p;
+        }
+
+        next = trie.length == size * width ? trie : Arrays.copyOf(trie, size * width);
+        output = Arrays.copyOf(stateOutput, size);
+        dictionary = new int[size];
+        int[] fail = new int[size];
+        Arrays.fill(dictionary, -1);
+
+        // breadth first, turning the trie into the complete automaton
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int column = 0; column < width; column++) {
+            int child = next[column];
+            if (child != 0) {
+                fail[child] = 0;
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int failure = fail[state];
+            dictionary[state] = output[failure] >= 0 ? failure : dictionary[failure];
+            for (int column = 0; column < width; column++) {
+                int child = next[state * width + column];
+                if (child != 0) {
+                    fail[child] = next[failure * width + column];
+                    queue.add(child);
+                } else {
+                    next[state * width + column] = next[failure * width + column];
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts the epitopes in the proteins of the proteome.
+     *
+     * @param proteome
+     * @param hitAccession list the ids of the proteins with hits, "-" when
+     * false
+     * @return the count of each epitope, in the order of the constructor
+     */
+    public Map<String, EpitopeCount> count(Proteome proteome, boolean hitAccession) {
+        int n = patterns.length;
+        int[] total = new int[n];
+        int[] totalProteins = new int[n];
+        StringBuilder[] ids = new StringBuilder[n];
+
+        // hits in the current protein, and the first position a new hit of
+        // the epitope can start without overlapping the previous one
+        int[] hits = new int[n];
+        int[] nextStart = new int[n];
+        int[] touched = new int[n];
+
+        for (ProteinConverter protein : proteome.getProteins()) {
+            String sequence = protein.getSequence();
+            int touchedCount = 0;
+            int state = 0;
+            for (int pos = 0; pos < sequence.length(); pos++) {
+                state = next[state * width + columns[sequence.charAt(pos)]];
+                int match = output[state] >= 0 ? state : dictionary[state];
+                while (match >= 0) {
+                    int p = output[match];
+                    int start = pos - lengths[p] + 1;
+                    if (hits[p] == 0) {
+                        touched[touchedCount++] = p;
+                        hits[p] = 1;
+                        nextStart[p] = pos + 1;
+                    } else if (start >= nextStart[p]) {
+                        hits[p]++;
+                        nextStart[p] = pos + 1;
+                    }
+                    match = dictionary[match];
+                }
+            }
+            for (int t = 0; t < touchedCount; t++) {
+                int p = touched[t];
+                total[p] += hits[p];
+                totalProteins[p]++;
+                if (hitAccession) {
+                    if (ids[p] == null) {
+                        ids[p] = new StringBuilder();
+                    }
+                    ids[p].append(protein.getId());
+                    ids[p].append(" ");
+                }
+                hits[p] = 0;
+            }
+        }
+
+        LinkedHashMap<String, EpitopeCount> counts = new LinkedHashMap<>();
+        for (int p = 0; p < n; p++) {
+            String stIds = !hitAccession ? "-" : ids[p] == null ? "" : ids[p].toString().trim();
+            counts.put(patterns[p], new EpitopeCount(stIds, total[p], totalProteins[p]));
+        }
+        return counts;
+    }
+}
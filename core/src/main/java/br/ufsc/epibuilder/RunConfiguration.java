@@ -0,0 +1,432 @@
+package br.ufsc.epibuilder;
+
+import br.ufsc.epibuilder.Parameters.BEPIPRED_TYPE;
+import br.ufsc.epibuilder.entity.Proteome;
+import br.ufsc.epibuilder.entity.SoftwareBcellEnum;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parameters of one EpiBuilder run.
+ *
+ * Instances are immutable and are passed to every step of the run, so several
+ * runs can be executed at the same time in the same JVM. Use
+ * {@link #builder()} to create one.
+ *
+ * @author renato
+ */
+public class RunConfiguration {
+
+    private final Parameters.SO operationalSystem;
+    private final BEPIPRED_TYPE bepipredInput;
+    private final File fasta;
+    private final File bepipredFile;
+    private final double thresholdBepipred;
+    private final int minLength;
+    private final int maxLength;
+    private final Map<SoftwareBcellEnum, Double> softwares;
+    private final List<Proteome> proteomes;
+    private final String basename;
+    private final String destinationFolder;
+    private final boolean searchBlast;
+    private final String blastTask;
+    private final double blastIdentity;
+    private final double blastCover;
+    private final int blastWordSize;
+    private final String makeblastdbPath;
+    private final String blastpPath;
+    private final String blastCacheFolder;
+    private final long blastCacheSize;
+    private final int blastThreads;
+    private final String scoreCacheFolder;
+    private final long scoreCacheSize;
+    private final boolean outputFile;
+    private final boolean hitAccession;
+    private final int parallelism;
+
+    private RunConfiguration(Builder builder) {
+        this.operationalSystem = builder.operationalSystem;
+        this.bepipredInput = builder.bepipredInput;
+        this.fasta = builder.fasta;
+        this.bepipredFile = builder.bepipredFile;
+        this.thresholdBepipred = builder.thresholdBepipred;
+        this.minLength = builder.minLength;
+        this.maxLength = builder.maxLength;
+        this.softwares = Collections.unmodifiableMap(new LinkedHashMap<>(builder.softwares));
+        this.proteomes = Collections.unmodifiableList(new ArrayList<>(builder.proteomes));
+        this.basename = builder.basename;
+        this.destinationFolder = builder.destinationFolder;
+        this.searchBlast = builder.searchBlast;
+        this.blastTask = builder.blastTask;
+        this.blastIdentity = builder.blastIdentity;
+        this.blastCover = builder.blastCover;
+        this.blastWordSize = builder.blastWordSize;
+        this.makeblastdbPath = builder.makeblastdbPath;
+        this.blastpPath = builder.blastpPath;
+        this.blastCacheFolder = builder.blastCacheFolder;
+        this.blastCacheSize = builder.blastCacheSize;
+        this.blastThreads = builder.blastThreads;
+        this.scoreCacheFolder = builder.scoreCacheFolder;
+        this.scoreCacheSize = builder.scoreCacheSize;
+        this.outputFile = builder.outputFile;
+        this.hitAccession = builder.hitAccession;
+        this.parallelism = builder.parallelism;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return a builder with the values of this configuration
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    public Parameters.SO getOperationalSystem() {
+        return operationalSystem;
+    }
+
+    public BEPIPRED_TYPE getBepipredInput() {
+        return bepipredInput;
+    }
+
+    public File getFasta() {
+        return fasta;
+    }
+
+    public File getBepipredFile() {
+        return bepipredFile;
+    }
+
+    public double getThresholdBepipred() {
+        return thresholdBepipred;
+    }
+
+    public int getMinLength() {
+        return minLength;
+    }
+
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * @return the methods of the run and their thresholds, null when the
+     * threshold is the average score of the protein
+     */
+    public Map<SoftwareBcellEnum, Double> getSoftwares() {
+        return softwares;
+    }
+
+    public List<Proteome> getProteomes() {
+        return proteomes;
+    }
+
+    public String getBasename() {
+        return basename;
+    }
+
+    public String getDestinationFolder() {
+        return destinationFolder;
+    }
+
+    public boolean isSearchBlast() {
+        return searchBlast;
+    }
+
+    public String getBlastTask() {
+        return blastTask;
+    }
+
+    public double getBlastIdentity() {
+        return blastIdentity;
+    }
+
+    public double getBlastCover() {
+        return blastCover;
+    }
+
+    public int getBlastWordSize() {
+        return blastWordSize;
+    }
+
+    public String getMakeblastdbPath() {
+        return makeblastdbPath;
+    }
+
+    public String getBlastpPath() {
+        return blastpPath;
+    }
+
+    /**
+     * @return the folder of the BLAST databases kept between runs, null to
+     * build the databases in the destination folder on every run
+     */
+    public String getBlastCacheFolder() {
+        return blastCacheFolder;
+    }
+
+    /**
+     * @return the size of the BLAST database cache, in bytes
+     */
+    public long getBlastCacheSize() {
+        return blastCacheSize;
+    }
+
+    /**
+     * @return the number of CPUs shared by the BLAST searches of the run
+     */
+    public int getBlastThreads() {
+        return blastThreads;
+    }
+
+    /**
+     * @return the folder of the scores kept between runs of the same input,
+     * null to score the input on every run
+     */
+    public String getScoreCacheFolder() {
+        return scoreCacheFolder;
+    }
+
+    /**
+     * @return the size of the score cache, in bytes
+     */
+    public long getScoreCacheSize() {
+        return scoreCacheSize;
+    }
+
+    /**
+     * @return the standard output is redirected to the log file of the run
+     */
+    public boolean isOutputFile() {
+        return outputFile;
+    }
+
+    public boolean isHitAccession() {
+        return hitAccession;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public static class Builder {
+
+        private Parameters.SO operationalSystem = Parameters.SO.linux;
+        private BEPIPRED_TYPE bepipredInput = BEPIPRED_TYPE.CSV;
+        private File fasta;
+        private File bepipredFile;
+        private double thresholdBepipred = 0.1512;
+        private int minLength = 10;
+        private int maxLength = 30;
+        private LinkedHashMap<SoftwareBcellEnum, Double> softwares = new LinkedHashMap<>();
+        private List<Proteome> proteomes = new ArrayList<>();
+        private String basename = "run-" + String.format("%1$tF-%1$tH%1$tM%1$tS", Calendar.getInstance().getTime());
+        private String destinationFolder = ".";
+        private boolean searchBlast = false;
+        private String blastTask = "blastp-short";
+        private double blastIdentity = 90;
+        private double blastCover = 90;
+        private int blastWordSize = 4;
+        private String makeblastdbPath = "makeblastdb";
+        private String blastpPath = "blastp";
+        private String blastCacheFolder;
+        private long blastCacheSize = 20L * 1024 * 1024 * 1024;
+        private int blastThreads = Runtime.getRuntime().availableProcessors();
+        private String scoreCacheFolder;
+        private long scoreCacheSize = 5L * 1024 * 1024 * 1024;
+        private boolean outputFile = false;
+        private boolean hitAccession = true;
+        private int parallelism = 1;
+
+        private Builder() {
+            softwares.put(SoftwareBcellEnum.EMINI, null);
+            softwares.put(SoftwareBcellEnum.KOLASKAR, null);
+            softwares.put(SoftwareBcellEnum.CHOU_FOSMAN, null);
+            softwares.put(SoftwareBcellEnum.KARPLUS_SCHULZ, null);
+            softwares.put(SoftwareBcellEnum.PARKER, null);
+        }
+
+        private Builder(RunConfiguration configuration) {
+            this.operationalSystem = configuration.operationalSystem;
+            this.bepipredInput = configuration.bepipredInput;
+            this.fasta = configuration.fasta;
+            this.bepipredFile = configuration.bepipredFile;
+            this.thresholdBepipred = configuration.thresholdBepipred;
+            this.minLength = configuration.minLength;
+            this.maxLength = configuration.maxLength;
+            this.softwares = new LinkedHashMap<>(configuration.softwares);
+            this.proteomes = new ArrayList<>(configuration.proteomes);
+            this.basename = configuration.basename;
+            this.destinationFolder = configuration.destinationFolder;
+            this.searchBlast = configuration.searchBlast;
+            this.blastTask = configuration.blastTask;
+            this.blastIdentity = configuration.blastIdentity;
+            this.blastCover = configuration.blastCover;
+            this.blastWordSize = configuration.blastWordSize;
+            this.makeblastdbPath = configuration.makeblastdbPath;
+            this.blastpPath = configuration.blastpPath;
+            this.blastCacheFolder = configuration.blastCacheFolder;
+            this.blastCacheSize = configuration.blastCacheSize;
+            this.blastThreads = configuration.blastThreads;
+            this.scoreCacheFolder = configuration.scoreCacheFolder;
+            this.scoreCacheSize = configuration.scoreCacheSize;
+            this.outputFile = configuration.outputFile;
+            this.hitAccession = configuration.hitAccession;
+            this.parallelism = configuration.parallelism;
+        }
+
+        public Builder operationalSystem(Parameters.SO operationalSystem) {
+            this.operationalSystem = operationalSystem;
+            return this;
+        }
+
+        public Builder bepipredInput(BEPIPRED_TYPE bepipredInput) {
+            this.bepipredInput = bepipredInput;
+            return this;
+        }
+
+        public Builder fasta(File fasta) {
+            this.fasta = fasta;
+            return this;
+        }
+
+        public Builder bepipredFile(File bepipredFile) {
+            this.bepipredFile = bepipredFile;
+            return this;
+        }
+
+        public Builder thresholdBepipred(double thresholdBepipred) {
+            this.thresholdBepipred = thresholdBepipred;
+            return this;
+        }
+
+        public Builder minLength(int minLength) {
+            this.minLength = minLength;
+            return this;
+        }
+
+        public Builder maxLength(int maxLength) {
+            this.maxLength = maxLength;
+            return this;
+        }
+
+        /**
+         * Replaces the methods of the run, in the order of the reports.
+         */
+        public Builder softwares(Map<SoftwareBcellEnum, Double> softwares) {
+            this.softwares = new LinkedHashMap<>(softwares);
+            return this;
+        }
+
+        /**
+         * Sets the threshold of one method, null to use the average score of
+         * the protein.
+         */
+        public Builder software(SoftwareBcellEnum software, Double threshold) {
+            this.softwares.put(software, threshold);
+            return this;
+        }
+
+        public Builder proteomes(List<Proteome> proteomes) {
+            this.proteomes = new ArrayList<>(proteomes);
+            return this;
+        }
+
+        public Builder basename(String basename) {
+            this.basename = basename;
+            return this;
+        }
+
+        public Builder destinationFolder(String destinationFolder) {
+            this.destinationFolder = destinationFolder;
+            return this;
+        }
+
+        public Builder searchBlast(boolean searchBlast) {
+            this.searchBlast = searchBlast;
+            return this;
+        }
+
+        public Builder blastTask(String blastTask) {
+            this.blastTask = blastTask;
+            return this;
+        }
+
+        public Builder blastIdentity(double blastIdentity) {
+            this.blastIdentity = blastIdentity;
+            return this;
+        }
+
+        public Builder blastCover(double blastCover) {
+            this.blastCover = blastCover;
+            return this;
+        }
+
+        public Builder blastWordSize(int blastWordSize) {
+            this.blastWordSize = blastWordSize;
+            return this;
+        }
+
+        public Builder makeblastdbPath(String makeblastdbPath) {
+            this.makeblastdbPath = makeblastdbPath;
+            return this;
+        }
+
+        public Builder blastpPath(String blastpPath) {
+            this.blastpPath = blastpPath;
+            return this;
+        }
+
+        public Builder blastCacheFolder(String blastCacheFolder) {
+            this.blastCacheFolder = blastCacheFolder;
+            return this;
+        }
+
+        public Builder blastCacheSize(long blastCacheSize) {
+            this.blastCacheSize = blastCacheSize;
+            return this;
+        }
+
+        public Builder blastThreads(int blastThreads) {
+            this.blastThreads = Math.max(1, blastThreads);
+            return this;
+        }
+
+        public Builder scoreCacheFolder(String scoreCacheFolder) {
+            this.scoreCacheFolder = scoreCacheFolder;
+            return this;
+        }
+
+        public Builder scoreCacheSize(long scoreCacheSize) {
+            this.scoreCacheSize = scoreCacheSize;
+            return this;
+        }
+
+        public Builder outputFile(boolean outputFile) {
+            this.outputFile = outputFile;
+            return this;
+        }
+
+        public Builder hitAccession(boolean hitAccession) {
+            this.hitAccession = hitAccession;
+            return this;
+        }
+
+        public Builder parallelism(int parallelism) {
+            this.parallelism = Math.max(1, parallelism);
+            return this;
+        }
+
+        public RunConfiguration build() {
+            return new RunConfiguration(this);
+        }
+    }
+}
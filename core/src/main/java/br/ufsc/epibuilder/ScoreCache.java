@@ -0,0 +1,245 @@
+package br.ufsc.epibuilder;
+
+import br.ufsc.epibuilder.converter.FileHelper;
+import br.ufsc.epibuilder.entity.Protein;
+import br.ufsc.epibuilder.entity.ProteinScores;
+import br.ufsc.epibuilder.entity.SoftwareBcellEnum;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Per residue scores of the inputs already analysed, kept between runs in a
+ * cache folder.
+ *
+ * The scores of an input are stored in a file named by the SHA-256 of the
+ * input, so a rerun of the same content with other thresholds or length
+ * bounds reads the BepiPred-3.0 and IEDB scores back instead of computing
+ * them again. The files are replaced atomically, and when the folder grows
+ * over its size the least recently used ones are deleted, together with the
+ * BepiPred-3.0 outputs the pipeline keeps in {@link #BEPIPRED_FOLDER}.
+ *
+ * File layout, big-endian: the header (magic, version, number of proteins)
+ * and, for each protein, the id (length and UTF-8 bytes), the number of
+ * residues, the residues, the BepiPred-3.0 scores and the scores of
+ * {@link #METHODS}.
+ *
+ * @author renato
+ */
+public class ScoreCache {
+
+    public static final String EXTENSION = ".scores";
+    // BepiPred-3.0 CSV outputs cached by the pipeline, by SHA-256 of the FASTA
+    public static final String BEPIPRED_FOLDER = "bepipred";
+
+    private static final int MAGIC = 0x45505343; // EPSC
+    // change when the scales or the scoring of the methods change
+    private static final int VERSION = 1;
+    private static final SoftwareBcellEnum[] METHODS = {SoftwareBcellEnum.PARKER, SoftwareBcellEnum.CHOU_FOSMAN,
+        SoftwareBcellEnum.EMINI, SoftwareBcellEnum.KARPLUS_SCHULZ, SoftwareBcellEnum.KOLASKAR};
+
+    private final File folder;
+    private final long maxSize;
+
+    /**
+     * @param folder the cache folder, created if it does not exist
+     * @param maxSize size of the cache in bytes
+     */
+    public ScoreCache(File folder, long maxSize) {
+        this.folder = folder;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param config
+     * @return the cache of the run, null if the run has no cache folder
+     */
+    public static ScoreCache of(RunConfiguration config) {
+        if (config.getScoreCacheFolder() == null || config.getScoreCacheFolder().isBlank()) {
+            return null;
+        }
+        return new ScoreCache(new File(config.getScoreCacheFolder()), config.getScoreCacheSize());
+    }
+
+    /**
+     * @param input the FASTA or BepiPred-3.0 CSV file of a run
+     * @return the key of the scores of the input
+     * @throws IOException
+     */
+    public static String key(File input) throws IOException {
+        return FileHelper.sha256(input);
+    }
+
+    public File getFile(String key) {
+        return new File(folder, key + EXTENSION);
+    }
+
+    /**
+     * Reads the scored proteins of an input. The file is read as a stream, so
+     * its size is not bound by the size of a single array.
+     *
+     * @param key
+     * @return the proteins with all their scores, in the order they were
+     * stored, or null if they are not in the cache, the file is from another
+     * version or it is invalid
+     * @throws IOException
+     */
+    public ArrayList<Protein> load(String key) throws IOException {
+        File file = getFile(key);
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16))) {
+            // bounds the lengths read from an invalid file
+            long size = channel.size();
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            int count = readLength(in, size);
+            ArrayList<Protein> proteins = new ArrayList<>();
+            byte[] chunk = new byte[1 << 16];
+            for (int p = 0; p < count; p++) {
+                byte[] id = new byte[readLength(in, size)];
+                in.readFully(id);
+                int length = readLength(in, size);
+                byte[] residues = new byte[length];
+                in.readFully(residues);
+
+                ProteinScores scores = new ProteinScores(residues, readFloats(in, length, chunk));
+                for (SoftwareBcellEnum method : METHODS) {
+                    scores.set(method, readFloats(in, length, chunk));
+                }
+                Protein protein = new Protein();
+                protein.setId(new String(id, StandardCharsets.UTF_8));
+                protein.setScores(scores);
+                proteins.add(protein);
+            }
+            file.setLastModified(System.currentTimeMillis());
+            return proteins;
+        } catch (EOFException | IllegalArgumentException e) {
+            System.out.println("Invalid score cache file " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static int readLength(DataInputStream in, long size) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > size) {
+            throw new EOFException("invalid length " + length);
+        }
+        return length;
+    }
+
+    private static float[] readFloats(DataInputStream in, int length, byte[] chunk) throws IOException {
+        float[] values = new float[length];
+        FloatBuffer floats = ByteBuffer.wrap(chunk).asFloatBuffer();
+        for (int i = 0; i < length;) {
+            int n = Math.min(length - i, chunk.length / 4);
+            in.readFully(chunk, 0, 4 * n);
+            floats.clear();
+            floats.get(values, i, n);
+            i += n;
+        }
+        return values;
+    }
+
+    /**
+     * Stores the scores of the proteins of an input, replacing the previous
+     * ones.
+     *
+     * @param key
+     * @param proteins proteins scored by all the {@link #METHODS}
+     * @throws IOException
+     */
+    public void store(String key, List<Protein> proteins) throws IOException {
+        Files.createDirectories(folder.toPath());
+        File file = getFile(key);
+        File tmp = File.createTempFile(key, ".tmp", folder);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(proteins.size());
+                for (Protein protein : proteins) {
+                    ProteinScores scores = protein.getScores();
+                    byte[] id = protein.getId().getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(id.length);
+                    out.write(id);
+                    out.writeInt(scores.length());
+                    out.write(scores.getResidues());
+                    writeFloats(out, scores.getBepipred());
+                    for (SoftwareBcellEnum method : METHODS) {
+                        writeFloats(out, scores.get(method));
+                    }
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+        evict(file);
+    }
+
+    private static void writeFloats(DataOutputStream out, float[] values) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4 * values.length);
+        buffer.asFloatBuffer().put(values);
+        out.write(buffer.array());
+    }
+
+    /**
+     * Deletes the least recently used files, scores or BepiPred-3.0 outputs,
+     * but the one just stored, while the cache is over its size.
+     */
+    private void evict(File stored) {
+        List<File> cached = new ArrayList<>();
+        list(folder, EXTENSION, cached);
+        list(new File(folder, BEPIPRED_FOLDER), ".csv", cached);
+        File[] files = cached.toArray(File[]::new);
+        // sizes and times are read once, the files can change meanwhile
+        long total = 0;
+        long[][] entries = new long[files.length][];
+        for (int i = 0; i < files.length; i++) {
+            entries[i] = new long[]{files[i].lastModified(), files[i].length(), i};
+            total += entries[i][1];
+        }
+        Arrays.sort(entries, Comparator.comparingLong(entry -> entry[0]));
+        for (long[] entry : entries) {
+            if (total <= maxSize) {
+                return;
+            }
+            File file = files[(int) entry[2]];
+            if (!file.equals(stored) && file.delete()) {
+                System.out.println("Removing from score cache: " + file);
+                total -= entry[1];
+            }
+        }
+    }
+
+    private static void list(File folder, String extension, List<File> cached) {
+        File[] files = folder.listFiles(f -> f.isFile() && f.getName().endsWith(extension));
+        if (files != null) {
+            cached.addAll(Arrays.asList(files));
+        }
+    }
+}
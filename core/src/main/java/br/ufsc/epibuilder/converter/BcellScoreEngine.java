@@ -0,0 +1,148 @@
+package br.ufsc.epibuilder.converter;
+
+import br.ufsc.epibuilder.entity.ProteinScores;
+import br.ufsc.epibuilder.entity.ResidueAlphabet;
+import br.ufsc.epibuilder.entity.SoftwareBCellMap;
+import br.ufsc.epibuilder.entity.SoftwareBcellEnum;
+
+/**
+ * Single pass scoring of the IEDB B cell methods.
+ *
+ * Residues are encoded once by {@link ResidueAlphabet} and the scales are
+ * read from float tables indexed by that code, so the windows need no
+ * substring or map lookup. Ambiguous residues (X, B, Z...) are scored with the
+ * average of each scale. All the methods are computed in the same pass over the
+ * sequence.
+ *
+ * Each window is still added up from its first residue in float, in the same
+ * order of the IEDB scripts: a running sum (adding the residue that
+ * enters and subtracting the one that leaves) rounds differently and would
+ * change the scores of the previous reports.
+ */
+public class BcellScoreEngine {
+
+    private static final double EMINI_FACTOR = Math.pow(0.37, -6);
+
+    private static final float[] PARKER = SoftwareBCellMap.getScale(SoftwareBcellEnum.PARKER);
+    private static final float[] CHOU_FOSMAN = SoftwareBCellMap.getScale(SoftwareBcellEnum.CHOU_FOSMAN);
+    private static final float[] EMINI = SoftwareBCellMap.getScale(SoftwareBcellEnum.EMINI);
+    private static final float[] KOLASKAR = SoftwareBCellMap.getScale(SoftwareBcellEnum.KOLASKAR);
+
+    /**
+     * Scores the five IEDB methods in a single pass and stores them in the
+     * columns of the protein.
+     *
+     * @param scores
+     */
+    public static void score(ProteinScores scores) {
+        byte[] codes = ResidueAlphabet.encode(scores.getResidues());
+        int n = codes.length;
+        float[] parker = new float[n];
+        float[] chouFasman = new float[n];
+        float[] emini = new float[n];
+        float[] karplusSchulz = new float[n];
+        float[] kolaskar = new float[n];
+
+        // Parker, Chou Fosman and Kolaskar: window of 7 centered at i + 3
+        // Emini: window of 6 centered at i + 2
+        // Karplus-Schulz: window of 7 centered at i + 3, up to n - 5
+        for (int i = 0; i + 6 <= n; i++) {
+            float emi = 1;
+            for (int j = 0; j < 6; j++) {
+                emi *= EMINI[codes[i + j]];
+            }
+            emi *= EMINI_FACTOR;
+            emini[i + 2] = emi;
+
+            if (i + 7 > n) {
+                continue;
+            }
+            float par = 0;
+            float cho = 0;
+            float kol = 0;
+            float kar = 0;
+            boolean karplus = i + 8 <= n;
+            for (int j = 0; j < 7; j++) {
+                byte code = codes[i + j];
+                par += PARKER[code];
+                cho += CHOU_FOSMAN[code];
+                kol += KOLASKAR[code];
+                if (karplus) {
+                    kar += KarplusSchulzKernel.WEIGHTED[j][KarplusSchulzKernel.neighbours(codes, i + j) * ResidueAlphabet.CODES + code];
+                }
+            }
+            parker[i + 3] = par / 7;
+            chouFasman[i + 3] = cho / 7;
+            kolaskar[i + 3] = kol / 7;
+            if (karplus) {
+                karplusSchulz[i + 3] = kar;
+            }
+        }
+        normalize(emini, 2, n - 4);
+
+        scores.set(SoftwareBcellEnum.PARKER, parker);
+        scores.set(SoftwareBcellEnum.CHOU_FOSMAN, chouFasman);
+        scores.set(SoftwareBcellEnum.EMINI, emini);
+        scores.set(SoftwareBcellEnum.KARPLUS_SCHULZ, karplusSchulz);
+        scores.set(SoftwareBcellEnum.KOLASKAR, kolaskar);
+    }
+
+    /**
+     * Scores one method. Residues without a complete window are left with 0.
+     *
+     * @param method one of the IEDB methods
+     * @param codes residues encoded by {@link ResidueAlphabet#encode(byte[])}
+     * @return one score per residue
+     */
+    public static float[] score(SoftwareBcellEnum method, byte[] codes) {
+        int n = codes.length;
+        float[] values = new float[n];
+        switch (method) {
+            case EMINI:
+                for (int i = 0; i + 6 <= n; i++) {
+                    float product = 1;
+                    for (int j = 0; j < 6; j++) {
+                        product *= EMINI[codes[i + j]];
+                    }
+                    product *= EMINI_FACTOR;
+                    values[i + 2] = product;
+                }
+                normalize(values, 2, n - 4);
+                break;
+            case KARPLUS_SCHULZ:
+                KarplusSchulzKernel.score(codes, values);
+                break;
+            case PARKER:
+            case CHOU_FOSMAN:
+            case KOLASKAR:
+                float[] scale = method == SoftwareBcellEnum.PARKER ? PARKER
+                        : method == SoftwareBcellEnum.CHOU_FOSMAN ? CHOU_FOSMAN : KOLASKAR;
+                for (int i = 0; i + 7 <= n; i++) {
+                    float sum = 0;
+                    for (int j = 0; j < 7; j++) {
+                        sum += scale[codes[i + j]];
+                    }
+                    values[i + 3] = sum / 7;
+                }
+                break;
+            default:
+                throw new IllegalArgumentException(method.description + " is not an IEDB method");
+        }
+        return values;
+    }
+
+    /**
+     * Divides the scores in [first, last] by their average.
+     */
+    private static void normalize(float[] scores, int first, int last) {
+        float avg = 0;
+        int count = Math.max(0, last - first + 1);
+        for (int pos = first; pos <= last; pos++) {
+            avg += scores[pos];
+        }
+        avg = avg / count;
+        for (int pos = first; pos <= last; pos++) {
+            scores[pos] = scores[pos] / avg;
+        }
+    }
+}
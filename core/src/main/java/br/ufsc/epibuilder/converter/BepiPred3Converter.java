@@ -7,11 +7,10 @@ package br.ufsc.epibuilder.converter;
 
 import br.ufsc.epibuilder.exceptions.InputException;
 
-import javax.swing.*;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Scanner;
 
 /**
  *
@@ -21,6 +20,8 @@ public class BepiPred3Converter {
 
     /**
      * Convert a Bepipred3 file obtained from http://biolab.com/DTU/BepiPred-3
+     * Loads the whole file, use {@link BepiPred3Reader} to read one protein at
+     * a time.
      *
      * @param csvFile
      * @return
@@ -28,30 +29,20 @@ public class BepiPred3Converter {
      * @throws InputException
      */
     public static ArrayList<ProteinConverter> getBepipred3FromBiolib(File csvFile) throws FileNotFoundException, InputException {
-        Scanner s = new Scanner(csvFile);
         ArrayList<ProteinConverter> proteins = new ArrayList<>();
-        ProteinConverter protein = new ProteinConverter("");
-        s.nextLine();
-        while (s.hasNext()) {
-            try {
-                String val = s.nextLine();
-
-                String[] fields = val.split(",");
-                String id = fields[0];
-                String aa = fields[1].toUpperCase();
-                double score = Double.parseDouble(fields[2]);
-
-                if (!protein.getId().equals(id)) {
-                    protein = new ProteinConverter(id);
-                    proteins.add(protein);
+        try (BepiPred3Reader reader = new BepiPred3Reader(csvFile)) {
+            BepiPred3Protein protein;
+            while ((protein = reader.next()) != null) {
+                ProteinConverter converter = new ProteinConverter(protein.getId());
+                for (int i = 0; i < protein.length(); i++) {
+                    converter.addAmino(String.valueOf(protein.getResidue(i)), protein.getScore(i));
                 }
-                protein.addAmino(aa, score);
-
-            } catch (Exception e) {
-                e.printStackTrace();
-                throw new InputException(e);
+                proteins.add(converter);
             }
-
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new InputException(e);
         }
         return proteins;
     }
@@ -0,0 +1,49 @@
+package br.ufsc.epibuilder.converter;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One protein read from a BepiPred-3.0 CSV file. Residues are kept as
+ * upper-case ASCII bytes and the BepiPred-3.0 scores as floats, both indexed
+ * by the 0-based residue position.
+ */
+public class BepiPred3Protein {
+
+    private final String id;
+    private final byte[] residues;
+    private final float[] scores;
+
+    public BepiPred3Protein(String id, byte[] residues, float[] scores) {
+        this.id = id;
+        this.residues = residues;
+        this.scores = scores;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public byte[] getResidues() {
+        return residues;
+    }
+
+    public float[] getScores() {
+        return scores;
+    }
+
+    public int length() {
+        return residues.length;
+    }
+
+    public char getResidue(int pos) {
+        return (char) residues[pos];
+    }
+
+    public float getScore(int pos) {
+        return scores[pos];
+    }
+
+    public String getSequence() {
+        return new String(residues, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,273 @@
+package br.ufsc.epibuilder.converter;
+
+import br.ufsc.epibuilder.exceptions.InputException;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Streaming reader for the BepiPred-3.0 raw_output.csv file.
+ *
+ * Proteins are returned one at a time, in file order, so only the protein
+ * being read is kept in memory. Lines are read into a reused byte buffer and
+ * the residue and score fields are parsed in place; the only allocations are
+ * the id and the primitive arrays of each returned protein.
+ *
+ * The residue and the score are taken from the last two fields of the line,
+ * so accessions containing commas are kept whole.
+ */
+public class BepiPred3Reader implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int bufferPos = 0;
+    private int bufferEnd = 0;
+
+    private byte[] line = new byte[256];
+    private int lineLength = 0;
+    private int lineNumber = 0;
+
+    private byte[] currentId = new byte[64];
+    private int currentIdLength = -1;
+    private byte[] residues = new byte[1024];
+    private float[] scores = new float[1024];
+    private int size = 0;
+    private boolean eof = false;
+
+    public BepiPred3Reader(File csvFile) throws IOException {
+        this(new FileInputStream(csvFile));
+    }
+
+    public BepiPred3Reader(InputStream in) throws IOException {
+        this.in = in;
+        // header
+        readLine();
+    }
+
+    /**
+     * Reads the next protein of the file.
+     *
+     * @return the next protein or null when the file is over
+     * @throws IOException
+     * @throws InputException when a line can not be parsed
+     */
+    public BepiPred3Protein next() throws IOException, InputException {
+        while (!eof) {
+            if (!readLine()) {
+                eof = true;
+                break;
+            }
+            if (lineLength == 0) {
+                continue;
+            }
+            int scoreComma = lastIndexOf(',', lineLength);
+            int residueComma = scoreComma > 0 ? lastIndexOf(',', scoreComma) : -1;
+            if (residueComma < 0 || residueComma + 1 == scoreComma) {
+                throw new InputException(new IllegalArgumentException(
+                        "Invalid BepiPred-3.0 line " + lineNumber + ": " + currentLine()));
+            }
+            float score = parseScore(scoreComma + 1, lineLength);
+
+            BepiPred3Protein finished = null;
+            if (!isCurrentId(residueComma)) {
+                if (currentIdLength >= 0) {
+                    finished = build();
+                }
+                startProtein(residueComma);
+            }
+            add(toUpperCase(line[residueComma + 1]), score);
+            if (finished != null) {
+                return finished;
+            }
+        }
+        if (currentIdLength >= 0) {
+            BepiPred3Protein last = build();
+            currentIdLength = -1;
+            return last;
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private boolean readLine() throws IOException {
+        lineLength = 0;
+        boolean read = false;
+        while (true) {
+            if (bufferPos == bufferEnd) {
+                bufferEnd = in.read(buffer, 0, buffer.length);
+                bufferPos = 0;
+                if (bufferEnd <= 0) {
+                    bufferEnd = 0;
+                    break;
+                }
+            }
+            read = true;
+            byte b = buffer[bufferPos++];
+            if (b == '\n') {
+                break;
+            }
+            if (lineLength == line.length) {
+                line = Arrays.copyOf(line, line.length * 2);
+            }
+            line[lineLength++] = b;
+        }
+        if (lineLength > 0 && line[lineLength - 1] == '\r') {
+            lineLength--;
+        }
+        if (read) {
+            lineNumber++;
+        }
+        return read;
+    }
+
+    private int lastIndexOf(char c, int end) {
+        for (int i = end - 1; i >= 0; i--) {
+            if (line[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isCurrentId(int idLength) {
+        if (idLength != currentIdLength) {
+            return false;
+        }
+        for (int i = 0; i < idLength; i++) {
+            if (line[i] != currentId[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void startProtein(int idLength) {
+        if (currentId.length < idLength) {
+            currentId = new byte[idLength];
+        }
+        System.arraycopy(line, 0, currentId, 0, idLength);
+        currentIdLength = idLength;
+        size = 0;
+    }
+
+    private void add(byte residue, float score) {
+        if (size == residues.length) {
+            residues = Arrays.copyOf(residues, size * 2);
+            scores = Arrays.copyOf(scores, size * 2);
+        }
+        residues[size] = residue;
+        scores[size] = score;
+        size++;
+    }
+
+    private BepiPred3Protein build() {
+        String id = new String(currentId, 0, currentIdLength, StandardCharsets.UTF_8);
+        return new BepiPred3Protein(id, Arrays.copyOf(residues, size), Arrays.copyOf(scores, size));
+    }
+
+    private static byte toUpperCase(byte b) {
+        if (b >= 'a' && b <= 'z') {
+            return (byte) (b - ('a' - 'A'));
+        }
+        return b;
+    }
+
+    /**
+     * Parses a decimal number in [start, end) of the current line. The result
+     * is the same float obtained with (float) Double.parseDouble(field) for the
+     * values written by BepiPred-3.0, which are float32 values printed with up
+     * to 17 significant digits.
+     */
+    private float parseScore(int start, int end) throws InputException {
+        int i = start;
+        while (i < end && line[i] == ' ') {
+            i++;
+        }
+        while (end > i && line[end - 1] == ' ') {
+            end--;
+        }
+        boolean negative = false;
+        if (i < end && (line[i] == '-' || line[i] == '+')) {
+            negative = line[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean dot = false;
+        boolean any = false;
+        for (; i < end; i++) {
+            byte b = line[i];
+            if (b >= '0' && b <= '9') {
+                any = true;
+                if (digits < 18) {
+                    if (mantissa != 0 || b != '0') {
+                        digits++;
+                    }
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (dot) {
+                        exponent--;
+                    }
+                } else if (!dot) {
+                    exponent++;
+                }
+            } else if (b == '.' && !dot) {
+                dot = true;
+            } else {
+                break;
+            }
+        }
+        if (i < end && (line[i] == 'e' || line[i] == 'E')) {
+            i++;
+            boolean negativeExp = false;
+            if (i < end && (line[i] == '-' || line[i] == '+')) {
+                negativeExp = line[i] == '-';
+                i++;
+            }
+            int exp = 0;
+            boolean anyExp = false;
+            for (; i < end && line[i] >= '0' && line[i] <= '9'; i++) {
+                anyExp = true;
+                if (exp < 10000) {
+                    exp = exp * 10 + (line[i] - '0');
+                }
+            }
+            if (!anyExp) {
+                any = false;
+            }
+            exponent += negativeExp ? -exp : exp;
+        }
+        if (!any || i != end) {
+            throw new InputException(new NumberFormatException(
+                    "Invalid BepiPred-3.0 score at line " + lineNumber + ": " + currentLine()));
+        }
+        double value;
+        if (mantissa == 0) {
+            value = 0;
+        } else if (exponent >= -22 && exponent <= 22) {
+            // correctly rounded when the mantissa fits in 53 bits, otherwise off by
+            // at most one double ulp, far below the float precision kept here
+            value = exponent < 0 ? mantissa / POW10[-exponent] : mantissa * POW10[exponent];
+        } else {
+            value = mantissa * Math.pow(10, exponent);
+        }
+        return (float) (negative ? -value : value);
+    }
+
+    private String currentLine() {
+        return new String(line, 0, lineLength, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,136 @@
+package br.ufsc.epibuilder.converter;
+
+import br.ufsc.epibuilder.entity.ResidueAlphabet;
+
+/**
+ * Karplus-Schulz flexibility over residues encoded by
+ * {@link ResidueAlphabet#encode(byte[])}.
+ *
+ * The normalized B value of each residue depends on how many of its two
+ * neighbours are rigid. The classification and the weighted window of 7
+ * residues are done in the same pass: each residue is classified once, when
+ * its right neighbour is read, and kept in a ring with the last 7 residues.
+ * The products BNORM * WT / 4 are computed once in {@link #WEIGHTED}, exactly
+ * as the per residue expression of the IEDB script, so the sums are
+ * bit-compatible with it. Ambiguous residues take the average B values and
+ * are not rigid.
+ */
+public class KarplusSchulzKernel {
+
+    public static final int WINDOW = 7;
+
+    // normalized B values in the order of the IEDB script
+    private static final String AA = "KSGPDEQTNRALHVYIFCWM";
+    private static final float[] BNORM0 = {1.093f, 1.169f, 1.142f, 1.055f, 1.033f, 1.094f, 1.165f, 1.073f, 1.117f, 1.038f, 1.041f, 0.967f, 0.982f, 0.982f, 0.961f, 1.002f, 0.930f, 0.960f, 0.925f, 0.947f};
+    private static final float[] BNORM1 = {1.082f, 1.048f, 1.042f, 1.085f, 1.089f, 1.036f, 1.028f, 1.051f, 1.006f, 1.028f, 0.946f, 0.961f, 0.952f, 0.927f, 0.930f, 0.892f, 0.912f, 0.878f, 0.917f, 0.862f};
+    private static final float[] BNORM2 = {1.057f, 0.923f, 0.923f, 0.932f, 0.932f, 0.933f, 0.885f, 0.934f, 0.930f, 0.901f, 0.892f, 0.921f, 0.894f, 0.913f, 0.837f, 0.872f, 0.914f, 0.925f, 0.803f, 0.804f};
+    private static final float[] WT = {0.25f, 0.50f, 0.75f, 1.00f, 0.75f, 0.50f, 0.25f};
+
+    private static final int CODES = ResidueAlphabet.CODES;
+
+    /**
+     * BNORM[class][residue] * WT[j] / 4.0 indexed by [j][class * CODES + code].
+     */
+    static final double[][] WEIGHTED = new double[WINDOW][3 * CODES];
+    /**
+     * The residue is rigid in the neighbour classification.
+     */
+    static final boolean[] RIGID = new boolean[CODES];
+
+    static {
+        float[][] bnorm = {BNORM0, BNORM1, BNORM2};
+        for (int c = 0; c < 3; c++) {
+            float[] values = new float[ResidueAlphabet.SIZE];
+            for (int code = 0; code < ResidueAlphabet.SIZE; code++) {
+                values[code] = bnorm[c][AA.indexOf(ResidueAlphabet.residue(code))];
+            }
+            float[] table = ResidueAlphabet.table(values);
+            for (int code = 0; code < CODES; code++) {
+                for (int j = 0; j < WINDOW; j++) {
+                    WEIGHTED[j][c * CODES + code] = table[code] * WT[j] / 4.0;
+                }
+            }
+        }
+        for (int code = 0; code < ResidueAlphabet.SIZE; code++) {
+            RIGID[code] = AA.indexOf(ResidueAlphabet.residue(code)) >= 10;
+        }
+    }
+
+    /**
+     * @return the 0-based position of the first residue with a score
+     */
+    public static int getFirstPosition() {
+        return 3;
+    }
+
+    /**
+     * @return the 0-based position of the last residue with a score
+     */
+    public static int getLastPosition(int length) {
+        return length - 5;
+    }
+
+    /**
+     * Scores the residues.
+     *
+     * @param codes encoded residues
+     * @return one score per residue, 0 for the residues without a score
+     */
+    public static float[] score(byte[] codes) {
+        float[] out = new float[codes.length];
+        score(codes, out);
+        return out;
+    }
+
+    /**
+     * Scores the residues into the array, which can be reused from a
+     * previous, larger protein. Positions without a score are set to 0.
+     *
+     * @param codes encoded residues
+     * @param out at least codes.length scores
+     */
+    public static void score(byte[] codes, float[] out) {
+        int n = codes.length;
+        if (out.length < n) {
+            throw new IllegalArgumentException("The output has " + out.length + " positions, the sequence has " + n);
+        }
+        // class * CODES + code of the last WINDOW residues, by position % WINDOW
+        int[] ring = new int[WINDOW];
+        int last = getLastPosition(n);
+        for (int p = 0; p < Math.min(getFirstPosition(), n); p++) {
+            out[p] = 0;
+        }
+        // the window of the last center ends at n - 2
+        for (int p = 0; p <= n - 2; p++) {
+            int c = 0;
+            if (p > 0) {
+                c = (RIGID[codes[p - 1]] ? 1 : 0) + (RIGID[codes[p + 1]] ? 1 : 0);
+            }
+            ring[p % WINDOW] = c * CODES + codes[p];
+
+            int center = p - 3;
+            if (center >= getFirstPosition() && center <= last) {
+                int first = p - 6;
+                float sum = 0;
+                for (int j = 0; j < WINDOW; j++) {
+                    sum += WEIGHTED[j][ring[(first + j) % WINDOW]];
+                }
+                out[center] = sum;
+            }
+        }
+        for (int p = Math.max(getFirstPosition(), last + 1); p < n; p++) {
+            out[p] = 0;
+        }
+    }
+
+    /**
+     * Neighbour class of a residue: the number of rigid neighbours, 0 for the
+     * first and the last residue.
+     */
+    static int neighbours(byte[] codes, int pos) {
+        if (pos == 0 || pos == codes.length - 1) {
+            return 0;
+        }
+        return (RIGID[codes[pos - 1]] ? 1 : 0) + (RIGID[codes[pos + 1]] ? 1 : 0);
+    }
+}
@@ -10,8 +10,8 @@ import br.udesc.cav.tese.glycosylation.Motif;
 import br.ufsc.epibuilder.entity.report.FormatHelper;
 import br.ufsc.epibuilder.proteomics.ProteomicCalculator;
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.TreeSet;
+import java.util.Arrays;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.biojava.nbio.core.exceptions.CompoundNotFoundException;
@@ -22,26 +22,47 @@ import org.biojava.nbio.core.exceptions.CompoundNotFoundException;
  */
 public class Epitopo {
 
-    private String sequence = "";
+    private final ProteinScores scores;
+    private String sequence;
     private int start = 0;
+    private int length = 0;
     private int end = 0;
-    private ArrayList<AminoEpitopo> aaEpitopes = new ArrayList<>();
     private ArrayList<Motif> nGlycMotifs = new ArrayList<>();
 
-    public ArrayList<AminoEpitopo> getAaEpitopes() {
-        return aaEpitopes;
+    /**
+     * Epitope over the residues [start, start + length) of the protein scores.
+     *
+     * @param scores
+     * @param start 0-based position of the first residue
+     * @param length
+     */
+    public Epitopo(ProteinScores scores, int start, int length) {
+        this.scores = scores;
+        this.start = start;
+        this.length = length;
     }
 
-    public void addAminoEpitopo(AminoEpitopo amino) {
-        aaEpitopes.add(amino);
+    public ProteinScores getScores() {
+        return scores;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Returns the score of the method for the i-th residue of the epitope.
+     */
+    public double getValue(SoftwareBcellEnum soft, int i) {
+        return scores.get(soft)[start + i];
     }
 
     public boolean isNglycolised() {
-        return GlycosylationFinder.isNGlycMotif(sequence);
+        return GlycosylationFinder.isNGlycMotif(getSequence());
     }
 
     public void processNglycMotif() {
-        nGlycMotifs = GlycosylationFinder.getNGlycMotif(sequence);
+        nGlycMotifs = GlycosylationFinder.getNGlycMotif(getSequence());
     }
 
     public ArrayList<Motif> getnGlycMotifs() {
@@ -56,14 +77,10 @@ public class Epitopo {
         return FormatHelper.getListAsString(delim, nGlycMotifs);
     }
 
-    public void append(String seq) {
-        sequence += seq;
-    }
-
     public double getMW() {
         double mw = 0;
         try {
-            mw = ProteomicCalculator.getMolecularWeight(sequence);
+            mw = ProteomicCalculator.getMolecularWeight(getSequence());
         } catch (CompoundNotFoundException ex) {
             Logger.getLogger(Epitopo.class.getName()).log(Level.SEVERE, null, ex);
         }
@@ -73,7 +90,7 @@ public class Epitopo {
     public double getHydropathy() {
         double hp = 0;
         try {
-            hp = ProteomicCalculator.getHydropathy(sequence);
+            hp = ProteomicCalculator.getHydropathy(getSequence());
         } catch (CompoundNotFoundException ex) {
             Logger.getLogger(Epitopo.class.getName()).log(Level.SEVERE, null, ex);
         }
@@ -83,7 +100,7 @@ public class Epitopo {
     public double getIP() {
         double ip = 0;
         try {
-            ip = ProteomicCalculator.getIsoelectricPoint(sequence);
+            ip = ProteomicCalculator.getIsoelectricPoint(getSequence());
         } catch (CompoundNotFoundException ex) {
             Logger.getLogger(Epitopo.class.getName()).log(Level.SEVERE, null, ex);
         }
@@ -94,16 +111,12 @@ public class Epitopo {
      * @return the sequence
      */
     public String getSequence() {
+        if (sequence == null) {
+            sequence = scores.getSequence(start, length);
+        }
         return sequence;
     }
 
-    /**
-     * @param sequence the sequence to set
-     */
-    public void setSequence(String sequence) {
-        this.sequence = sequence;
-    }
-
     /**
      * @return the start
      */
@@ -111,13 +124,6 @@ public class Epitopo {
         return start;
     }
 
-    /**
-     * @param start the start to set
-     */
-    public void setStart(int start) {
-        this.start = start;
-    }
-
     /**
      * @return the end
      */
@@ -133,43 +139,25 @@ public class Epitopo {
     }
 
     public double getPercent(SoftwareBcellEnum soft, double threshold) {
-        double size = sequence.length();
-        double total = 0;
-        for (AminoEpitopo aminoEpitopo : aaEpitopes) {
-            double val = aminoEpitopo.getValue(soft);
-            if (val >= threshold) {
-                total++;
-            }
-        }
-        return total / size;
+        return getTopologyValue(soft, threshold).getValue();
     }
 
     public double getPercentScore(double eminiThreshold, double parkerThreshold) {
-        double size = sequence.length();
-        double total = 0;
-        for (AminoEpitopo aminoEpitopo : aaEpitopes) {
-            double emini = aminoEpitopo.getValue(SoftwareBcellEnum.EMINI);
-            double parker = aminoEpitopo.getValue(SoftwareBcellEnum.PARKER);
-
-            if (emini >= eminiThreshold && parker >= parkerThreshold) {
-                total++;
-            }
-        }
-        return total / size;
+        return getValidation(eminiThreshold, parkerThreshold).getValue();
     }
 
     /*
      * public double getPercentScore(double eminiThreshold, double parkerThreshold,
      * double karplusThreshold, double chouFosmanThreshold, double
      * kolaskarThreshold) {
-     * double size = sequence.length();
+     * double size = length;
      * double total = 0;
-     * for (AminoEpitopo aminoEpitopo : aaEpitopes) {
-     * double emini = aminoEpitopo.getValue(SoftwareBcellEnum.EMINI);
-     * double parker = aminoEpitopo.getValue(SoftwareBcellEnum.PARKER);
-     * double karplus = aminoEpitopo.getValue(SoftwareBcellEnum.KARPLUS_SCHULZ);
-     * double chouFosman = aminoEpitopo.getValue(SoftwareBcellEnum.CHOU_FOSMAN);
-     * double kolaskar = aminoEpitopo.getValue(SoftwareBcellEnum.KOLASKAR);
+     * for (int pos = 0; pos < length; pos++) {
+     * double emini = getValue(SoftwareBcellEnum.EMINI, pos);
+     * double parker = getValue(SoftwareBcellEnum.PARKER, pos);
+     * double karplus = getValue(SoftwareBcellEnum.KARPLUS_SCHULZ, pos);
+     * double chouFosman = getValue(SoftwareBcellEnum.CHOU_FOSMAN, pos);
+     * double kolaskar = getValue(SoftwareBcellEnum.KOLASKAR, pos);
      * 
      * if (emini >= eminiThreshold && parker >= parkerThreshold && karplus >=
      * karplusThreshold && chouFosman >= chouFosmanThreshold && kolaskar >=
@@ -181,241 +169,136 @@ public class Epitopo {
      * return total / size;
      * }
      */
+    /**
+     * @return the residues with a score of the method over the threshold, and
+     * the fraction of the epitope they cover
+     */
     public Topology getTopologyValue(SoftwareBcellEnum soft, double threshold) {
-        String res = "";
-        int total = 0;
-        for (AminoEpitopo aminoEpitopo : aaEpitopes) {
-            double val = aminoEpitopo.getValue(soft);
-            if (val >= threshold) {
-                res += "E";
-                total++;
-            } else {
-                res += ".";
+        float[] values = scores.get(soft);
+        long[] bits = Topology.newBits(length);
+        for (int pos = 0; pos < length; pos++) {
+            if (values[start + pos] >= threshold) {
+                bits[pos >>> 6] |= 1L << pos;
             }
         }
-        double size = aaEpitopes.size();
-        double val = total / size;
-
-        return new Topology(res, val);
+        return new Topology(bits, length);
     }
 
+    /**
+     * @return the residues in a N-glycosylation motif, and the fraction of the
+     * epitope they cover
+     */
     public Topology getNglycTopology() {
-        String res = "";
-        ArrayList<Integer> pos = new ArrayList<>();
-        if (nGlycMotifs.isEmpty()) {
-            res = sequence.replaceAll(".", ".");
-        } else {
-
-            for (int i = 0; i < sequence.length(); i++) {
-                for (Motif nGlycMotif : nGlycMotifs) {
-                    if (i >= nGlycMotif.getStart() - 1 && i <= nGlycMotif.getEndEpitope() - 1) {
-                        pos.add(i);
-                    }
-                }
-            }
-            char[] seq = sequence.replaceAll(".", ".").toCharArray();
-            for (Integer i : pos) {
-                seq[i] = 'E';
-            }
-            res = new String(seq);
+        long[] bits = Topology.newBits(length);
+        for (Motif nGlycMotif : nGlycMotifs) {
+            int from = Math.max(nGlycMotif.getStart() - 1, 0);
+            int to = Math.min(nGlycMotif.getEndEpitope(), length);
+            Topology.set(bits, from, to);
         }
-
-        return new Topology(res, ((double) pos.size()) / (sequence.length()));
+        return new Topology(bits, length);
     }
 
     public Topology getHydropathyTopology() {
-        String res = "";
-        for (int i = 0; i < sequence.length(); i++) {
-            String aa = sequence.charAt(i) + "";
-            double hyd;
-            try {
-                hyd = ProteomicCalculator.getHydropathy(aa);
-                if (hyd > 0) {
-                    res += "+";
-                } else if (hyd < 0) {
-                    res += "-";
-                } else {
-                    res += ".";
-                }
-            } catch (CompoundNotFoundException ex) {
-                Logger.getLogger(Epitopo.class.getName()).log(Level.SEVERE, null, ex);
+        char[] res = new char[length];
+        for (int i = 0; i < length; i++) {
+            double hyd = ProteomicCalculator.getHydropathy(scores.getResidue(start + i));
+            if (hyd > 0) {
+                res[i] = '+';
+            } else if (hyd < 0) {
+                res[i] = '-';
+            } else {
+                res[i] = '.';
             }
-
         }
 
-        return new Topology(res, 0);
+        return new Topology(new String(res), 0);
     }
 
     public String getTopology(SoftwareBcellEnum soft, double threshold) {
-        String res = "";
-        for (AminoEpitopo aminoEpitopo : aaEpitopes) {
-            double val = aminoEpitopo.getValue(soft);
-            if (val >= threshold) {
-                res += "E";
-            } else {
-                res += "-";
-            }
-        }
-        return res;
+        return getTopologyValue(soft, threshold).toString(Topology.MATCH, '-');
+    }
+
+    /**
+     * @return the residues over the thresholds of all the methods
+     */
+    private Topology getValidation(double eminiThreshold, double parkerThreshold, double karplusThreshold,
+            double chouFosmanThreshold, double kolaskarThreshold) {
+        return Topology.intersection(List.of(getTopologyValue(SoftwareBcellEnum.EMINI, eminiThreshold),
+                getTopologyValue(SoftwareBcellEnum.PARKER, parkerThreshold),
+                getTopologyValue(SoftwareBcellEnum.KARPLUS_SCHULZ, karplusThreshold),
+                getTopologyValue(SoftwareBcellEnum.CHOU_FOSMAN, chouFosmanThreshold),
+                getTopologyValue(SoftwareBcellEnum.KOLASKAR, kolaskarThreshold)), length);
+    }
+
+    private Topology getValidation(double eminiThreshold, double parkerThreshold) {
+        return Topology.intersection(List.of(getTopologyValue(SoftwareBcellEnum.EMINI, eminiThreshold),
+                getTopologyValue(SoftwareBcellEnum.PARKER, parkerThreshold)), length);
     }
 
     public String getTopologyValidation(double eminiThreshold, double parkerThreshold, double karplusThreshold,
             double chouFosmanThreshold, double kolaskarThreshold) {
-        String res = "";
-        for (AminoEpitopo aminoEpitopo : aaEpitopes) {
-            double emini = aminoEpitopo.getValue(SoftwareBcellEnum.EMINI);
-            double parker = aminoEpitopo.getValue(SoftwareBcellEnum.PARKER);
-            double karplus = aminoEpitopo.getValue(SoftwareBcellEnum.KARPLUS_SCHULZ);
-            double chouFosman = aminoEpitopo.getValue(SoftwareBcellEnum.CHOU_FOSMAN);
-            double kolaskar = aminoEpitopo.getValue(SoftwareBcellEnum.KOLASKAR);
-
-            if (emini >= eminiThreshold && parker >= parkerThreshold && karplus >= karplusThreshold
-                    && chouFosman >= chouFosmanThreshold && kolaskar >= kolaskarThreshold) {
-                res += "E";
-            } else {
-                res += ".";
-            }
-        }
-        return res;
+        return getValidation(eminiThreshold, parkerThreshold, karplusThreshold, chouFosmanThreshold,
+                kolaskarThreshold).getDescription();
     }
 
     public String getTopologyValidation(double eminiThreshold, double parkerThreshold) {
-        String res = "";
-        for (AminoEpitopo aminoEpitopo : aaEpitopes) {
-            double emini = aminoEpitopo.getValue(SoftwareBcellEnum.EMINI);
-            double parker = aminoEpitopo.getValue(SoftwareBcellEnum.PARKER);
-            if (emini >= eminiThreshold && parker >= parkerThreshold) {
-                res += "E";
-            } else {
-                res += ".";
-            }
-        }
-        return res;
+        return getValidation(eminiThreshold, parkerThreshold).getDescription();
     }
 
-    public float getBestSequenceAminoSizeScore(double eminiThreshold, double parkerThreshold, double karplusThreshold,
-            double chouFosmanThreshold, double kolaskarThreshold) {
-        int i = 0;
-        TreeSet<Integer> areas = new TreeSet<>();
-        for (AminoEpitopo ae : getAaEpitopes()) {
-            if (ae.getEmini() >= eminiThreshold
-                    && ae.getParker() >= parkerThreshold
-                    && ae.getKarplus_schulz() >= karplusThreshold
-                    && ae.getChou_fasman() >= chouFosmanThreshold
-                    && ae.getKolaskar() >= kolaskarThreshold) {
-                i++;
+    /**
+     * The longest run of matched residues of the topology. As in the previous
+     * versions, a run that reaches the end of the epitope is not counted.
+     *
+     * @return {start, length} of the first longest run, length 0 if none
+     */
+    private static int[] getLongestRun(Topology topology) {
+        int[] best = {0, 0};
+        int run = 0;
+        for (int pos = 0; pos < topology.getLength(); pos++) {
+            if (topology.isMatch(pos)) {
+                run++;
             } else {
-                if (i > 0) {
-                    areas.add(i);
+                if (run > best[1]) {
+                    best[0] = pos - run;
+                    best[1] = run;
                 }
-                i = 0;
+                run = 0;
             }
-
         }
-        if (!areas.isEmpty()) {
-            return ((float) areas.last()) / (getSequence().length());
+        return best;
+    }
 
-        } else {
-            return 0;
-        }
+    public float getBestSequenceAminoSizeScore(double eminiThreshold, double parkerThreshold, double karplusThreshold,
+            double chouFosmanThreshold, double kolaskarThreshold) {
+        int[] run = getLongestRun(getValidation(eminiThreshold, parkerThreshold, karplusThreshold,
+                chouFosmanThreshold, kolaskarThreshold));
+        return ((float) run[1]) / length;
     }
 
     public float getBestSequenceAminoSizeScore(double mediaEmini, double mediaParker) {
-        int i = 0;
-        TreeSet<Integer> areas = new TreeSet<>();
-        for (AminoEpitopo ae : getAaEpitopes()) {
-            if (ae.getEmini() >= mediaEmini && ae.getParker() >= mediaParker) {
-                i++;
-            } else {
-                if (i > 0) {
-                    areas.add(i);
-                }
-                i = 0;
-            }
-
-        }
-        if (!areas.isEmpty()) {
-            return ((float) areas.last()) / (getSequence().length());
-
-        } else {
-            return 0;
-        }
+        int[] run = getLongestRun(getValidation(mediaEmini, mediaParker));
+        return ((float) run[1]) / length;
     }
 
     public String getTopologyBestSequenceAmino(double mediaEmini, double mediaParker) {
-        String pep = "";
-        ArrayList<String> areas = new ArrayList<>();
-        for (AminoEpitopo ae : getAaEpitopes()) {
-            if (ae.getEmini() >= mediaEmini && ae.getParker() >= mediaParker) {
-                pep += ae.getAmino();
-            } else {
-                if (pep.length() > 0) {
-                    areas.add(pep);
-                }
-                pep = "";
-            }
-        }
-        areas.sort(new Comparator<String>() {
-            @Override
-            public int compare(String arg0, String arg1) {
-                return Integer.compare(arg1.length(), arg0.length());
-            }
-        });
-
-        String choose = "";
-        if (!areas.isEmpty()) {
-            choose = areas.get(0);
-        }
-        return getStline(getSequence(), choose);
+        int[] run = getLongestRun(getValidation(mediaEmini, mediaParker));
+        return getStline(getSequence(), getSequence().substring(run[0], run[0] + run[1]));
     }
 
     public String getTopologyBestSequenceAmino(double eminiThreshold, double parkerThreshold, double karplusThreshold,
             double chouFosmanThreshold, double kolaskarThreshold) {
-        String pep = "";
-        ArrayList<String> areas = new ArrayList<>();
-        for (AminoEpitopo ae : getAaEpitopes()) {
-            if (ae.getEmini() >= eminiThreshold
-                    && ae.getParker() >= parkerThreshold
-                    && ae.getKarplus_schulz() >= karplusThreshold
-                    && ae.getChou_fasman() >= chouFosmanThreshold
-                    && ae.getKolaskar() >= kolaskarThreshold) {
-                pep += ae.getAmino();
-            } else {
-                if (pep.length() > 0) {
-                    areas.add(pep);
-                }
-                pep = "";
-            }
-        }
-        areas.sort(new Comparator<String>() {
-            @Override
-            public int compare(String arg0, String arg1) {
-                return Integer.compare(arg1.length(), arg0.length());
-            }
-        });
-
-        String choose = "";
-        if (!areas.isEmpty()) {
-            choose = areas.get(0);
-        }
-        return getStline(getSequence(), choose);
+        int[] run = getLongestRun(getValidation(eminiThreshold, parkerThreshold, karplusThreshold,
+                chouFosmanThreshold, kolaskarThreshold));
+        return getStline(getSequence(), getSequence().substring(run[0], run[0] + run[1]));
     }
 
     public String getStline(String str, String substr) {
         int start = str.indexOf(substr);
-        int end = start + substr.length() - 1;
-
-        String c = "";
-        for (int i = 0; i < str.length(); i++) {
-            if (start == -1) {
-                c += ".";
-            } else if (i >= start && i <= end) {
-                c += "E";
-            } else {
-                c += ".";
-            }
-
+        char[] c = new char[str.length()];
+        Arrays.fill(c, Topology.NO_MATCH);
+        if (start != -1) {
+            Arrays.fill(c, start, start + substr.length(), Topology.MATCH);
         }
-        return c;
+        return new String(c);
     }
 }
@@ -1,7 +1,7 @@
 package br.ufsc.epibuilder.entity;
 
 import br.udesc.cav.tese.glycosylation.Motif;
-import br.ufsc.epibuilder.Parameters;
+import br.ufsc.epibuilder.RunConfiguration;
 import br.ufsc.epibuilder.entity.report.FormatHelper;
 import java.util.ArrayList;
 
@@ -9,7 +9,7 @@ public class Protein implements Comparable<Protein> {
 
     private String id;
     private String sequence;
-    private ArrayList<AminoEpitopo> aminoEpitopos = new ArrayList<>();
+    private ProteinScores scores;
     private boolean nglyco = false;
     private ArrayList<Motif> nglycMotifs = new ArrayList<>();
     private ArrayList<Epitopo> epitopes = new ArrayList<>();
@@ -40,11 +40,10 @@ public class Protein implements Comparable<Protein> {
     }
 
     public String getSequence() {
-        String res = "";
-        for (AminoEpitopo aminoEpitopo : aminoEpitopos) {
-            res += aminoEpitopo.getAmino();
+        if (sequence == null && scores != null) {
+            sequence = scores.getSequence();
         }
-        return res;
+        return sequence;
     }
 
     public ArrayList<Epitopo> getEpitopes() {
@@ -61,33 +60,32 @@ public class Protein implements Comparable<Protein> {
 
     public void process(double corte, int qtdInicial, int qtdFinal) {
 
-        Epitopo epitopo = new Epitopo();
         ArrayList<Epitopo> epitopos = new ArrayList<>();
+        float[] bepipred = scores.getBepipred();
+        int start = -1;
 
-        for (AminoEpitopo aminoEpitopo : aminoEpitopos) {
-            if (aminoEpitopo.getBepipred2() >= corte) {
-                if (epitopo.getSequence().isEmpty()) {
-                    epitopo.setStart(aminoEpitopo.getPosition());
+        for (int pos = 0; pos < bepipred.length; pos++) {
+            if (bepipred[pos] >= corte) {
+                if (start < 0) {
+                    start = pos;
                 }
-                epitopo.append(aminoEpitopo.getAmino());
-                epitopo.addAminoEpitopo(aminoEpitopo);
-            } else {
-                if (!epitopo.getSequence().isEmpty()) {
-                    epitopo.setEndEpitope(aminoEpitopo.getPosition());
-                    epitopos.add(epitopo);
-                }
-                epitopo = new Epitopo();
+            } else if (start >= 0) {
+                Epitopo epitopo = new Epitopo(scores, start, pos - start);
+                epitopo.setEndEpitope(pos);
+                epitopos.add(epitopo);
+                start = -1;
             }
         }
-        if (!epitopo.getSequence().isEmpty()) {
-            epitopo.setEndEpitope(epitopo.getSequence().length());
+        if (start >= 0) {
+            Epitopo epitopo = new Epitopo(scores, start, bepipred.length - start);
+            epitopo.setEndEpitope(epitopo.getLength());
             epitopos.add(epitopo);
         }
 
         ArrayList<Epitopo> epitoposFinais = new ArrayList<>();
 
         for (Epitopo epitopo1 : epitopos) {
-            if (epitopo1.getSequence().length() >= qtdInicial && epitopo1.getSequence().length() <= qtdFinal) {
+            if (epitopo1.getLength() >= qtdInicial && epitopo1.getLength() <= qtdFinal) {
                 epitoposFinais.add(epitopo1);
                 if (epitopo1.isNglycolised()) {
                     setNglyco(true);
@@ -103,23 +101,13 @@ public class Protein implements Comparable<Protein> {
         }
     }
 
-    public void addAminoEpitopo(String amino, int posicao, double bepipred2) {
-        AminoEpitopo a = new AminoEpitopo(amino, posicao);
-        a.setBepipred2(bepipred2);
-
-        addAminoEpitopo(a);
-    }
-
-    public void addAminoEpitopo(AminoEpitopo aminoEpitopo) {
-        aminoEpitopos.add(aminoEpitopo);
+    public void setScores(ProteinScores scores) {
+        this.scores = scores;
+        this.sequence = null;
     }
 
-    public ArrayList<AminoEpitopo> getAminoEpitopos() {
-        return aminoEpitopos;
-    }
-
-    public void setAminoEpitopos(ArrayList<AminoEpitopo> aminoEpitopos) {
-        this.aminoEpitopos = aminoEpitopos;
+    public ProteinScores getScores() {
+        return scores;
     }
 
     public String getId() {
@@ -135,11 +123,10 @@ public class Protein implements Comparable<Protein> {
         return id.compareTo(o.id);
     }
 
-    public double getThreshold(SoftwareBcellEnum software) {
-        if (Parameters.MAP_SOFTWARES.containsKey(software)) {
-            if (Parameters.MAP_SOFTWARES.get(software) != null) {
-                return Parameters.MAP_SOFTWARES.get(software);
-            }
+    public double getThreshold(SoftwareBcellEnum software, RunConfiguration config) {
+        Double configured = config.getSoftwares().get(software);
+        if (configured != null) {
+            return configured;
         }
         int start = 3;
         int end = 3;
@@ -151,32 +138,10 @@ public class Protein implements Comparable<Protein> {
         if (software == SoftwareBcellEnum.KARPLUS_SCHULZ) {
             end = 4;
         }
-        for (int i = start; i < aminoEpitopos.size() - end; i++) {
-
-            AminoEpitopo aa = aminoEpitopos.get(i);
-            switch (software) {
-                case PARKER: {
-                    threshold += aa.getParker();
-                    break;
-                }
-                case EMINI: {
-                    threshold += aa.getEmini();
-                    break;
-                }
-                case KOLASKAR: {
-                    threshold += aa.getKolaskar();
-                    break;
-                }
-                case CHOU_FOSMAN: {
-                    threshold += aa.getChou_fasman();
-                    break;
-                }
-                case KARPLUS_SCHULZ: {
-                    threshold += aa.getKarplus_schulz();
-                    break;
-                }
-            }
+        float[] values = scores.get(software);
+        for (int i = start; i < values.length - end; i++) {
+            threshold += values[i];
         }
-        return threshold / (aminoEpitopos.size() - (end + start));
+        return threshold / (values.length - (end + start));
     }
 }
@@ -0,0 +1,141 @@
+package br.ufsc.epibuilder.entity;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Per residue scores of a protein, stored by column: one primitive array per
+ * method, all indexed by the 0-based residue position. The columns of the IEDB
+ * methods are null until they are set.
+ */
+public class ProteinScores {
+
+    private final byte[] residues;
+    private final float[] bepipred;
+    private float[] parker;
+    private float[] emini;
+    private float[] karplusSchulz;
+    private float[] kolaskar;
+    private float[] chouFasman;
+
+    /**
+     * @param residues upper-case ASCII residues
+     * @param bepipred BepiPred-3.0 score of each residue
+     */
+    public ProteinScores(byte[] residues, float[] bepipred) {
+        if (residues.length != bepipred.length) {
+            throw new IllegalArgumentException("Residues and BepiPred-3.0 scores have different lengths");
+        }
+        this.residues = residues;
+        this.bepipred = bepipred;
+    }
+
+    public int length() {
+        return residues.length;
+    }
+
+    public byte[] getResidues() {
+        return residues;
+    }
+
+    public char getResidue(int pos) {
+        return (char) residues[pos];
+    }
+
+    public String getSequence() {
+        return getSequence(0, residues.length);
+    }
+
+    public String getSequence(int start, int length) {
+        return new String(residues, start, length, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Returns the score column of the method, BEPIPRED returns the
+     * BepiPred-3.0 scores.
+     *
+     * @param software
+     * @return
+     */
+    public float[] get(SoftwareBcellEnum software) {
+        switch (software) {
+            case PARKER:
+                return parker;
+            case CHOU_FOSMAN:
+                return chouFasman;
+            case EMINI:
+                return emini;
+            case KARPLUS_SCHULZ:
+                return karplusSchulz;
+            case KOLASKAR:
+                return kolaskar;
+            default:
+                return bepipred;
+        }
+    }
+
+    /**
+     * Replaces the score column of one of the IEDB methods.
+     *
+     * @param software
+     * @param values one score per residue
+     */
+    public void set(SoftwareBcellEnum software, float[] values) {
+        if (values.length != residues.length) {
+            throw new IllegalArgumentException("Residues and " + software.description + " scores have different lengths");
+        }
+        switch (software) {
+            case PARKER:
+                parker = values;
+                break;
+            case CHOU_FOSMAN:
+                chouFasman = values;
+                break;
+            case EMINI:
+                emini = values;
+                break;
+            case KARPLUS_SCHULZ:
+                karplusSchulz = values;
+                break;
+            case KOLASKAR:
+                kolaskar = values;
+                break;
+            default:
+                throw new IllegalArgumentException("The BepiPred-3.0 scores are set in the constructor");
+        }
+    }
+
+    /**
+     * @return the columns of all the IEDB methods are set
+     */
+    public boolean isScored() {
+        return parker != null && emini != null && karplusSchulz != null && kolaskar != null && chouFasman != null;
+    }
+
+    public double getValue(SoftwareBcellEnum software, int pos) {
+        return get(software)[pos];
+    }
+
+    public float[] getBepipred() {
+        return bepipred;
+    }
+
+    public float[] getParker() {
+        return parker;
+    }
+
+    public float[] getEmini() {
+        return emini;
+    }
+
+    public float[] getKarplusSchulz() {
+        return karplusSchulz;
+    }
+
+    public float[] getKolaskar() {
+        return kolaskar;
+    }
+
+    public float[] getChouFasman() {
+        return chouFasman;
+    }
+}
@@ -0,0 +1,102 @@
+package br.ufsc.epibuilder.entity;
+
+import java.util.Arrays;
+
+/**
+ * Byte codes of the residues, shared by the scales, the scoring methods and
+ * the peptide properties.
+ *
+ * The 20 standard amino acids are coded in [0, 20), in the order of
+ * {@link #STANDARD}, in upper or lower case. The ambiguous and non-standard
+ * residues (X, B, Z, J, U and O) have the code {@link #UNKNOWN}, so the tables
+ * indexed by code have {@link #CODES} entries and a value for them. Any other
+ * character is not a residue.
+ */
+public class ResidueAlphabet {
+
+    public static final String STANDARD = "ACDEFGHIKLMNPQRSTVWY";
+    public static final String AMBIGUOUS = "XBZJUO";
+
+    public static final int SIZE = STANDARD.length();
+    public static final byte UNKNOWN = (byte) SIZE;
+    public static final int CODES = SIZE + 1;
+    public static final byte INVALID = -1;
+
+    private static final byte[] TABLE = new byte[128];
+
+    static {
+        Arrays.fill(TABLE, INVALID);
+        for (int code = 0; code < SIZE; code++) {
+            char c = STANDARD.charAt(code);
+            TABLE[c] = (byte) code;
+            TABLE[Character.toLowerCase(c)] = (byte) code;
+        }
+        for (char c : AMBIGUOUS.toCharArray()) {
+            TABLE[c] = UNKNOWN;
+            TABLE[Character.toLowerCase(c)] = UNKNOWN;
+        }
+    }
+
+    /**
+     * @param residue
+     * @return the code of the residue, {@link #UNKNOWN} for the ambiguous and
+     * non-standard residues, {@link #INVALID} if it is not a residue
+     */
+    public static byte code(char residue) {
+        return residue < 128 ? TABLE[residue] : INVALID;
+    }
+
+    /**
+     * @param code
+     * @return the upper case residue of a standard code, 'X' for the others
+     */
+    public static char residue(int code) {
+        return code >= 0 && code < SIZE ? STANDARD.charAt(code) : 'X';
+    }
+
+    public static boolean isStandard(int code) {
+        return code >= 0 && code < SIZE;
+    }
+
+    /**
+     * Encodes the residues.
+     *
+     * @param residues ASCII residues
+     * @return the code of each residue
+     * @throws IllegalArgumentException when a character is not a residue
+     */
+    public static byte[] encode(byte[] residues) {
+        byte[] codes = new byte[residues.length];
+        for (int pos = 0; pos < residues.length; pos++) {
+            int residue = residues[pos];
+            byte code = residue >= 0 ? TABLE[residue] : INVALID;
+            if (code == INVALID) {
+                throw new IllegalArgumentException("Invalid residue '" + (char) (residue & 0xff) + "' at position " + (pos + 1));
+            }
+            codes[pos] = code;
+        }
+        return codes;
+    }
+
+    /**
+     * Builds a table indexed by code from the values of the standard residues.
+     * The value of {@link #UNKNOWN} is the average of the others, so an
+     * ambiguous residue weighs as an average residue.
+     *
+     * @param values the values of the residues in the order of
+     * {@link #STANDARD}
+     * @return
+     */
+    public static float[] table(float... values) {
+        if (values.length != SIZE) {
+            throw new IllegalArgumentException(values.length + " values for " + SIZE + " residues");
+        }
+        float[] table = Arrays.copyOf(values, CODES);
+        float sum = 0;
+        for (float value : values) {
+            sum += value;
+        }
+        table[UNKNOWN] = sum / SIZE;
+        return table;
+    }
+}
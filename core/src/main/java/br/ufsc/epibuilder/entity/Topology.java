@@ -5,26 +5,123 @@
  */
 package br.ufsc.epibuilder.entity;
 
+import java.util.Arrays;
+import java.util.List;
+
 /**
+ * Topology of an epitope: the residues matched by a method and the fraction
+ * of the epitope they cover.
+ *
+ * A topology built from a bitset keeps one bit per residue and renders its
+ * E/. description only when it is asked for, when a report is written.
  *
  * @author renato
  */
 public class Topology {
+
+    public static final char MATCH = 'E';
+    public static final char NO_MATCH = '.';
+
     private String description;
     private double value;
+    private final long[] bits;
+    private final int length;
 
     public Topology(String description, double value) {
         this.description = description;
         this.value = value;
+        this.bits = null;
+        this.length = description.length();
+    }
+
+    /**
+     * @param bits bit i set when the i-th residue is matched
+     * @param length number of residues of the epitope
+     */
+    public Topology(long[] bits, int length) {
+        this.bits = bits;
+        this.length = length;
+        this.value = ((double) cardinality(bits)) / length;
+    }
+
+    /**
+     * @param length
+     * @return a bitset with room for the residues of an epitope of the length
+     */
+    public static long[] newBits(int length) {
+        return new long[(length + 63) >>> 6];
+    }
+
+    /**
+     * Sets the bits [from, to).
+     */
+    public static void set(long[] bits, int from, int to) {
+        for (int i = from; i < to; i++) {
+            bits[i >>> 6] |= 1L << i;
+        }
+    }
+
+    public static int cardinality(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * @param topologies topologies built from bitsets
+     * @param length number of residues of the epitope
+     * @return the residues matched by all the topologies, all of them when
+     * there is no topology
+     */
+    public static Topology intersection(List<Topology> topologies, int length) {
+        long[] bits = newBits(length);
+        Arrays.fill(bits, -1L);
+        if (length % 64 != 0) {
+            bits[bits.length - 1] = (1L << length) - 1;
+        }
+        for (Topology topology : topologies) {
+            for (int w = 0; w < bits.length; w++) {
+                bits[w] &= topology.bits[w];
+            }
+        }
+        return new Topology(bits, length);
     }
 
     public String getDescription() {
-        return description;
+        if (description != null) {
+            return description;
+        }
+        return toString(MATCH, NO_MATCH);
+    }
+
+    /**
+     * @param match char of the matched residues
+     * @param noMatch char of the other residues
+     * @return one char per residue
+     */
+    public String toString(char match, char noMatch) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (bits[i >>> 6] & (1L << i)) != 0 ? match : noMatch;
+        }
+        return new String(chars);
     }
 
     public double getValue() {
         return value;
     }
-    
-    
+
+    public long[] getBits() {
+        return bits;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public boolean isMatch(int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
 }
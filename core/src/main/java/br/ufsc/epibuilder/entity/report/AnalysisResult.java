@@ -0,0 +1,55 @@
+package br.ufsc.epibuilder.entity.report;
+
+import br.ufsc.epibuilder.entity.Protein;
+import java.util.ArrayList;
+
+/**
+ * Result of the analysis of a BepiPred-3.0 file, before any report file is
+ * written.
+ *
+ * @author renato
+ */
+public class AnalysisResult {
+
+    private final ArrayList<Protein> proteins;
+    private final ArrayList<Report> reports;
+    private final int totalNglyc;
+    private final int totalEpitopes;
+    private final int totalEpitopesNglyc;
+
+    public AnalysisResult(ArrayList<Protein> proteins, ArrayList<Report> reports, int totalNglyc, int totalEpitopes,
+            int totalEpitopesNglyc) {
+        this.proteins = proteins;
+        this.reports = reports;
+        this.totalNglyc = totalNglyc;
+        this.totalEpitopes = totalEpitopes;
+        this.totalEpitopesNglyc = totalEpitopesNglyc;
+    }
+
+    /**
+     * @return the processed proteins
+     */
+    public ArrayList<Protein> getProteins() {
+        return proteins;
+    }
+
+    /**
+     * @return the epitopes sorted by average cover, the N of an epitope in the
+     * reports is its index in this list plus one
+     */
+    public ArrayList<Report> getReports() {
+        return reports;
+    }
+
+    public int getTotalNglyc() {
+        return totalNglyc;
+    }
+
+    public int getTotalEpitopes() {
+        return totalEpitopes;
+    }
+
+    public int getTotalEpitopesNglyc() {
+        return totalEpitopesNglyc;
+    }
+}
@@ -5,20 +5,180 @@
  */
 package br.ufsc.epibuilder.entity.report;
 
+import java.io.Closeable;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import org.apache.poi.ss.SpreadsheetVersion;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.Font;
 import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 
 /**
+ * Excel workbook written as a stream: only the last rows of each sheet are
+ * kept in memory, the others are flushed to temporary files, so the memory
+ * used does not depend on the size of the reports. A sheet that reaches the
+ * row limit of Excel goes on in a new sheet.
+ *
+ * If a cell cannot be written, the error is kept and the next cells are
+ * ignored, so a failure of the workbook does not stop the writing of the
+ * other reports; it is thrown by {@link #write(String)}.
  *
  * @author renato
  */
-public class ExcelReport {
+public class ExcelReport implements Closeable {
+
+    /**
+     * Rows of each sheet kept in memory.
+     */
+    public static final int ROW_WINDOW = 200;
+
+    private static final int MAX_ROWS = SpreadsheetVersion.EXCEL2007.getMaxRows();
+
+    private final SXSSFWorkbook workbook;
+    private final CellStyle style;
+    private final StringBuilder number = new StringBuilder(32);
+    private RuntimeException error;
+
+    public ExcelReport() {
+        workbook = new SXSSFWorkbook(ROW_WINDOW);
+        workbook.setCompressTempFiles(true);
+        style = workbook.createCellStyle(); // Creating Style
+        // Creating Font and settings
+        Font font = workbook.createFont();
+        font.setFontHeightInPoints((short) 11);
+        font.setFontName("Courier New");
+        // Applying font to the style
+        style.setFont(font);
+    }
+
+    /**
+     * Creates a sheet at the end of the workbook. The sheets can be written
+     * in any order.
+     *
+     * @param name
+     * @return the writer of the rows of the sheet
+     */
+    public RowWriter createSheet(String name) {
+        return new SheetWriter(name);
+    }
+
+    /**
+     * Saves the workbook.
+     *
+     * @param fileName
+     * @throws IOException if the file cannot be written or a cell could not be
+     * added to the workbook
+     */
+    public void write(String fileName) throws IOException {
+        if (error != null) {
+            throw new IOException("Error writing the workbook: " + error.getMessage(), error);
+        }
+        try (FileOutputStream outputStream = new FileOutputStream(fileName)) {
+            workbook.write(outputStream);
+        }
+    }
+
+    /**
+     * Deletes the temporary files of the sheets.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        workbook.dispose();
+        workbook.close();
+    }
+
+    /**
+     * Rounds the value to the text of the TSV reports, so both show the same
+     * numbers.
+     */
+    private double round(double value) {
+        number.setLength(0);
+        FormatHelper.appendDecimal(number, value);
+        return Double.parseDouble(number.toString());
+    }
+
+    private class SheetWriter implements RowWriter {
+
+        private final String name;
+        private SXSSFSheet sheet;
+        private int sheets = 0;
+        private Row row;
+        private int rowCount = 0;
+        private int columnCount = 0;
+
+        SheetWriter(String name) {
+            this.name = name;
+            sheet = newSheet();
+        }
+
+        private SXSSFSheet newSheet() {
+            sheets++;
+            return workbook.createSheet(sheets == 1 ? name : name + " (" + sheets + ")");
+        }
+
+        private Cell next() {
+            if (row == null) {
+                row = sheet.createRow(rowCount);
+            }
+            Cell cell = row.createCell(columnCount++);
+            cell.setCellStyle(style);
+            return cell;
+        }
+
+        @Override
+        public void cell(String value) {
+            if (value != null && value.isEmpty()) {
+                // left blank, as the empty columns of the TSV
+                columnCount++;
+                return;
+            }
+            if (error == null) {
+                try {
+                    next().setCellValue(value);
+                } catch (RuntimeException e) {
+                    error = e;
+                }
+            }
+        }
+
+        @Override
+        public void cell(long value) {
+            if (error == null) {
+                try {
+                    next().setCellValue(value);
+                } catch (RuntimeException e) {
+                    error = e;
+                }
+            }
+        }
+
+        @Override
+        public void cell(double value) {
+            if (error == null) {
+                try {
+                    next().setCellValue(round(value));
+                } catch (RuntimeException e) {
+                    error = e;
+                }
+            }
+        }
+
+        @Override
+        public void endRow() {
+            row = null;
+            columnCount = 0;
+            if (++rowCount == MAX_ROWS) {
+                sheet = newSheet();
+                rowCount = 0;
+            }
+        }
+    }
 
     /* public static void generateExcel(ArrayList<ExcelTabReport> tabs, String fileName) throws Exception {
         
@@ -46,39 +206,22 @@ public class ExcelReport {
 
     }*/
     public static void generateExcelXlsx(ArrayList<ExcelTabReport> tabs, String fileName) throws Exception {
-
-        XSSFWorkbook workbook = new XSSFWorkbook();
-        CellStyle style = workbook.createCellStyle(); // Creating Style  
-        // Creating Font and settings  
-        Font font = workbook.createFont();
-        font.setFontHeightInPoints((short) 11);
-        font.setFontName("Courier New");
-        // Applying font to the style  
-        style.setFont(font);
-        // Applying style to the cell  
-
-        for (ExcelTabReport tab : tabs) {
-            XSSFSheet sheet = workbook.createSheet(tab.getName());
-            Object[][] data = tab.getMatrix();
-            int rowCount = 0;
-            for (Object[] line : data) {
-                Row row = sheet.createRow(rowCount++);
-                int columnCount = 0;
-                for (Object field : line) {
-                    Cell cell = row.createCell(columnCount++);
-                    if (field instanceof String) {
-                        cell.setCellValue((String) field);
-                    } else if (field instanceof Double) {
-                        cell.setCellValue((Double) field);
+        try (ExcelReport report = new ExcelReport()) {
+            for (ExcelTabReport tab : tabs) {
+                RowWriter sheet = report.createSheet(tab.getName());
+                for (Object[] line : tab.getMatrix()) {
+                    for (Object field : line) {
+                        if (field instanceof Double) {
+                            sheet.cell((Double) field);
+                        } else {
+                            sheet.cell((String) field);
+                        }
                     }
-                    cell.setCellStyle(style);
+                    sheet.endRow();
                 }
             }
+            report.write(fileName);
         }
-        try ( FileOutputStream outputStream = new FileOutputStream(fileName)) {
-            workbook.write(outputStream);
-        }
-
     }
 
     public static void main(String[] args) throws Exception {
@@ -6,7 +6,13 @@
 package br.ufsc.epibuilder.entity.report;
 
 import com.google.common.base.Joiner;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.List;
+import java.util.Locale;
 import org.apache.commons.lang3.StringUtils;
 
 /**
@@ -42,4 +48,78 @@ public class FormatHelper {
         }
         return sb.toString();
     }
+
+    /**
+     * Writes a tab separated file with the columns padded as
+     * {@link #convertTabString(String)}, reading the file twice instead of
+     * holding it in memory.
+     *
+     * @param file
+     * @param out
+     * @throws IOException
+     */
+    public static void convertTabFile(File file, Writer out) throws IOException {
+        int[] maxLengthColumn;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file), 1 << 16)) {
+            String line = reader.readLine();
+            if (line == null) {
+                return;
+            }
+            maxLengthColumn = new int[line.split("\t").length];
+            do {
+                String[] cols = line.split("\t");
+                for (int i = 0; i < cols.length; i++) {
+                    if (cols[i].length() >= maxLengthColumn[i]) {
+                        maxLengthColumn[i] = cols[i].length();
+                    }
+                }
+            } while ((line = reader.readLine()) != null);
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(file), 1 << 16)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] cols = line.split("\t");
+                for (int i = 0; i < cols.length; i++) {
+                    String col = cols[i];
+                    out.write(col);
+                    for (int pad = col.length(); pad < maxLengthColumn[i]; pad++) {
+                        out.write(' ');
+                    }
+                    out.write('\t');
+                }
+                out.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Appends the value with 2 decimals, as String.format("%.2f") with a point
+     * as the decimal separator, without creating a Formatter for each value.
+     *
+     * @param sb
+     * @param value
+     */
+    public static void appendDecimal(StringBuilder sb, double value) {
+        double abs = Math.abs(value);
+        double scaled = abs * 100;
+        double floor = Math.floor(scaled);
+        double fraction = scaled - floor;
+        // %.2f rounds the shortest decimal of the value half up, so the values
+        // near a tie, and the ones too large to be scaled exactly, go to it
+        if (!(abs < 1e9) || Math.abs(fraction - 0.5) < 1e-4) {
+            sb.append(String.format(Locale.ROOT, "%.2f", value));
+            return;
+        }
+        long cents = (long) floor + (fraction > 0.5 ? 1 : 0);
+        if (Double.doubleToRawLongBits(value) < 0) {
+            sb.append('-');
+        }
+        sb.append(cents / 100);
+        sb.append('.');
+        long decimals = cents % 100;
+        if (decimals < 10) {
+            sb.append('0');
+        }
+        sb.append(decimals);
+    }
 }
@@ -221,38 +221,23 @@ public class Report {
         this.epitopeReports = epitopeReports;
     }
 
-    public String getTopologyValidation() {
-        String res = "";
-        String[] tops = new String[epitopeReports.size()];
-
-        for (int i = 0; i < epitopeReports.size(); i++) {
-            tops[i] = epitopeReports.get(i).getTopology().getDescription();
-        }
-
-        for (int i = 0; i < epitope.length(); i++) {
-            String aux = "E";
-            for (int j = 0; j < tops.length; j++) {
-                if (tops[j].charAt(i) != 'E') {
-                    aux = ".";
-                    break;
-                }
-            }
-            res += aux;
+    /**
+     * @return the residues matched by all the methods, "All matches" in the
+     * reports
+     */
+    public Topology getValidation() {
+        ArrayList<Topology> topologies = new ArrayList<>(epitopeReports.size());
+        for (EpitopeReport epitopeReport : epitopeReports) {
+            topologies.add(epitopeReport.getTopology());
         }
+        return Topology.intersection(topologies, epitope.length());
+    }
 
-        return res;
+    public String getTopologyValidation() {
+        return getValidation().getDescription();
     }
 
     public Double getTopologyCoverValidation() {
-        String res = getTopologyValidation();
-        double total = res.length();
-        double e = 0;
-        for (int i = 0; i < res.length(); i++) {
-            if (res.charAt(i) == 'E') {
-                e++;
-            }
-        }
-
-        return e / total;
+        return getValidation().getValue();
     }
 }
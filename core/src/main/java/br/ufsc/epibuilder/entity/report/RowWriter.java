@@ -0,0 +1,75 @@
+package br.ufsc.epibuilder.entity.report;
+
+import java.io.IOException;
+
+/**
+ * Destination of a report written one row at a time, so a report never has to
+ * be held as a whole in memory.
+ *
+ * @author renato
+ */
+public interface RowWriter {
+
+    void cell(String value) throws IOException;
+
+    void cell(long value) throws IOException;
+
+    /**
+     * Writes a value with 2 decimals, as %.2f.
+     *
+     * @param value
+     * @throws IOException
+     */
+    void cell(double value) throws IOException;
+
+    void endRow() throws IOException;
+
+    /**
+     * Writes a row of text cells, as a header.
+     *
+     * @param values
+     * @throws IOException
+     */
+    default void row(String... values) throws IOException {
+        for (String value : values) {
+            cell(value);
+        }
+        endRow();
+    }
+
+    /**
+     * @param writers
+     * @return a writer that writes each row to all the writers, in order
+     */
+    static RowWriter all(RowWriter... writers) {
+        return new RowWriter() {
+            @Override
+            public void cell(String value) throws IOException {
+                for (RowWriter writer : writers) {
+                    writer.cell(value);
+                }
+            }
+
+            @Override
+            public void cell(long value) throws IOException {
+                for (RowWriter writer : writers) {
+                    writer.cell(value);
+                }
+            }
+
+            @Override
+            public void cell(double value) throws IOException {
+                for (RowWriter writer : writers) {
+                    writer.cell(value);
+                }
+            }
+
+            @Override
+            public void endRow() throws IOException {
+                for (RowWriter writer : writers) {
+                    writer.endRow();
+                }
+            }
+        };
+    }
+}
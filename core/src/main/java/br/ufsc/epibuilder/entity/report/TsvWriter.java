@@ -0,0 +1,77 @@
+package br.ufsc.epibuilder.entity.report;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a report as tab separated values, streaming each row to the file.
+ *
+ * @author renato
+ */
+public class TsvWriter implements RowWriter, Closeable {
+
+    private final Writer out;
+    private final StringBuilder number = new StringBuilder(32);
+    private boolean firstCell = true;
+
+    public TsvWriter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * @param file created, or truncated if it exists
+     * @throws IOException
+     */
+    public TsvWriter(File file) throws IOException {
+        this(new BufferedWriter(Channels.newWriter(FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE), StandardCharsets.UTF_8), 1 << 16));
+    }
+
+    private void separator() throws IOException {
+        if (firstCell) {
+            firstCell = false;
+        } else {
+            out.write('\t');
+        }
+    }
+
+    @Override
+    public void cell(String value) throws IOException {
+        separator();
+        out.write(value == null ? "null" : value);
+    }
+
+    @Override
+    public void cell(long value) throws IOException {
+        separator();
+        number.setLength(0);
+        number.append(value);
+        out.append(number);
+    }
+
+    @Override
+    public void cell(double value) throws IOException {
+        separator();
+        number.setLength(0);
+        FormatHelper.appendDecimal(number, value);
+        out.append(number);
+    }
+
+    @Override
+    public void endRow() throws IOException {
+        out.write('\n');
+        firstCell = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,352 @@
+package br.ufsc.epibuilder.proteomics;
+
+import br.ufsc.epibuilder.EpitopeCount;
+import br.ufsc.epibuilder.converter.ProteinConverter;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Suffix array of a proteome, stored next to its FASTA file.
+ *
+ * The sequences are concatenated with a 0 separator and all their suffixes are
+ * sorted once, when the index is built. The file is memory-mapped when it is
+ * opened, so a peptide is found by a binary search over the suffixes, in
+ * O(m log n) for a peptide of length m, instead of a scan of the whole
+ * proteome.
+ *
+ * File layout, big-endian: the header (magic, version, length and last
+ * modification of the FASTA, number of proteins, number of residues, bytes
+ * of the ids), the start of each protein in the text plus the end of the
+ * text, the suffix array, the text and the ids separated by '\n'.
+ *
+ * @author renato
+ */
+public class ProteomeIndex {
+
+    public static final String EXTENSION = ".sa";
+
+    private static final int MAGIC = 0x45504958; // EPIX
+    private static final int VERSION = 1;
+    private static final int HEADER = 40;
+    private static final byte SEPARATOR = 0;
+
+    private final String[] ids;
+    // start of each protein in the text, plus the end of the text
+    private final IntBuffer offsets;
+    private final IntBuffer suffixes;
+    private final MappedByteBuffer buffer;
+    private final int textStart;
+    private final int length;
+
+    private ProteomeIndex(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        int proteins = buffer.getInt(24);
+        length = buffer.getInt(28);
+        int idsLength = buffer.getInt(32);
+
+        int offsetsStart = HEADER;
+        int suffixesStart = offsetsStart + 4 * (proteins + 1);
+        textStart = suffixesStart + 4 * length;
+        int idsStart = textStart + length;
+
+        offsets = buffer.duplicate().position(offsetsStart).limit(suffixesStart).slice().asIntBuffer();
+        suffixes = buffer.duplicate().position(suffixesStart).limit(textStart).slice().asIntBuffer();
+
+        byte[] stIds = new byte[idsLength];
+        buffer.get(idsStart, stIds);
+        ids = proteins == 0 ? new String[0] : new String(stIds, StandardCharsets.UTF_8).split("\n", -1);
+        if (ids.length != proteins) {
+            throw new IOException("Invalid proteome index: " + ids.length + " ids for " + proteins + " proteins");
+        }
+    }
+
+    /**
+     * @param fasta
+     * @return the index file of the FASTA file
+     */
+    public static File getIndexFile(File fasta) {
+        return new File(fasta.getPath() + EXTENSION);
+    }
+
+    /**
+     * Opens the index of the FASTA file.
+     *
+     * @param fasta
+     * @return the index, or null if there is no index or it was built from a
+     * previous version of the file
+     * @throws IOException
+     */
+    public static ProteomeIndex open(File fasta) throws IOException {
+        File file = getIndexFile(fasta);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            if (channel.size() < HEADER || channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || buffer.getLong(8) != fasta.length() || buffer.getLong(16) != fasta.lastModified()) {
+                return null;
+            }
+            return new ProteomeIndex(buffer);
+        }
+    }
+
+    /**
+     * Builds the index of the FASTA file and writes it next to the file.
+     *
+     * @param fasta
+     * @return the index file
+     * @throws IOException if the file cannot be read, or its sequences have
+     * characters that cannot be indexed
+     */
+    public static File build(File fasta) throws IOException {
+        long fastaLength = fasta.length();
+        long fastaModified = fasta.lastModified();
+        ArrayList<ProteinConverter> proteins = FastaAdjust.getProteins(fasta);
+
+        long total = 0;
+        for (ProteinConverter protein : proteins) {
+            total += protein.getSequence().length() + 1;
+        }
+        StringBuilder stIds = new StringBuilder();
+        for (ProteinConverter protein : proteins) {
+            if (stIds.length() > 0) {
+                stIds.append('\n');
+            }
+            stIds.append(protein.getId());
+        }
+        byte[] idBytes = stIds.toString().getBytes(StandardCharsets.UTF_8);
+        long size = HEADER + 4L * (proteins.size() + 1) + 5L * total + idBytes.length;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Proteome too large to be indexed: " + fasta);
+        }
+
+        int n = (int) total;
+        byte[] text = new byte[n];
+        int[] starts = new int[proteins.size() + 1];
+        int pos = 0;
+        for (int p = 0; p < proteins.size(); p++) {
+            starts[p] = pos;
+            String sequence = proteins.get(p).getSequence();
+            for (int i = 0; i < sequence.length(); i++) {
+                char c = sequence.charAt(i);
+                if (c == SEPARATOR || c > 0xFF) {
+                    throw new IOException("Invalid residue '" + c + "' in " + proteins.get(p).getId());
+                }
+                text[pos++] = (byte) c;
+            }
+            text[pos++] = SEPARATOR;
+        }
+        starts[proteins.size()] = pos;
+        int[] sa = suffixArray(text);
+
+        File file = getIndexFile(fasta);
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fastaLength);
+            out.writeLong(fastaModified);
+            out.writeInt(proteins.size());
+            out.writeInt(n);
+            out.writeInt(idBytes.length);
+            out.writeInt(0);
+            for (int start : starts) {
+                out.writeInt(start);
+            }
+            for (int suffix : sa) {
+                out.writeInt(suffix);
+            }
+            out.write(text);
+            out.write(idBytes);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return file;
+    }
+
+    /**
+     * Sorts the suffixes of the text by prefix doubling, with a counting sort
+     * of the rank pairs in each round.
+     */
+    static int[] suffixArray(byte[] text) {
+        int n = text.length;
+        int[] sa = new int[n];
+        int[] rank = new int[n];
+        int[] tmp = new int[n];
+        int[] count = new int[Math.max(256, n) + 1];
+
+        for (int i = 0; i < n; i++) {
+            rank[i] = text[i] & 0xFF;
+            count[rank[i]]++;
+        }
+        for (int c = 1; c < 256; c++) {
+            count[c] += count[c - 1];
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            sa[--count[rank[i]]] = i;
+        }
+        int classes = 256;
+
+        for (int k = 1; k < n; k <<= 1) {
+            // by the rank of the second half: the suffixes without it first
+            int p = 0;
+            for (int i = n - k; i < n; i++) {
+                tmp[p++] = i;
+            }
+            for (int j = 0; j < n; j++) {
+                if (sa[j] >= k) {
+                    tmp[p++] = sa[j] - k;
+                }
+            }
+            // stable by the rank of the first half
+            Arrays.fill(count, 0, classes, 0);
+            for (int i = 0; i < n; i++) {
+                count[rank[i]]++;
+            }
+            for (int c = 1; c < classes; c++) {
+                count[c] += count[c - 1];
+            }
+            for (int j = n - 1; j >= 0; j--) {
+                sa[--count[rank[tmp[j]]]] = tmp[j];
+            }
+
+            tmp[sa[0]] = 0;
+            classes = 1;
+            for (int j = 1; j < n; j++) {
+                int a = sa[j - 1];
+                int b = sa[j];
+                int secondA = a + k < n ? rank[a + k] : -1;
+                int secondB = b + k < n ? rank[b + k] : -1;
+                if (rank[a] != rank[b] || secondA != secondB) {
+                    classes++;
+                }
+                tmp[b] = classes - 1;
+            }
+            int[] swap = rank;
+            rank = tmp;
+            tmp = swap;
+            if (classes == n) {
+                break;
+            }
+        }
+        return sa;
+    }
+
+    public int getProteinCount() {
+        return ids.length;
+    }
+
+    /**
+     * Counts the peptide in the proteins. The hits in a protein are counted as
+     * StringUtils.countMatches counts them, without overlaps.
+     *
+     * @param peptide
+     * @param hitAccession list the ids of the proteins with hits, "-" when
+     * false
+     * @return
+     */
+    public EpitopeCount count(String peptide, boolean hitAccession) {
+        byte[] key = new byte[peptide.length()];
+        for (int i = 0; i < key.length; i++) {
+            char c = peptide.charAt(i);
+            if (c == SEPARATOR || c > 0xFF) {
+                return new EpitopeCount(hitAccession ? "" : "-", 0, 0);
+            }
+            key[i] = (byte) c;
+        }
+        if (key.length == 0) {
+            return new EpitopeCount(hitAccession ? "" : "-", 0, 0);
+        }
+
+        int first = bound(key, false);
+        int last = bound(key, true);
+        int[] positions = new int[last - first];
+        for (int i = first; i < last; i++) {
+            positions[i - first] = suffixes.get(i);
+        }
+        Arrays.sort(positions);
+
+        int total = 0;
+        int totalProteins = 0;
+        StringBuilder stIds = new StringBuilder();
+        int protein = -1;
+        int nextStart = 0;
+        for (int position : positions) {
+            if (protein < 0 || position >= offsets.get(protein + 1)) {
+                protein = proteinAt(position);
+                totalProteins++;
+                if (hitAccession) {
+                    stIds.append(ids[protein]);
+                    stIds.append(" ");
+                }
+            } else if (position < nextStart) {
+                continue;
+            }
+            total++;
+            nextStart = position + key.length;
+        }
+        return new EpitopeCount(hitAccession ? stIds.toString().trim() : "-", total, totalProteins);
+    }
+
+    /**
+     * @return the first suffix greater than or equal to the key, or greater
+     * than the key when upper, comparing only the first key.length residues
+     */
+    private int bound(byte[] key, boolean upper) {
+        int low = 0;
+        int high = length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(suffixes.get(mid), key);
+            if (cmp < 0 || (upper && cmp == 0)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int compare(int suffix, byte[] key) {
+        for (int j = 0; j < key.length; j++) {
+            if (suffix + j >= length) {
+                return -1;
+            }
+            int a = buffer.get(textStart + suffix + j) & 0xFF;
+            int b = key[j] & 0xFF;
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return 0;
+    }
+
+    private int proteinAt(int position) {
+        int low = 0;
+        int high = ids.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (offsets.get(mid) <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+}
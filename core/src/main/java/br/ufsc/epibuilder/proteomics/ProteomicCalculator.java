@@ -5,28 +5,261 @@
  */
 package br.ufsc.epibuilder.proteomics;
 
-import org.biojava.nbio.aaproperties.PeptideProperties;
+import br.ufsc.epibuilder.entity.ResidueAlphabet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.biojava.nbio.aaproperties.PeptidePropertiesImpl;
 import org.biojava.nbio.core.exceptions.CompoundNotFoundException;
 import org.biojava.nbio.core.sequence.ProteinSequence;
 
 /**
+ * Molecular weight, isoelectric point and average hydropathy of peptides.
+ *
+ * The properties are calculated from per-residue tables with the constants
+ * of BioJava: average residue masses plus a water molecule, Kyte-Doolittle
+ * hydropathy over the 20 standard residues, and the ExPASy isoelectric point,
+ * solved by bisection over the counts of the charged residues. The results of
+ * the last {@value #CACHE_SIZE} peptides are cached, so an epitope found many
+ * times is calculated once.
+ *
+ * With the system property {@value #BIOJAVA_PROPERTY}=true, or
+ * {@link #setBiojavaCompatible(boolean)}, the properties are calculated by
+ * BioJava, as in the previous versions.
  *
  * @author renato
  */
 public class ProteomicCalculator {
 
-    private static PeptidePropertiesImpl peptideProperties = new PeptidePropertiesImpl();
+    public static final String BIOJAVA_PROPERTY = "epibuilder.biojava";
+    public static final int CACHE_SIZE = 10_000;
+
+    // also accepted by BioJava, but without mass or hydropathy
+    private static final String NON_STANDARD = "BZJXUO*-";
+
+    // Constraints.aa2MolecularWeight of BioJava, in the order of ResidueAlphabet.STANDARD
+    private static final double[] MASSES = {71.0788, 103.1388, 115.0886, 129.1155, 147.1766, 57.0519, 137.1411,
+        113.1594, 128.1741, 113.1594, 131.1926, 114.1038, 97.1167, 128.1307, 156.1875, 87.0782, 101.1051,
+        99.1326, 186.2132, 163.1760};
+    private static final double WATER = 17.0073 + 1.0079;
+    // Kyte-Doolittle, in the order of ResidueAlphabet.STANDARD
+    private static final double[] HYDROPATHIES = {1.8, 2.5, -3.5, -3.5, 2.8, -0.4, -3.2, 4.5, -3.9, 3.8, 1.9,
+        -3.5, -1.6, -3.5, -4.5, -0.8, -0.7, 4.2, -0.9, -1.3};
+
+    // ExPASy pK of the termini and the charged side chains
+    private static final double N_TERM_PK = 7.5;
+    private static final double C_TERM_PK = 3.55;
+    private static final String N_TERM_RESIDUES = "AMSPTVE";
+    private static final double[] N_TERM_PKS = {7.59, 7.0, 6.93, 8.36, 6.82, 7.44, 7.7};
+    private static final String C_TERM_RESIDUES = "DE";
+    private static final double[] C_TERM_PKS = {4.55, 4.75};
+    private static final String POSITIVE = "KRH";
+    private static final String NEGATIVE = "DECY";
+    private static final double[] POSITIVE_K = pow10(-10.0, -12.0, -5.98);
+    private static final double[] NEGATIVE_K = pow10(-4.05, -4.45, -9.0, -10.0);
+
+    private static final double PH_MIN = 0;
+    private static final double PH_MAX = 14;
+    private static final double EPSILON = 0.0001;
+    private static final int MAX_LOOP = 2000;
+
+    private static final int MW = 0;
+    private static final int IP = 1;
+    private static final int HYDROPATHY = 2;
+
+    // by residue code, NaN for the ambiguous residues
+    private static final double[] RESIDUE_MASS = new double[ResidueAlphabet.CODES];
+    private static final double[] RESIDUE_HYDROPATHY = new double[ResidueAlphabet.CODES];
+    private static final double[] N_TERM_K = new double[ResidueAlphabet.CODES];
+    private static final double[] C_TERM_K = new double[ResidueAlphabet.CODES];
+    private static final int[] CHARGED = new int[ResidueAlphabet.CODES];
+    // by residue
+    private static final boolean[] VALID = new boolean[128];
+    // properties of the peptides of a single residue, null if it is invalid
+    private static final double[][] SINGLE = new double[128][];
+
+    private static final PeptidePropertiesImpl peptideProperties = new PeptidePropertiesImpl();
+    private static final Map<String, double[]> CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<String, double[]>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, double[]> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    });
+    private static volatile boolean biojava = Boolean.getBoolean(BIOJAVA_PROPERTY);
+
+    static {
+        Arrays.fill(RESIDUE_MASS, Double.NaN);
+        Arrays.fill(RESIDUE_HYDROPATHY, Double.NaN);
+        Arrays.fill(N_TERM_K, Math.pow(10, -N_TERM_PK));
+        Arrays.fill(C_TERM_K, Math.pow(10, -C_TERM_PK));
+        Arrays.fill(CHARGED, -1);
+        for (int code = 0; code < ResidueAlphabet.SIZE; code++) {
+            RESIDUE_MASS[code] = MASSES[code];
+            RESIDUE_HYDROPATHY[code] = HYDROPATHIES[code];
+            VALID[ResidueAlphabet.residue(code)] = true;
+        }
+        for (char c : NON_STANDARD.toCharArray()) {
+            VALID[c] = true;
+        }
+        for (int i = 0; i < N_TERM_RESIDUES.length(); i++) {
+            N_TERM_K[ResidueAlphabet.code(N_TERM_RESIDUES.charAt(i))] = Math.pow(10, -N_TERM_PKS[i]);
+        }
+        for (int i = 0; i < C_TERM_RESIDUES.length(); i++) {
+            C_TERM_K[ResidueAlphabet.code(C_TERM_RESIDUES.charAt(i))] = Math.pow(10, -C_TERM_PKS[i]);
+        }
+        for (int i = 0; i < POSITIVE.length(); i++) {
+            CHARGED[ResidueAlphabet.code(POSITIVE.charAt(i))] = i;
+        }
+        for (int i = 0; i < NEGATIVE.length(); i++) {
+            CHARGED[ResidueAlphabet.code(NEGATIVE.charAt(i))] = POSITIVE.length() + i;
+        }
+        for (char c = 0; c < 128; c++) {
+            if (VALID[c]) {
+                SINGLE[c] = calculate(String.valueOf(c));
+            }
+        }
+    }
+
+    private static double[] pow10(double... exponents) {
+        double[] values = new double[exponents.length];
+        for (int i = 0; i < exponents.length; i++) {
+            values[i] = Math.pow(10, exponents[i]);
+        }
+        return values;
+    }
+
+    /**
+     * @param compatible calculate the properties with BioJava
+     */
+    public static void setBiojavaCompatible(boolean compatible) {
+        if (biojava != compatible) {
+            biojava = compatible;
+            CACHE.clear();
+        }
+    }
+
+    public static boolean isBiojavaCompatible() {
+        return biojava;
+    }
 
     public static double getMolecularWeight(String sequence) throws CompoundNotFoundException {
-        return peptideProperties.getMolecularWeight(new ProteinSequence(sequence));
+        return getProperties(sequence)[MW];
     }
 
     public static double getIsoelectricPoint(String sequence) throws CompoundNotFoundException {
-        return peptideProperties.getIsoelectricPoint(new ProteinSequence(sequence));
+        return getProperties(sequence)[IP];
     }
 
     public static double getHydropathy(String sequence) throws CompoundNotFoundException {
-        return peptideProperties.getAvgHydropathy(new ProteinSequence(sequence));
+        return getProperties(sequence)[HYDROPATHY];
+    }
+
+    /**
+     * @param residue
+     * @return the Kyte-Doolittle hydropathy of the residue, 0 if it is not
+     * one of the 20 standard residues, as {@link #getHydropathy(String)} of
+     * the residue
+     */
+    public static double getHydropathy(char residue) {
+        byte code = ResidueAlphabet.code(residue);
+        return ResidueAlphabet.isStandard(code) ? RESIDUE_HYDROPATHY[code] : 0;
+    }
+
+    private static double[] getProperties(String sequence) throws CompoundNotFoundException {
+        if (!biojava && sequence.length() == 1) {
+            char c = Character.toUpperCase(sequence.charAt(0));
+            if (c < 128 && SINGLE[c] != null) {
+                return SINGLE[c];
+            }
+        }
+        double[] properties = CACHE.get(sequence);
+        if (properties == null) {
+            properties = biojava ? calculateBiojava(sequence) : calculate(validate(sequence));
+            CACHE.put(sequence, properties);
+        }
+        return properties;
+    }
+
+    private static double[] calculateBiojava(String sequence) throws CompoundNotFoundException {
+        ProteinSequence protein = new ProteinSequence(sequence);
+        return new double[]{peptideProperties.getMolecularWeight(protein),
+            peptideProperties.getIsoelectricPoint(protein),
+            peptideProperties.getAvgHydropathy(protein)};
+    }
+
+    /**
+     * @return the sequence in upper case
+     * @throws CompoundNotFoundException for the residues BioJava rejects
+     */
+    private static String validate(String sequence) throws CompoundNotFoundException {
+        String upper = sequence.toUpperCase();
+        for (int i = 0; i < upper.length(); i++) {
+            char c = upper.charAt(i);
+            if (c >= 128 || !VALID[c]) {
+                throw new CompoundNotFoundException("Compound not found for: " + sequence.charAt(i));
+            }
+        }
+        return upper;
+    }
+
+    private static double[] calculate(String sequence) {
+        double mass = 0;
+        double hydropathy = 0;
+        int standard = 0;
+        int[] charged = new int[POSITIVE.length() + NEGATIVE.length()];
+        for (int i = 0; i < sequence.length(); i++) {
+            byte code = ResidueAlphabet.code(sequence.charAt(i));
+            if (ResidueAlphabet.isStandard(code)) {
+                mass += RESIDUE_MASS[code];
+                hydropathy += RESIDUE_HYDROPATHY[code];
+                standard++;
+                if (CHARGED[code] >= 0) {
+                    charged[CHARGED[code]]++;
+                }
+            }
+        }
+        if (mass > 0) {
+            mass += WATER;
+        }
+        double ip = sequence.isEmpty() ? Double.NaN
+                : isoelectricPoint(charged, sequence.charAt(0), sequence.charAt(sequence.length() - 1));
+        // 0 without standard residues, as BioJava
+        return new double[]{mass, ip, standard > 0 ? hydropathy / standard : 0};
+    }
+
+    /**
+     * The pH of zero net charge, by bisection as in the ExPASy Compute pI/Mw
+     * tool. The charge at each pH is calculated from the counts of each
+     * charged residue, whatever the length of the peptide.
+     */
+    private static double isoelectricPoint(int[] charged, char nTerm, char cTerm) {
+        // '*' and '-' are not residues, they take the pK of the other termini
+        byte nCode = ResidueAlphabet.code(nTerm);
+        byte cCode = ResidueAlphabet.code(cTerm);
+        double nTermK = N_TERM_K[nCode != ResidueAlphabet.INVALID ? nCode : ResidueAlphabet.UNKNOWN];
+        double cTermK = C_TERM_K[cCode != ResidueAlphabet.INVALID ? cCode : ResidueAlphabet.UNKNOWN];
+        double phMin = PH_MIN;
+        double phMax = PH_MAX;
+        double phMid = 0;
+        for (int i = 0; i < MAX_LOOP && (phMax - phMin) > EPSILON; i++) {
+            phMid = phMin + (phMax - phMin) / 2;
+            double h = Math.pow(10, -phMid);
+            // protonated fraction of the basic groups, dissociated of the acid ones
+            double charge = h / (nTermK + h) - cTermK / (cTermK + h);
+            for (int p = 0; p < POSITIVE_K.length; p++) {
+                charge += charged[p] * h / (POSITIVE_K[p] + h);
+            }
+            for (int n = 0; n < NEGATIVE_K.length; n++) {
+                charge -= charged[POSITIVE_K.length + n] * NEGATIVE_K[n] / (NEGATIVE_K[n] + h);
+            }
+            if (charge > 0) {
+                phMin = phMid;
+            } else {
+                phMax = phMid;
+            }
+        }
+        return phMid;
     }
 }
@@ -0,0 +1,89 @@
+package br.ufsc.epibuilder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import br.ufsc.epibuilder.converter.ProteinConverter;
+import br.ufsc.epibuilder.entity.Proteome;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the counts of the automaton with the previous count of each
+ * epitope in each protein with StringUtils.countMatches.
+ */
+public class EpitopeMatcherTest {
+
+    @Test
+    void countsOverlappingOccurrencesAsCountMatches() {
+        Proteome proteome = new Proteome("test", new ArrayList<>(List.of(
+                new ProteinConverter("p1", "AAAAA"),
+                new ProteinConverter("p2", "ABABABA"),
+                new ProteinConverter("p3", "CCC"))));
+        List<String> epitopes = List.of("AA", "AAA", "ABA", "BAB", "A", "D");
+
+        assertCounts(epitopes, proteome, true);
+        assertCounts(epitopes, proteome, false);
+        assertEquals(2, EpitopeFinder.count("AA", proteome, true).getTotalhits());
+        assertEquals("p2", EpitopeFinder.count("ABA", proteome, true).getIds());
+    }
+
+    @Test
+    void randomProteomesMatchCountMatches() {
+        Random random = new Random(9);
+        for (int run = 0; run < 200; run++) {
+            String alphabet = run % 2 == 0 ? "AB" : "ACDEK";
+            ArrayList<ProteinConverter> proteins = new ArrayList<>();
+            for (int p = random.nextInt(6); p >= 0; p--) {
+                proteins.add(new ProteinConverter("prot" + proteins.size(),
+                        randomSequence(random, alphabet, random.nextInt(60))));
+            }
+            ArrayList<String> epitopes = new ArrayList<>();
+            for (int e = 1 + random.nextInt(20); e > 0; e--) {
+                epitopes.add(randomSequence(random, alphabet, 1 + random.nextInt(5)));
+            }
+            Proteome proteome = new Proteome("test", proteins);
+
+            assertCounts(epitopes, proteome, true);
+            assertCounts(epitopes, proteome, false);
+        }
+    }
+
+    private static void assertCounts(List<String> epitopes, Proteome proteome, boolean hitAccession) {
+        Map<String, EpitopeCount> counts = EpitopeFinder.count(epitopes, proteome, hitAccession);
+        for (String epitope : epitopes) {
+            EpitopeCount expected = countMatches(epitope, proteome, hitAccession);
+            EpitopeCount actual = counts.get(epitope);
+            assertEquals(expected.getTotalhits(), actual.getTotalhits(), epitope);
+            assertEquals(expected.getTotalProteins(), actual.getTotalProteins(), epitope);
+            assertEquals(expected.getIds(), actual.getIds(), epitope);
+        }
+    }
+
+    private static EpitopeCount countMatches(String epitope, Proteome proteome, boolean hitAccession) {
+        int total = 0;
+        int totalProteins = 0;
+        StringBuilder ids = new StringBuilder();
+        for (ProteinConverter protein : proteome.getProteins()) {
+            int count = StringUtils.countMatches(protein.getSequence(), epitope);
+            total += count;
+            if (count > 0) {
+                totalProteins++;
+                ids.append(protein.getId());
+                ids.append(" ");
+            }
+        }
+        return new EpitopeCount(hitAccession ? ids.toString().trim() : "-", total, totalProteins);
+    }
+
+    private static String randomSequence(Random random, String alphabet, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+}
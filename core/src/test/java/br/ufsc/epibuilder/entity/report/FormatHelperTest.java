@@ -0,0 +1,51 @@
+package br.ufsc.epibuilder.entity.report;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Locale;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares appendDecimal with String.format("%.2f"), the previous format of
+ * the decimal cells of the reports.
+ */
+public class FormatHelperTest {
+
+    @Test
+    void specialValuesMatchFormat() {
+        double[] values = {0, -0.0, 1.005, -1.005, 0.005, -0.005, 0.015, 2.675, 1.115, -0.001, 0.004999,
+            0.995, -0.995, 99.995, 1e9, -1e9, 123456789.125, 1e300, Double.MIN_VALUE, Double.MAX_VALUE,
+            Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (double value : values) {
+            assertDecimal(value);
+        }
+    }
+
+    @Test
+    void ties() {
+        // k/1000 has a 5 in the third decimal for odd k, a tie in decimal
+        for (int k = -100000; k <= 100000; k++) {
+            assertDecimal(k / 1000.0);
+            assertDecimal(Math.nextUp(k / 1000.0));
+            assertDecimal(Math.nextDown(k / 1000.0));
+        }
+    }
+
+    @Test
+    void randomValuesMatchFormat() {
+        Random random = new Random(14);
+        for (int i = 0; i < 1000000; i++) {
+            double magnitude = Math.pow(10, random.nextInt(14) - 4);
+            double value = (random.nextDouble() * 2 - 1) * magnitude;
+            assertDecimal(value);
+            assertDecimal((float) value);
+        }
+    }
+
+    private static void assertDecimal(double value) {
+        StringBuilder sb = new StringBuilder();
+        FormatHelper.appendDecimal(sb, value);
+        assertEquals(String.format(Locale.ROOT, "%.2f", value), sb.toString(), () -> Double.toString(value));
+    }
+}
@@ -0,0 +1,102 @@
+package br.ufsc.epibuilder.proteomics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import br.ufsc.epibuilder.EpitopeCount;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Compares the counts of the suffix array with the previous count of each
+ * peptide in each protein with StringUtils.countMatches.
+ */
+public class ProteomeIndexTest {
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void countsOverlappingOccurrencesAsCountMatches() throws IOException {
+        List<String> sequences = List.of("AAAAA", "ABABABA", "CCC", "");
+        ProteomeIndex index = build(sequences);
+
+        assertEquals(sequences.size(), index.getProteinCount());
+        for (String peptide : List.of("AA", "AAA", "ABA", "BAB", "A", "C", "D", "CCCC", "AC")) {
+            assertCount(peptide, sequences, index);
+        }
+    }
+
+    @Test
+    void randomProteomesMatchCountMatches() throws IOException {
+        Random random = new Random(10);
+        for (int run = 0; run < 100; run++) {
+            String alphabet = run % 2 == 0 ? "AB" : "ACDEK";
+            List<String> sequences = new ArrayList<>();
+            for (int p = random.nextInt(6); p >= 0; p--) {
+                sequences.add(randomSequence(random, alphabet, 1 + random.nextInt(60)));
+            }
+            ProteomeIndex index = build(sequences);
+
+            for (int e = 0; e < 20; e++) {
+                assertCount(randomSequence(random, alphabet, 1 + random.nextInt(5)), sequences, index);
+            }
+        }
+    }
+
+    private ProteomeIndex build(List<String> sequences) throws IOException {
+        File fasta = Files.createTempFile(folder, "proteome", ".fasta").toFile();
+        StringBuilder sb = new StringBuilder();
+        for (int p = 0; p < sequences.size(); p++) {
+            sb.append(">prot").append(p).append(" test\n");
+            sb.append(sequences.get(p)).append("\n");
+        }
+        Files.writeString(fasta.toPath(), sb.toString());
+        ProteomeIndex.build(fasta);
+        ProteomeIndex index = ProteomeIndex.open(fasta);
+        assertNotNull(index);
+        return index;
+    }
+
+    private static void assertCount(String peptide, List<String> sequences, ProteomeIndex index) {
+        for (boolean hitAccession : new boolean[]{true, false}) {
+            EpitopeCount expected = countMatches(peptide, sequences, hitAccession);
+            EpitopeCount actual = index.count(peptide, hitAccession);
+            assertEquals(expected.getTotalhits(), actual.getTotalhits(), peptide);
+            assertEquals(expected.getTotalProteins(), actual.getTotalProteins(), peptide);
+            assertEquals(expected.getIds(), actual.getIds(), peptide);
+        }
+    }
+
+    private static EpitopeCount countMatches(String peptide, List<String> sequences, boolean hitAccession) {
+        int total = 0;
+        int totalProteins = 0;
+        StringBuilder ids = new StringBuilder();
+        for (int p = 0; p < sequences.size(); p++) {
+            int count = StringUtils.countMatches(sequences.get(p), peptide);
+            total += count;
+            if (count > 0) {
+                totalProteins++;
+                ids.append("prot").append(p);
+                ids.append(" ");
+            }
+        }
+        return new EpitopeCount(hitAccession ? ids.toString().trim() : "-", total, totalProteins);
+    }
+
+    private static String randomSequence(Random random, String alphabet, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+}
@@ -16,6 +16,10 @@ export class EpitopeTaskData {
   epitopeSearch!: string;
   executionDate!: Date;
   finishedDate?: Date;
+  startDate?: Date;
+  residueCount?: number;
+  queuePosition?: number;
+  estimatedStartDate?: Date;
   epitopes?: Epitope[];
   minIdentityCutoff?: number;
   maxIdentityCutoff?: number;
@@ -10,6 +10,12 @@ params.threshold   = params.threshold   ?: null
 params.basename    = params.basename    ?: null
 params.search      = params.search      ?: 'none'
 params.proteomes   = params.proteomes   ?: null
+params.blast_cache = params.blast_cache ?: null
+params.blast_cache_size = params.blast_cache_size ?: null
+params.score_cache = params.score_cache ?: null
+params.score_cache_size = params.score_cache_size ?: null
+// threads of run_epibuilder, its cpus when not given
+params.parallelism = params.parallelism ?: null
 
 workflow {
     def input_file_path = file(params.input_file)
@@ -129,6 +135,11 @@ process copy_results {
  *
  * Outputs:
  *   - A CSV file with raw BepiPred output located at bepipred_output/raw_output.csv.
+ *
+ * With params.score_cache, the output is kept in the cache by the SHA-256 of
+ * the FASTA file, and a FASTA file already predicted is not predicted again.
+ * EpiBuilder evicts the outputs with its scores, by last use, within
+ * params.score_cache_size.
  */
 process run_bepipred {
     tag 'bepipred'
@@ -140,9 +151,24 @@ process run_bepipred {
     path 'bepipred_output/raw_output.csv', emit: output
 
     script:
-    """
-    python3 /bepipred3_CLI.py -i ${input_file} -pred vt_pred -o bepipred_output/
-    """
+    if (params.score_cache)
+        """
+        cached="${params.score_cache}/bepipred/\$(sha256sum ${input_file} | cut -d ' ' -f 1).csv"
+        mkdir -p bepipred_output
+        if [ -f "\$cached" ]; then
+            echo "BepiPred-3.0 output found in cache: \$cached"
+            cp "\$cached" bepipred_output/raw_output.csv
+            touch "\$cached"
+        else
+            python3 /bepipred3_CLI.py -i ${input_file} -pred vt_pred -o bepipred_output/
+            mkdir -p "\$(dirname "\$cached")"
+            cp bepipred_output/raw_output.csv "\$cached.tmp.\$\$" && mv "\$cached.tmp.\$\$" "\$cached"
+        fi
+        """
+    else
+        """
+        python3 /bepipred3_CLI.py -i ${input_file} -pred vt_pred -o bepipred_output/
+        """
 }
 
 /*
@@ -188,6 +214,19 @@ process run_epibuilder {
     if (params.proteomes) {
         args << "--proteomes '${params.proteomes}'"
     }
+    if (params.blast_cache) {
+        args << "--blast-cache '${params.blast_cache}'"
+    }
+    if (params.blast_cache_size) {
+        args << "--blast-cache-size ${params.blast_cache_size}"
+    }
+    if (params.score_cache) {
+        args << "--score-cache '${params.score_cache}'"
+    }
+    if (params.score_cache_size) {
+        args << "--score-cache-size ${params.score_cache_size}"
+    }
+    args << "--parallelism ${params.parallelism ?: task.cpus}"
 
     def cmd = "java -jar ${epibuilder_jar} --input ${input_file} --format csv ${args.join(' ')} --output epibuilder-results"
 